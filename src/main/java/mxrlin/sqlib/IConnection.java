@@ -1,20 +1,41 @@
 package mxrlin.sqlib;
 
+import mxrlin.sqlib.codec.CodecRegistry;
+import mxrlin.sqlib.codec.ValueCodec;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.GetEntriesCommand;
 import mxrlin.sqlib.command.get.GetEntryCommand;
+import mxrlin.sqlib.command.get.KeysetPaginator;
 import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.command.get.SelectCommand;
 import mxrlin.sqlib.command.set.*;
+import mxrlin.sqlib.compression.ValueCompression;
+import mxrlin.sqlib.exception.BatchException;
 import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.InsertResult;
+import mxrlin.sqlib.misc.MultiEntryResult;
+import mxrlin.sqlib.misc.Partitioning;
 import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.misc.StreamedEntry;
 import mxrlin.sqlib.misc.Table;
+import mxrlin.sqlib.reactive.QueryPublisher;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 
+import javax.sql.rowset.serial.SerialBlob;
+
 public interface IConnection extends AutoCloseable {
 
     /**
@@ -26,6 +47,51 @@ public interface IConnection extends AutoCloseable {
      */
     boolean executeUpdate(UpdatingCommand command) throws SQLibException;
 
+    /**
+     * Executes an Update to the Database and returns the amount of affected columns.
+     * The default implementation executes it with {@link #executeUpdate(UpdatingCommand)}, which doesn't tell the amount.
+     * @param command The Command such as {@link UpdateEntryCommand}, {@link DeleteColumnCommand}, {@link DeleteWhereCommand} etc.
+     * @return Returns the amount of inserted, updated or deleted columns, {@link Statement#SUCCESS_NO_INFO} if it's unknown
+     * @throws SQLibException Thrown when the update failed
+     * @see UpdatingCommand
+     */
+    default int executeUpdateCount(UpdatingCommand command) throws SQLibException {
+        executeUpdate(command);
+        return Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * Executes an Insert to the Database and returns the keys the database generated for the AUTO_INCREMENT row, so
+     * no follow-up query is needed to find them. Connections that can't read generated keys return none.
+     * @param command The Command such as {@link InsertColumnCommand} or {@link InsertColumnsCommand}
+     * @return Returns the amount of inserted columns and the generated keys in insertion order
+     * @throws SQLibException Thrown when the insert failed
+     * @see InsertResult
+     */
+    default InsertResult executeInsert(UpdatingCommand command) throws SQLibException {
+        return new InsertResult(executeUpdateCount(command), new ArrayList<>());
+    }
+
+    /**
+     * Executes several Updates to the Database, in order
+     * @param commands The Commands such as {@link IncrementCommand}, {@link UpdateEntryCommand} etc.
+     * @return Returns the amount of affected columns of each command
+     * @throws SQLibException Thrown when an update failed, a {@link BatchException} tells which updates were executed
+     * @see UpdatingCommand
+     */
+    default int[] executeBatch(List<? extends UpdatingCommand> commands) throws SQLibException {
+        int[] counts = new int[commands.size()];
+        for (int i = 0; i < counts.length; i++) {
+            try {
+                counts[i] = executeUpdateCount(commands.get(i));
+            } catch (SQLibException e) {
+                Arrays.fill(counts, i, counts.length, Statement.EXECUTE_FAILED);
+                throw new BatchException("Failed to execute update " + (i + 1) + " of a batch of " + counts.length, e, counts);
+            }
+        }
+        return counts;
+    }
+
     /**
      * Get something from the database with a Query Command
      * @param command The Command such as {@link GetEntryCommand}
@@ -105,6 +171,41 @@ public interface IConnection extends AutoCloseable {
         return executeUpdate(new DeleteTableCommand(tableName));
     }
 
+    /**
+     * Add RANGE or LIST partitions to a partitioned table
+     * @param tableName The name of the table
+     * @param type The partitioning type of the table
+     * @param partitions The partitions that are getting added
+     * @return Returns if the process was successful
+     * @throws SQLibException Thrown when something failed while updating.
+     * @see mxrlin.sqlib.misc.Partitioning
+     */
+    default boolean addPartitions(String tableName, Partitioning.Type type, List<Partitioning.Partition> partitions) throws SQLibException {
+        return executeUpdate(new AddPartitionCommand(tableName, type, partitions));
+    }
+
+    /**
+     * Drop partitions of a table including all rows they contain
+     * @param tableName The name of the table
+     * @param partitionNames The partitions that are getting dropped
+     * @return Returns if the process was successful
+     * @throws SQLibException Thrown when something failed while updating.
+     */
+    default boolean dropPartitions(String tableName, List<String> partitionNames) throws SQLibException {
+        return executeUpdate(new DropPartitionCommand(tableName, partitionNames));
+    }
+
+    /**
+     * Remove all rows of partitions of a table, but keep the partitions
+     * @param tableName The name of the table
+     * @param partitionNames The partitions that are getting truncated
+     * @return Returns if the process was successful
+     * @throws SQLibException Thrown when something failed while updating.
+     */
+    default boolean truncatePartitions(String tableName, List<String> partitionNames) throws SQLibException {
+        return executeUpdate(new TruncatePartitionCommand(tableName, partitionNames));
+    }
+
     /**
      * Insert a column into a table named {@param tableName}
      * @param tableName The name of the table
@@ -116,6 +217,29 @@ public interface IConnection extends AutoCloseable {
         return executeUpdate(new InsertColumnCommand(tableName, data));
     }
 
+    /**
+     * Insert a column into a table named {@param tableName} and return the key generated for its AUTO_INCREMENT row
+     * @param tableName The name of the table
+     * @param data The data that should be inserted into the column
+     * @return Returns the amount of inserted columns and the generated key
+     * @throws SQLibException Thrown when something failed while updating.
+     */
+    default InsertResult insert(String tableName, List<RowData> data) throws SQLibException {
+        return executeInsert(new InsertColumnCommand(tableName, data));
+    }
+
+    /**
+     * Insert many columns into a table named {@param tableName} with a single statement and return the keys generated
+     * for their AUTO_INCREMENT row
+     * @param tableName The name of the table
+     * @param columns The data of every column that should be inserted, all with the same rows
+     * @return Returns the amount of inserted columns and the generated keys in the order of {@param columns}
+     * @throws SQLibException Thrown when something failed while updating.
+     */
+    default InsertResult insertColumns(String tableName, List<List<RowData>> columns) throws SQLibException {
+        return executeInsert(new InsertColumnsCommand(tableName, columns));
+    }
+
     /**
      * Delete a column out of a table
      * @param tableName The name of the table
@@ -139,6 +263,191 @@ public interface IConnection extends AutoCloseable {
         return executeUpdate(new UpdateEntryCommand(tableName, updatingRows, updateAt));
     }
 
+    /**
+     * Count the columns of the table {@param tableName} matching {@param condition} without fetching them
+     * @param tableName The name of the table
+     * @param condition The condition the columns have to match, null = count all columns
+     * @return Returns the amount of matching columns
+     * @throws SQLibException Thrown when it couldn't get the result set or get it as a Long.
+     */
+    default long countEntries(String tableName, Condition condition) throws SQLibException {
+        try (ResultSet set = executeQuery(new SelectCommand(tableName).count().where(condition))){
+            return set.next() ? set.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new SQLibException("Couldn't fetch the result set as Long.", e);
+        }
+    }
+
+    /**
+     * Check if a column of the table {@param tableName} matches {@param condition} without fetching it
+     * @param tableName The name of the table
+     * @param condition The condition the column has to match
+     * @return Returns true if at least one column matches
+     * @throws SQLibException Thrown when it couldn't get the result set or get it as a Boolean.
+     */
+    default boolean containsEntry(String tableName, Condition condition) throws SQLibException {
+        try (ResultSet set = executeQuery(new SelectCommand(tableName).exists().where(condition))){
+            return set.next() && set.getBoolean(1);
+        } catch (SQLException e) {
+            throw new SQLibException("Couldn't fetch the result set as Boolean.", e);
+        }
+    }
+
+    /**
+     * Page through the table {@param tableName} ordered by the indexed row(s) {@param keyRows}
+     * @param tableName The name of the table
+     * @param keyRows The indexed row(s) the table is ordered by, most significant first
+     * @param pageSize Maximum amount of columns per page
+     * @return Returns a {@link KeysetPaginator} that fetches the pages
+     */
+    default KeysetPaginator paginate(String tableName, List<String> keyRows, int pageSize) {
+        return new KeysetPaginator(this, tableName, keyRows, pageSize);
+    }
+
+    /**
+     * Get the Entries from the row {@param key} of all columns whose row {@param keyRow} is one of {@param keys}.
+     * Replaces one {@link GetEntryCommand} per key with one {@link GetEntriesCommand} per {@link GetEntriesCommand#MAX_KEYS_PER_STATEMENT} keys.
+     * @param tableName The name of the table
+     * @param key The Row the entries are saved in
+     * @param keyRow The Row the keys are saved in
+     * @param keys The keys of the columns
+     * @return Returns the Entries of the found keys and the keys that weren't found
+     * @throws SQLibException Thrown when it couldn't get the result sets or get them as Objects.
+     */
+    default <K> MultiEntryResult<K> getEntries(String tableName, String key, String keyRow, Collection<K> keys) throws SQLibException {
+        return getEntries(tableName, key, keyRow, keys, GetEntriesCommand.MAX_KEYS_PER_STATEMENT);
+    }
+
+    /**
+     * Get the Entries from the row {@param key} of all columns whose row {@param keyRow} is one of {@param keys}.
+     * @param tableName The name of the table
+     * @param key The Row the entries are saved in
+     * @param keyRow The Row the keys are saved in
+     * @param keys The keys of the columns
+     * @param keysPerStatement Maximum amount of keys in one statement
+     * @return Returns the Entries of the found keys and the keys that weren't found
+     * @throws SQLibException Thrown when it couldn't get the result sets or get them as Objects.
+     */
+    default <K> MultiEntryResult<K> getEntries(String tableName, String key, String keyRow, Collection<K> keys, int keysPerStatement) throws SQLibException {
+        if(keysPerStatement <= 0) throw new SQLibException("Keys per statement has to be positive");
+
+        MultiEntryResult<K> result = new MultiEntryResult<>(keys);
+        List<K> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+
+        for (int from = 0; from < distinctKeys.size(); from += keysPerStatement) {
+            List<K> chunk = distinctKeys.subList(from, Math.min(from + keysPerStatement, distinctKeys.size()));
+            try (ResultSet set = executeQuery(new GetEntriesCommand(tableName, key, keyRow, chunk))){
+                while (set.next()){
+                    result.put(set.getObject(1), set.getObject(2));
+                }
+            } catch (SQLException e) {
+                throw new SQLibException("Couldn't fetch the result set as objects.", e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The compression of large BLOB / TEXT values, null if disabled
+     */
+    default ValueCompression getValueCompression() {
+        return null;
+    }
+
+    /**
+     * @param tableName The name of the table
+     * @param key The Row the entries are saved in
+     * @return The compression of the row, null if its values aren't compressed
+     */
+    default ValueCompression compressionOf(String tableName, String key) {
+        ValueCompression compression = getValueCompression();
+        return compression != null && compression.isCompressed(tableName, key) ? compression : null;
+    }
+
+    /**
+     * Executes a Query whose ResultSet is read from the database while it's consumed, instead of being loaded completely
+     * @param command The Command such as {@link GetEntryCommand}
+     * @return Returns a {@link ResultSet} that has to be closed before the next command is executed
+     * @throws SQLibException Thrown when the query failed
+     */
+    default ResultSet executeStreamingQuery(QueryCommand command) throws SQLibException {
+        return executeQuery(command);
+    }
+
+    /**
+     * Publish the columns of {@param command} to reactive subscribers, every column is only read when it was requested
+     * @param command The Command such as {@link SelectCommand}
+     * @return Returns a publisher that executes the query for every subscriber
+     * @see QueryPublisher
+     */
+    default QueryPublisher publish(QueryCommand command) {
+        return new QueryPublisher(this, command);
+    }
+
+    /**
+     * Open the Entry from the row {@param key} in the table {@param tableName} as a stream, without loading it into memory
+     * @param tableName The name of the table
+     * @param key The Row the entry is saved in
+     * @param atRow The row as reference point
+     * @return Returns the open Entry, null if no column matches. Has to be closed.
+     * @throws SQLibException Thrown when it couldn't get the result set
+     * @see StreamedEntry
+     */
+    default StreamedEntry streamEntry(String tableName, String key, RowData atRow) throws SQLibException {
+        ResultSet set = executeStreamingQuery(new GetEntryCommand(tableName, key, atRow));
+        try {
+            if(set.next()) return new StreamedEntry(set, key, compressionOf(tableName, key));
+        } catch (SQLException e) {
+            try {
+                set.close();
+            } catch (SQLException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw new SQLibException("Couldn't fetch the result set as Stream.", e);
+        }
+        try {
+            set.close();
+        } catch (SQLException e) {
+            throw new SQLibException("Couldn't close the result set.", e);
+        }
+        return null;
+    }
+
+    /**
+     * Read the Entry from the row {@param key} in the table {@param tableName} with {@param reader} while the statement is open
+     * @param tableName The name of the table
+     * @param key The Row the entry is saved in
+     * @param atRow The row as reference point
+     * @param reader Reads the Entry, for example by parsing it from {@link StreamedEntry#getCharacterStream()}
+     * @return Returns the result of {@param reader}, null if no column matches
+     * @throws SQLibException Thrown when it couldn't get the result set or {@param reader} failed
+     */
+    default <R> R readEntry(String tableName, String key, RowData atRow, StreamedEntry.EntryReader<R> reader) throws SQLibException {
+        try (StreamedEntry entry = streamEntry(tableName, key, atRow)){
+            if(entry == null) return null;
+            return reader.read(entry);
+        } catch (IOException e) {
+            throw new SQLibException("Couldn't read the entry " + key + " of the table " + tableName, e);
+        }
+    }
+
+    /**
+     * Write the Entry from the row {@param key} in the table {@param tableName} to {@param channel} through a fixed-size buffer
+     * @param tableName The name of the table
+     * @param key The Row the entry is saved in
+     * @param atRow The row as reference point
+     * @param channel The channel the Entry is written to, for example a socket or file channel
+     * @return Returns the amount of written bytes, -1 if no column matches or the Entry is NULL
+     * @throws SQLibException Thrown when it couldn't get the result set or write the Entry
+     */
+    default long transferEntry(String tableName, String key, RowData atRow, WritableByteChannel channel) throws SQLibException {
+        try (StreamedEntry entry = streamEntry(tableName, key, atRow)){
+            if(entry == null) return -1;
+            return entry.transferTo(channel);
+        }
+    }
+
     /**
      * Get an Entry from the row {@param key} in the table {@param tableName}
      * @param tableName The name of the table
@@ -165,9 +474,14 @@ public interface IConnection extends AutoCloseable {
      */
     default String getStringEntry(String tableName, String key, RowData atRow) throws SQLibException {
         try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getString(key);
+            if(!set.next()) return null;
+            ValueCompression compression = compressionOf(tableName, key);
+            if(compression == null) return set.getString(key);
+
+            byte[] bytes = compression.decompress(set.getBytes(key));
+            return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
         } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as String.");
+            throw new SQLibException("Couldn't fetch the result set as String.", e);
         }
     }
 
@@ -208,15 +522,12 @@ public interface IConnection extends AutoCloseable {
      * @param tableName The name of the table
      * @param key The Row the entry is saved in
      * @param atRow The row as reference point
-     * @return Returns the Entry as an Ascii Stream
+     * @return Returns the Entry as an Ascii Stream, the statement stays open until the stream is closed
      * @throws SQLibException Thrown when it couldn't get the result set or get it as an Ascii Stream
      */
     default InputStream getAsciiStreamEntry(String tableName, String key, RowData atRow) throws SQLibException {
-        try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getAsciiStream(key);
-        } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as Ascii Stream.");
-        }
+        StreamedEntry entry = streamEntry(tableName, key, atRow);
+        return entry == null ? null : entry.getAsciiStream();
     }
 
     /**
@@ -224,15 +535,12 @@ public interface IConnection extends AutoCloseable {
      * @param tableName The name of the table
      * @param key The Row the entry is saved in
      * @param atRow The row as reference point
-     * @return Returns the Entry as a Binary Stream
+     * @return Returns the Entry as a Binary Stream, the statement stays open until the stream is closed
      * @throws SQLibException Thrown when it couldn't get the result set or get it as a Binary Stream
      */
     default InputStream getBinaryStreamEntry(String tableName, String key, RowData atRow) throws SQLibException {
-        try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getBinaryStream(key);
-        } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as Binary Stream.");
-        }
+        StreamedEntry entry = streamEntry(tableName, key, atRow);
+        return entry == null ? null : entry.getBinaryStream();
     }
 
     /**
@@ -240,15 +548,12 @@ public interface IConnection extends AutoCloseable {
      * @param tableName The name of the table
      * @param key The Row the entry is saved in
      * @param atRow The row as reference point
-     * @return Returns the Entry as a Character Stream
+     * @return Returns the Entry as a Character Stream, the statement stays open until the stream is closed
      * @throws SQLibException Thrown when it couldn't get the result set or get it as a Character Stream
      */
     default Reader getCharacterStreamEntry(String tableName, String key, RowData atRow) throws SQLibException {
-        try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getCharacterStream(key);
-        } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as Character Stream.");
-        }
+        StreamedEntry entry = streamEntry(tableName, key, atRow);
+        return entry == null ? null : entry.getCharacterStream();
     }
 
     /**
@@ -256,15 +561,12 @@ public interface IConnection extends AutoCloseable {
      * @param tableName The name of the table
      * @param key The Row the entry is saved in
      * @param atRow The row as reference point
-     * @return Returns the Entry as a NCharaterStream
+     * @return Returns the Entry as a NCharaterStream, the statement stays open until the stream is closed
      * @throws SQLibException Thrown when it couldn't get the result set or get it as a NCharacterStream.
      */
     default Reader getNCharacterStreamEntry(String tableName, String key, RowData atRow) throws SQLibException {
-        try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getNCharacterStream(key);
-        } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as NCharacter Stream.");
-        }
+        StreamedEntry entry = streamEntry(tableName, key, atRow);
+        return entry == null ? null : entry.getNCharacterStream();
     }
 
     /**
@@ -288,14 +590,17 @@ public interface IConnection extends AutoCloseable {
      * @param tableName The name of the table
      * @param key The Row the entry is saved in
      * @param atRow The row as reference point
-     * @return Returns the Entry as a Blob
+     * @return Returns the Entry as a Blob that stays readable after the statement is closed, null if no column matches or the Entry is NULL.
+     * Large entries should be read with {@link #streamEntry(String, String, RowData)}
      * @throws SQLibException Thrown when it couldn't get the result set or get it as a Blob.
      */
     default Blob getBlobEntry(String tableName, String key, RowData atRow) throws SQLibException {
-        try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getBlob(key);
+        byte[] bytes = getByteArrayEntry(tableName, key, atRow);
+        if(bytes == null) return null;
+        try {
+            return new SerialBlob(bytes);
         } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as Blob.");
+            throw new SQLibException("Couldn't fetch the result set as Blob.", e);
         }
     }
 
@@ -341,9 +646,33 @@ public interface IConnection extends AutoCloseable {
      */
     default byte[] getByteArrayEntry(String tableName, String key, RowData atRow) throws SQLibException {
         try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
-            return set.getBytes(key);
+            if(!set.next()) return null;
+            ValueCompression compression = compressionOf(tableName, key);
+            return compression == null ? set.getBytes(key) : compression.decompress(set.getBytes(key));
         } catch (SQLException e) {
-            throw new SQLibException("Couldn't fetch the result set as Byte Array.");
+            throw new SQLibException("Couldn't fetch the result set as Byte Array.", e);
+        }
+    }
+
+    /**
+     * Get an Entry from the row {@param key} in the table {@param tableName} that was written with the {@link ValueCodec} of {@param type}
+     * @param tableName The name of the table
+     * @param key The Row the entry is saved in
+     * @param atRow The row as reference point
+     * @param type The type of the Entry, types without codec are read with {@link ResultSet#getObject(String)}
+     * @return Returns the Entry, null if no column matches or the Entry is NULL
+     * @throws SQLibException Thrown when it couldn't get the result set or decode the Entry.
+     * @see CodecRegistry
+     */
+    default <T> T getEntry(String tableName, String key, RowData atRow, Class<T> type) throws SQLibException {
+        CodecRegistry codecs = CodecRegistry.getDefault();
+        if(codecs.getCodec(type) != null) return codecs.decode(getByteArrayEntry(tableName, key, atRow), type);
+
+        try (ResultSet set = executeQuery(new GetEntryCommand(tableName, key, atRow))){
+            if(!set.next()) return null;
+            return type.cast(set.getObject(key));
+        } catch (SQLException | ClassCastException e) {
+            throw new SQLibException("Couldn't fetch the result set as " + type.getSimpleName() + ".", e);
         }
     }
 
@@ -1,31 +1,113 @@
 package mxrlin.sqlib;
 
+import mxrlin.sqlib.cache.CacheWarmer;
+import mxrlin.sqlib.cache.EntryCache;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.GetEntryCommand;
 import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.command.get.SelectCommand;
 import mxrlin.sqlib.command.set.UpdatingCommand;
+import mxrlin.sqlib.compression.ValueCompression;
+import mxrlin.sqlib.concurrent.AdmissionController;
+import mxrlin.sqlib.concurrent.QueryCoalescer;
+import mxrlin.sqlib.diagnostics.PlanChecker;
+import mxrlin.sqlib.exception.BatchException;
 import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.jfr.ConnectEvent;
+import mxrlin.sqlib.jfr.JfrEvents;
+import mxrlin.sqlib.journal.WriteJournal;
+import mxrlin.sqlib.misc.CachedResult;
+import mxrlin.sqlib.misc.Deadline;
+import mxrlin.sqlib.misc.InsertResult;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.schema.SchemaCache;
+import mxrlin.sqlib.trace.CommandTrace;
+import mxrlin.sqlib.trace.Span;
+import mxrlin.sqlib.trace.Tracer;
+import mxrlin.sqlib.workload.WorkloadRecorder;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class SQLibConnection implements IConnection {
 
+    private static final Logger LOGGER = Logger.getLogger(SQLibConnection.class.getName());
+
     private Connection connection;
-    private final String host;
-    private final String port;
-    private final String database;
+    private final String url;
     private final String username;
     private final String password;
 
+    // shares concurrent executions of equal queries, null if disabled
+    private volatile QueryCoalescer queryCoalescer;
+
+    // keeps updates while the database is unreachable, null if disabled
+    private volatile WriteJournal writeJournal;
+
+    // true = journaled updates wait for the group commit of the journal
+    private volatile boolean awaitJournalDurability;
+
+    // answers GetEntryCommands of cached tables, null if disabled
+    private volatile EntryCache entryCache;
+
+    // loads the entry cache, null if no warm-up was started
+    private volatile CacheWarmer cacheWarmer;
+
+    // explains every distinct statement once, null if disabled
+    private volatile PlanChecker planChecker;
+
+    // time every command without an own deadline may take, 0 = no limit
+    private volatile long defaultTimeoutMillis;
+
+    // limits the commands running at the same time, null if disabled
+    private volatile AdmissionController admissionController;
+
+    // compresses large values of compressed rows, null if disabled
+    private volatile ValueCompression valueCompression;
+
+    // validates table and row names of commands, null if disabled
+    private volatile SchemaCache schemaCache;
+
+    // records every executed statement to a trace file, null if disabled
+    private volatile WorkloadRecorder workloadRecorder;
+
+    // receives the timed phases of every statement, null if disabled
+    private volatile Tracer tracer;
+
+    // true once a connection was opened, every later open is a reconnect
+    private boolean connected;
+
     /**
      * Create a new MySQL Database Connection
      * @throws SQLibException Thrown when it couldn't connect to the database
      */
     public SQLibConnection(String host, String port, String database, String username, String password) throws SQLibException {
-        this.host = host;
-        this.port = port;
-        this.database = database;
+        this("jdbc:mysql://" + host + ":" + port + "/" + database, username, password);
+    }
+
+    /**
+     * Create a new Database Connection with a JDBC url, for example "jdbc:mysql://host:3306/database?useSSL=true"
+     * or an in-memory database with MySQL compatibility for tests
+     * @throws SQLibException Thrown when it couldn't connect to the database
+     */
+    public SQLibConnection(String url, String username, String password) throws SQLibException {
+        this.url = url;
         this.username = username;
         this.password = password;
         open();
@@ -33,23 +115,772 @@ public class SQLibConnection implements IConnection {
 
     @Override
     public boolean executeUpdate(UpdatingCommand command) throws SQLibException{
+        executeUpdateCount(command);
+        return true;
+    }
+
+    @Override
+    public int executeUpdateCount(UpdatingCommand command) throws SQLibException{
+        return executeUpdateCount(command, defaultDeadline());
+    }
+
+    /**
+     * Executes an Update to the Database that has to be finished before {@param deadline}
+     * @param command The Command such as {@link mxrlin.sqlib.command.set.UpdateEntryCommand}
+     * @param deadline The deadline of the update, can be cancelled from another thread
+     * @return Returns the amount of inserted, updated or deleted columns
+     * @throws SQLibException Thrown when the update failed, the deadline expired or it was cancelled
+     */
+    public int executeUpdateCount(UpdatingCommand command, Deadline deadline) throws SQLibException{
+        try {
+            return executeUpdateCommand(command, deadline, null);
+        } finally {
+            // also after failures, as the update may have reached the database
+            EntryCache cache = entryCache;
+            if(cache != null) cache.onUpdate(command);
+            SchemaCache schema = schemaCache;
+            if(schema != null) schema.onUpdate(command);
+        }
+    }
+
+    @Override
+    public InsertResult executeInsert(UpdatingCommand command) throws SQLibException {
+        return executeInsert(command, defaultDeadline());
+    }
+
+    /**
+     * Executes an Insert to the Database that has to be finished before {@param deadline} and returns the generated keys
+     * @param command The Command such as {@link mxrlin.sqlib.command.set.InsertColumnsCommand}
+     * @param deadline The deadline of the insert, can be cancelled from another thread
+     * @return Returns the amount of inserted columns and the generated keys in insertion order, no keys if the insert was journaled
+     * @throws SQLibException Thrown when the insert failed, the deadline expired or it was cancelled
+     */
+    public InsertResult executeInsert(UpdatingCommand command, Deadline deadline) throws SQLibException {
+        List<Long> generatedKeys = new ArrayList<>();
+        try {
+            int affected = executeUpdateCommand(command, deadline, generatedKeys);
+            return new InsertResult(affected, generatedKeys);
+        } finally {
+            EntryCache cache = entryCache;
+            if(cache != null) cache.onUpdate(command);
+            SchemaCache schema = schemaCache;
+            if(schema != null) schema.onUpdate(command);
+        }
+    }
+
+    // generatedKeys = null if the generated keys aren't needed
+    private int executeUpdateCommand(UpdatingCommand command, Deadline deadline, List<Long> generatedKeys) throws SQLibException {
+        ValueCompression compression = valueCompression;
+        if(compression != null) command = compression.apply(command);
+
+        SchemaCache schema = schemaCache;
+        if(schema != null){
+            checkIfConnectionIsClosed();
+            schema.validate(connection, command);
+        }
+
+        MySQLStatement commandStatement = command.getCommandStatement();
+        if(schema != null) commandStatement = schema.withArgumentTypes(connection, command, commandStatement);
+        deadline.check(commandStatement.getCommand());
+        checkPlan(commandStatement);
+
+        CommandTrace trace = CommandTrace.of(tracer, command.getClass(), command.getTableName());
+        AdmissionController.Permit permit = admit(deadline, trace, commandStatement);
+        try {
+            return executeUpdateAdmitted(commandStatement, deadline, generatedKeys, trace);
+        } finally {
+            release(permit, true);
+        }
+    }
+
+    private int executeUpdateAdmitted(MySQLStatement commandStatement, Deadline deadline, List<Long> generatedKeys, CommandTrace trace) throws SQLibException {
+        WriteJournal journal = writeJournal;
+        if(journal == null) return executeUpdateStatement(commandStatement, deadline, generatedKeys, trace);
+
+        // keep the order of updates: nothing is executed before all journaled updates are replayed
+        if(journal.hasPending() && !tryReplayJournal(journal)) return appendToJournal(journal, commandStatement);
+        if(!isOpen()) return appendToJournal(journal, commandStatement);
+
+        try {
+            return executeUpdateStatement(commandStatement, deadline, generatedKeys, trace);
+        } catch (SQLibException e) {
+            if(!WriteJournal.isConnectionFailure(e)) throw e;
+            // the update may have reached the database, replaying it could execute it twice
+            throw new SQLibException("The connection failed while executing the command \"" + commandStatement.getCommand()
+                    + "\", it may have been executed and isn't journaled", e);
+        }
+    }
+
+    private int executeUpdateStatement(MySQLStatement commandStatement, Deadline deadline, List<Long> generatedKeys, CommandTrace trace) throws SQLibException {
         checkIfConnectionIsClosed();
-        try{
-            command.getCommandStatement().asPreparedStatement(connection).executeUpdate();
-            return true;
+        WorkloadRecorder recorder = workloadRecorder;
+        long start = recorder == null ? 0 : System.nanoTime();
+        boolean failed = true;
+        long executeStart = 0;
+        int affected = -1;
+        try(PreparedStatement statement = prepare(commandStatement, generatedKeys != null, trace)){
+            deadline.attach(statement);
+            if(trace != null) executeStart = trace.begin(Span.Phase.EXECUTE);
+            affected = statement.executeUpdate();
+            failed = false;
+            if(generatedKeys != null){
+                try (ResultSet keys = statement.getGeneratedKeys()){
+                    generatedKeys.addAll(InsertResult.of(affected, keys).getGeneratedKeys());
+                }
+            }
+            return affected;
         }catch (SQLException e){
-            throw new SQLibException("Failed to update PreparedStatement with the command \"" + command.getCommandStatement().getCommand() + "\"" + e.getMessage(), e);
+            SQLibException deadlineFailure = deadline.explainFailure(commandStatement.getCommand(), e);
+            if(deadlineFailure != null) throw deadlineFailure;
+            throw new SQLibException("Failed to update PreparedStatement with the command \"" + commandStatement.getCommand() + "\"", e);
+        }finally {
+            deadline.detach();
+            if(trace != null && executeStart != 0) trace.span(Span.Phase.EXECUTE, commandStatement.getCommand(), executeStart, affected, failed);
+            if(recorder != null) recorder.record(commandStatement, false, start, System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Executes several Updates to the Database. Consecutive commands with the same statement (for example the
+     * {@link mxrlin.sqlib.command.set.IncrementCommand}s of a {@link mxrlin.sqlib.batch.CounterBuffer}) are sent as one
+     * JDBC batch. With a {@link WriteJournal} the commands are executed one by one, so every one can be journaled.
+     * @param commands The Commands such as {@link mxrlin.sqlib.command.set.UpdateEntryCommand}
+     * @return Returns the amount of affected columns of each command
+     * @throws SQLibException Thrown when an update failed, a {@link BatchException} tells which updates were executed
+     */
+    @Override
+    public int[] executeBatch(List<? extends UpdatingCommand> commands) throws SQLibException {
+        if(writeJournal != null) return IConnection.super.executeBatch(commands);
+
+        List<UpdatingCommand> executed = new ArrayList<>(commands);
+        try {
+            return executeBatchCommands(executed, defaultDeadline());
+        } finally {
+            // also after failures, as the updates may have reached the database
+            EntryCache cache = entryCache;
+            SchemaCache schema = schemaCache;
+            for (UpdatingCommand command : executed) {
+                if(cache != null) cache.onUpdate(command);
+                if(schema != null) schema.onUpdate(command);
+            }
+        }
+    }
+
+    private int[] executeBatchCommands(List<UpdatingCommand> commands, Deadline deadline) throws SQLibException {
+        ValueCompression compression = valueCompression;
+        SchemaCache schema = schemaCache;
+        checkIfConnectionIsClosed();
+
+        List<MySQLStatement> statements = new ArrayList<>(commands.size());
+        for (UpdatingCommand command : commands) {
+            if(compression != null) command = compression.apply(command);
+            if(schema == null){
+                statements.add(command.getCommandStatement());
+                continue;
+            }
+            schema.validate(connection, command);
+            statements.add(schema.withArgumentTypes(connection, command, command.getCommandStatement()));
+        }
+
+        int[] counts = new int[statements.size()];
+        Tracer batchTracer = tracer;
+        CommandTrace admissionTrace = CommandTrace.of(batchTracer, commands.get(0).getClass(), commands.get(0).getTableName());
+        AdmissionController.Permit permit = admit(deadline, admissionTrace, statements.get(0));
+        try {
+            int from = 0;
+            while (from < statements.size()){
+                MySQLStatement first = statements.get(from);
+                int to = from + 1;
+                while (to < statements.size() && statements.get(to).getCommand().equals(first.getCommand())) to++;
+
+                try {
+                    deadline.check(first.getCommand());
+                    checkPlan(first);
+                    CommandTrace trace = CommandTrace.of(batchTracer, commands.get(from).getClass(), commands.get(from).getTableName());
+                    int[] groupCounts = executeBatchStatement(statements.subList(from, to), deadline, trace);
+                    System.arraycopy(groupCounts, 0, counts, from, to - from);
+                } catch (SQLibException e) {
+                    Arrays.fill(counts, from, counts.length, Statement.EXECUTE_FAILED);
+                    copyExecutedCounts(e, counts, from, to);
+                    throw new BatchException("Failed to execute a batch of " + counts.length + " updates at update " + (from + 1), e, counts);
+                }
+                from = to;
+            }
+        } finally {
+            release(permit, false);
+        }
+        return counts;
+    }
+
+    // the updates a driver reported as executed before or after the failed one of the statements from - to
+    private static void copyExecutedCounts(SQLibException e, int[] counts, int from, int to) {
+        if(!(e.getExceptionThrown() instanceof BatchUpdateException)) return;
+        int[] executed = ((BatchUpdateException) e.getExceptionThrown()).getUpdateCounts();
+        if(executed == null) return;
+        // drivers that stop at the first failure report only the updates before it
+        System.arraycopy(executed, 0, counts, from, Math.min(executed.length, to - from));
+    }
+
+    private int[] executeBatchStatement(List<MySQLStatement> statements, Deadline deadline, CommandTrace trace) throws SQLibException {
+        checkIfConnectionIsClosed();
+        String command = statements.get(0).getCommand();
+        WorkloadRecorder recorder = workloadRecorder;
+        long start = recorder == null ? 0 : System.nanoTime();
+        boolean failed = true;
+        Span.Phase phase = Span.Phase.PREPARE;
+        long phaseStart = trace == null ? 0 : trace.begin(phase);
+        long affected = -1;
+        try(PreparedStatement statement = connection.prepareStatement(command)){
+            if(trace != null){
+                trace.span(phase, command, phaseStart, -1, false);
+                phase = Span.Phase.BIND;
+                phaseStart = trace.begin(phase);
+            }
+            for (MySQLStatement commandStatement : statements) {
+                commandStatement.bindArguments(statement);
+                statement.addBatch();
+            }
+            deadline.attach(statement);
+            if(trace != null){
+                trace.span(phase, command, phaseStart, -1, false);
+                phase = Span.Phase.EXECUTE;
+                phaseStart = trace.begin(phase);
+            }
+            int[] counts = statement.executeBatch();
+            failed = false;
+            affected = 0;
+            for (int count : counts) {
+                affected += Math.max(0, count);
+            }
+            return counts;
+        }catch (SQLException e){
+            SQLibException deadlineFailure = deadline.explainFailure(command, e);
+            if(deadlineFailure != null) throw deadlineFailure;
+            throw new SQLibException("Failed to execute a batch of " + statements.size() + " updates with the command \"" + command + "\"", e);
+        }finally {
+            deadline.detach();
+            if(trace != null) trace.span(phase, command, phaseStart, affected, failed);
+            if(recorder != null){
+                // every statement of the batch is recorded with its share of the time
+                long duration = (System.nanoTime() - start) / statements.size();
+                for (int i = 0; i < statements.size(); i++) {
+                    recorder.record(statements.get(i), false, start + i * duration, duration, failed);
+                }
+            }
+        }
+    }
+
+    private int appendToJournal(WriteJournal journal, MySQLStatement commandStatement) throws SQLibException {
+        long sequence = journal.append(commandStatement);
+        if(awaitJournalDurability) journal.awaitDurable(sequence);
+        return Statement.SUCCESS_NO_INFO;
+    }
+
+    private boolean tryReplayJournal(WriteJournal journal) throws SQLibException {
+        if(!isOpen()) return false;
+        try {
+            replayJournal();
+        } catch (SQLibException e) {
+            if(!WriteJournal.isConnectionFailure(e)) throw e;
+        }
+        return !journal.hasPending();
+    }
+
+    /**
+     * Keep updates in {@param journal} while the database is unreachable instead of throwing an exception. Journaled updates
+     * are replayed in order before the next update that reaches the database, or when calling {@link #replayJournal()}.
+     * Journaled updates return {@link Statement#SUCCESS_NO_INFO} as amount of affected columns. Only updates that are
+     * issued while the connection is closed are journaled. An update whose connection fails while it's executed may have
+     * been executed, so it throws an exception instead.
+     * @param journal The journal, null to disable journaling
+     * @param awaitDurability true = journaled updates wait until the journal was forced to disk
+     * @see WriteJournal
+     */
+    public void setWriteJournal(WriteJournal journal, boolean awaitDurability) {
+        this.writeJournal = journal;
+        this.awaitJournalDurability = awaitDurability;
+    }
+
+    /**
+     * @return The journal that keeps updates while the database is unreachable, null if disabled
+     */
+    public WriteJournal getWriteJournal() {
+        return writeJournal;
+    }
+
+    /**
+     * Execute all journaled updates in order. Updates that fail for another reason than the connection are logged and skipped,
+     * as they would have failed without the journal as well. Every update is marked in {@link WriteJournal#REPLAY_TABLE}
+     * in the same transaction, updates that are marked already were executed by an earlier replay and are skipped.
+     * @return The amount of replayed updates
+     * @throws SQLibException Thrown when the database is still unreachable
+     */
+    public int replayJournal() throws SQLibException {
+        WriteJournal journal = writeJournal;
+        if(journal == null || !journal.hasPending()) return 0;
+        checkIfConnectionIsClosed();
+        executeJournalStatement("CREATE TABLE IF NOT EXISTS " + WriteJournal.REPLAY_TABLE
+                + " (journal CHAR(36) NOT NULL, sequence BIGINT NOT NULL, PRIMARY KEY (journal, sequence))");
+
+        long[] lastSequence = {-1};
+        int replayed;
+        try {
+            replayed = journal.replay((sequence, statement) -> {
+                replayRecord(journal, sequence, statement);
+                lastSequence[0] = sequence;
+            });
+        } finally {
+            // acknowledged records are forced to disk by the replay, so their marks aren't needed anymore
+            if(lastSequence[0] != -1 && isOpen()){
+                executeJournalStatement("DELETE FROM " + WriteJournal.REPLAY_TABLE + " WHERE journal = ? AND sequence <= ?",
+                        journal.getId().toString(), lastSequence[0]);
+            }
+        }
+        return replayed;
+    }
+
+    // executes the record and marks it as replayed in one transaction, nothing if it's marked already
+    private void replayRecord(WriteJournal journal, long sequence, MySQLStatement statement) throws SQLibException {
+        checkIfConnectionIsClosed();
+        boolean autoCommit;
+        try {
+            autoCommit = connection.getAutoCommit();
+            if(autoCommit) connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to start the transaction of a journaled command", e);
+        }
+
+        boolean committed = false;
+        try {
+            try {
+                executeJournalStatement("INSERT INTO " + WriteJournal.REPLAY_TABLE + " (journal, sequence) VALUES (?, ?)",
+                        journal.getId().toString(), sequence);
+            } catch (SQLibException e) {
+                if(!(e.getExceptionThrown() instanceof SQLIntegrityConstraintViolationException)) throw e;
+                LOGGER.log(Level.FINE, "Journaled command " + sequence + " was replayed before");
+                return;
+            }
+            try {
+                executeUpdateStatement(statement, Deadline.none(), null, null);
+            } catch (SQLibException e) {
+                if(!isOpen() || WriteJournal.isConnectionFailure(e)) throw e;
+                LOGGER.log(Level.WARNING, "Skipped journaled command \"" + statement.getCommand() + "\"", e);
+            }
+            if(autoCommit) connection.commit();
+            committed = true;
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to commit the journaled command \"" + statement.getCommand() + "\"", e);
+        } finally {
+            if(autoCommit && isOpen()){
+                try {
+                    if(!committed) connection.rollback();
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    LOGGER.log(Level.WARNING, "Failed to end the transaction of a journaled command", e);
+                }
+            }
+        }
+    }
+
+    private void executeJournalStatement(String command, Object... arguments) throws SQLibException {
+        try (PreparedStatement statement = connection.prepareStatement(command)){
+            for (int i = 0; i < arguments.length; i++) {
+                statement.setObject(i + 1, arguments[i]);
+            }
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to execute the journal command \"" + command + "\"", e);
         }
     }
 
     @Override
     public ResultSet executeQuery(QueryCommand command) throws SQLibException{
+        return executeQuery(command, defaultDeadline());
+    }
+
+    /**
+     * Get something from the database with a Query Command that has to be finished before {@param deadline}
+     * @param command The Command such as {@link GetEntryCommand}
+     * @param deadline The deadline of the query, can be cancelled from another thread
+     * @return Returns a {@link ResultSet}
+     * @throws SQLibException Thrown when the query failed, the deadline expired or it was cancelled
+     */
+    public ResultSet executeQuery(QueryCommand command, Deadline deadline) throws SQLibException{
+        ResultSet cached = cachedEntry(command, deadline);
+        if(cached != null) return cached;
+
+        checkIfConnectionIsClosed();
+        validate(command);
+        MySQLStatement commandStatement = command.getCommandStatement();
+        deadline.check(commandStatement.getCommand());
+        checkPlan(commandStatement);
+
+        CommandTrace trace = CommandTrace.of(tracer, command.getClass(), command.getTableName());
+        QueryCoalescer coalescer = queryCoalescer;
+        if(coalescer != null){
+            return coalescer.execute(commandStatement, deadline, () -> {
+                AdmissionController.Permit permit = admit(deadline, trace, commandStatement);
+                try (ResultSet set = executeStatement(commandStatement, deadline, false, trace)){
+                    return CachedResult.of(set);
+                } catch (SQLException e) {
+                    throw new SQLibException("Failed to read the result of the command \"" + commandStatement.getCommand() + "\"", e);
+                } finally {
+                    release(permit, true);
+                }
+            });
+        }
+
+        AdmissionController.Permit permit = admit(deadline, trace, commandStatement);
+        try {
+            return executeStatement(commandStatement, deadline, false, trace);
+        } finally {
+            release(permit, true);
+        }
+    }
+
+    /**
+     * Get something from the database without loading the whole result into memory. The columns are read from the
+     * server while the ResultSet is consumed, the connection can't execute other commands until it's closed.
+     * Entries in the {@link EntryCache} are still served from memory, the {@link QueryCoalescer} isn't used.
+     * @param command The Command such as {@link GetEntryCommand}
+     * @return Returns a {@link ResultSet} that has to be closed before the next command is executed
+     * @throws SQLibException Thrown when the query failed
+     */
+    @Override
+    public ResultSet executeStreamingQuery(QueryCommand command) throws SQLibException {
+        Deadline deadline = defaultDeadline();
+        ResultSet cached = cachedEntry(command, deadline);
+        if(cached != null) return cached;
+
         checkIfConnectionIsClosed();
+        validate(command);
+        MySQLStatement commandStatement = command.getCommandStatement();
+        deadline.check(commandStatement.getCommand());
+        checkPlan(commandStatement);
+
+        CommandTrace trace = CommandTrace.of(tracer, command.getClass(), command.getTableName());
+        AdmissionController.Permit permit = admit(deadline, trace, commandStatement);
+        try {
+            return executeStatement(commandStatement, deadline, true, trace);
+        } finally {
+            release(permit, false);
+        }
+    }
+
+    private ResultSet executeStatement(MySQLStatement commandStatement, Deadline deadline, boolean streaming, CommandTrace trace) throws SQLibException {
+        WorkloadRecorder recorder = workloadRecorder;
+        long start = recorder == null ? 0 : System.nanoTime();
+        boolean failed = true;
+        long executeStart = 0;
+        PreparedStatement statement = null;
         try{
-            return command.getCommandStatement().asPreparedStatement(connection).executeQuery();
+            statement = prepare(deadline.applyHint(commandStatement), false, trace);
+            // closing the ResultSet also closes the statement
+            statement.closeOnCompletion();
+            if(streaming) enableStreaming(statement);
+            deadline.attach(statement);
+            if(trace != null) executeStart = trace.begin(Span.Phase.EXECUTE);
+            ResultSet set = statement.executeQuery();
+            failed = false;
+            return trace == null ? set : trace.fetch(set, commandStatement.getCommand());
         }catch (SQLException e){
-            throw new SQLibException("Failed to execute Query with the command \"" + command.getCommandStatement().getCommand() + "\"", e);
+            closeQuietly(statement);
+            SQLibException deadlineFailure = deadline.explainFailure(commandStatement.getCommand(), e);
+            if(deadlineFailure != null) throw deadlineFailure;
+            throw new SQLibException("Failed to execute Query with the command \"" + commandStatement.getCommand() + "\"", e);
+        }finally {
+            deadline.detach();
+            if(trace != null && executeStart != 0) trace.span(Span.Phase.EXECUTE, commandStatement.getCommand(), executeStart, -1, failed);
+            // a streamed result is fetched afterwards, only the execution is recorded
+            if(recorder != null) recorder.record(commandStatement, true, start, System.nanoTime() - start, failed);
+        }
+    }
+
+    private ResultSet cachedEntry(QueryCommand command, Deadline deadline) throws SQLibException {
+        EntryCache cache = entryCache;
+        if(cache == null || !(command instanceof GetEntryCommand)) return null;
+        CachedResult cached = cache.lookup((GetEntryCommand) command);
+        if(cached == null) cached = loadEntry(cache, (GetEntryCommand) command, deadline);
+        if(cached == null) return null;
+        try {
+            return cached.toResultSet();
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to create a ResultSet of a cached entry", e);
+        }
+    }
+
+    // reads the whole column of a missed entry and adds it to the cache, null if the entry can't be answered that way
+    private CachedResult loadEntry(EntryCache cache, GetEntryCommand command, Deadline deadline) throws SQLibException {
+        String tableName = command.getTableName();
+        String keyRow = cache.getKeyRow(tableName);
+        RowData atRow = command.getAtRow();
+        if(keyRow == null || !atRow.getRowName().equals(keyRow) || atRow.getValue() == null) return null;
+
+        // an update between the read and the put makes the put fail, so an outdated column is never added
+        long generation = cache.getGeneration(tableName);
+        List<List<RowData>> columns = new ArrayList<>(1);
+        try (ResultSet set = executeQuery(new SelectCommand(tableName).where(Condition.equal(keyRow, atRow.getValue())), deadline)){
+            while (set.next()){
+                columns.add(RowData.fromResultSet(set));
+            }
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to read the column of the key " + atRow.getValue() + " of table " + tableName, e);
+        }
+        // the key row isn't unique
+        if(columns.size() > 1) return null;
+
+        if(columns.isEmpty()) return new CachedResult(Collections.singletonList(command.getRowName()), new int[]{Types.NULL}, Collections.emptyList());
+        cache.putAll(tableName, columns, generation);
+        for (RowData row : columns.get(0)) {
+            if(row.getRowName().equals(command.getRowName())) return CachedResult.ofColumn(Collections.singletonList(row));
         }
+        // the selected row is an expression, it's executed as it is
+        return null;
+    }
+
+    // MySQL Connector/J streams the columns one by one with this fetch size, other drivers may reject it and load everything
+    private static void enableStreaming(PreparedStatement statement) {
+        try {
+            statement.setFetchSize(Integer.MIN_VALUE);
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "The driver doesn't support streaming results, the result is loaded completely", e);
+        }
+    }
+
+    /**
+     * Set the time every command may take that is executed without an own {@link Deadline}
+     * @param timeout Maximum time of a command, 0 = no limit
+     * @param unit The unit of {@param timeout}
+     */
+    public void setDefaultTimeout(long timeout, TimeUnit unit) {
+        if(timeout < 0) throw new IllegalArgumentException("Timeout can't be negative");
+        this.defaultTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * @return The time in milliseconds every command without an own deadline may take, 0 = no limit
+     */
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * Limit the amount of commands that are executed at the same time. Commands that can't start within their queue-wait
+     * budget are rejected with an {@link mxrlin.sqlib.exception.OverloadedException}. Journal replays aren't limited.
+     * @param controller The controller, null to disable admission control
+     * @see AdmissionController
+     */
+    public void setAdmissionController(AdmissionController controller) {
+        this.admissionController = controller;
+    }
+
+    /**
+     * @return The controller that limits the commands running at the same time, null if disabled
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    private AdmissionController.Permit admit(Deadline deadline, CommandTrace trace, MySQLStatement commandStatement) throws SQLibException {
+        AdmissionController controller = admissionController;
+        if(controller == null) return null;
+        if(trace == null) return controller.acquire(deadline);
+
+        long start = trace.begin(Span.Phase.ACQUIRE);
+        boolean failed = true;
+        try {
+            AdmissionController.Permit permit = controller.acquire(deadline);
+            failed = false;
+            return permit;
+        } finally {
+            trace.span(Span.Phase.ACQUIRE, commandStatement.getCommand(), start, -1, failed);
+        }
+    }
+
+    // the latency of batches and streamed scans isn't comparable to single statements, it doesn't adapt the limit
+    private static void release(AdmissionController.Permit permit, boolean measured) {
+        if(permit == null) return;
+        if(measured) permit.close();
+        else permit.closeUnmeasured();
+    }
+
+    // prepares the statement and binds its arguments, as separate spans if the command is traced
+    private PreparedStatement prepare(MySQLStatement commandStatement, boolean returnGeneratedKeys, CommandTrace trace) throws SQLibException {
+        if(trace == null) return commandStatement.asPreparedStatement(connection, returnGeneratedKeys);
+
+        String command = commandStatement.getCommand();
+        long start = trace.begin(Span.Phase.PREPARE);
+        PreparedStatement statement = null;
+        try {
+            statement = returnGeneratedKeys
+                    ? connection.prepareStatement(command, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(command);
+            trace.span(Span.Phase.PREPARE, command, start, -1, false);
+        } catch (SQLException e) {
+            trace.span(Span.Phase.PREPARE, command, start, -1, true);
+            throw new SQLibException("Failed to create an prepared Statement with the command \"" + command + "\"", e);
+        }
+
+        start = trace.begin(Span.Phase.BIND);
+        try {
+            commandStatement.bindArguments(statement);
+            trace.span(Span.Phase.BIND, command, start, -1, false);
+            return statement;
+        } catch (SQLException e) {
+            trace.span(Span.Phase.BIND, command, start, -1, true);
+            closeQuietly(statement);
+            throw new SQLibException("Failed to create an prepared Statement with the command \"" + command + "\"", e);
+        }
+    }
+
+    private Deadline defaultDeadline() {
+        long timeout = defaultTimeoutMillis;
+        return timeout == 0 ? Deadline.none() : Deadline.after(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enable or disable query coalescing. While enabled, threads executing an equal query (same command and arguments)
+     * at the same time share one execution and each get their own copy of its result.
+     * @param enabled true = coalesce concurrent equal queries
+     * @see QueryCoalescer
+     */
+    public void setQueryCoalescing(boolean enabled) {
+        if(enabled && queryCoalescer == null) queryCoalescer = new QueryCoalescer();
+        else if(!enabled) queryCoalescer = null;
+    }
+
+    /**
+     * @return The coalescer with its metrics, null if query coalescing is disabled
+     */
+    public QueryCoalescer getQueryCoalescer() {
+        return queryCoalescer;
+    }
+
+    /**
+     * Answer {@link GetEntryCommand}s of the tables cached by {@param cache} out of the cache. A lookup by the key row that
+     * misses reads the whole column and adds it. Updates executed through this connection invalidate the affected entries.
+     * @param cache The cache, null to disable it
+     * @see EntryCache
+     */
+    public void setEntryCache(EntryCache cache) {
+        this.entryCache = cache;
+    }
+
+    /**
+     * @return The cache that answers {@link GetEntryCommand}s, null if disabled
+     */
+    public EntryCache getEntryCache() {
+        return entryCache;
+    }
+
+    /**
+     * Use the cache of {@param warmer} and start loading it in the background. Call this right after creating the connection
+     * and serve requests once {@link #isWarm()} returns true.
+     * @param warmer The warmer with the tables, keys or snapshots that are loaded
+     * @return Completes when the cache is loaded, or exceptionally when a source couldn't be loaded
+     * @see CacheWarmer
+     */
+    public CompletableFuture<Void> warmUp(CacheWarmer warmer) {
+        this.entryCache = warmer.getCache();
+        this.cacheWarmer = warmer;
+        return warmer.start();
+    }
+
+    /**
+     * @return true if no warm-up was started or the started warm-up loaded all its sources
+     */
+    public boolean isWarm() {
+        CacheWarmer warmer = cacheWarmer;
+        return warmer == null || warmer.isReady();
+    }
+
+    /**
+     * Explain every distinct statement once before it is executed and report full table scans, filesorts and temporary tables
+     * @param checker The checker, null to disable plan checks
+     * @see PlanChecker
+     */
+    public void setPlanChecker(PlanChecker checker) {
+        this.planChecker = checker;
+    }
+
+    /**
+     * @return The checker with its findings, null if plan checks are disabled
+     */
+    public PlanChecker getPlanChecker() {
+        return planChecker;
+    }
+
+    /**
+     * Record every executed statement with its timing to a trace file, for replaying the workload with a
+     * {@link mxrlin.sqlib.workload.WorkloadReplayer}
+     * @param recorder The recorder, null to stop recording. The recorder isn't closed by the connection.
+     * @see WorkloadRecorder
+     */
+    public void setWorkloadRecorder(WorkloadRecorder recorder) {
+        this.workloadRecorder = recorder;
+    }
+
+    /**
+     * @return The recorder of executed statements, null if statements aren't recorded
+     */
+    public WorkloadRecorder getWorkloadRecorder() {
+        return workloadRecorder;
+    }
+
+    /**
+     * Report the timed phases of every statement (admission, prepare, bind, execute, fetch) to {@param tracer}
+     * @param tracer The tracer, null to disable tracing. Without a tracer no spans are created.
+     * @see Tracer
+     */
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * @return The tracer of the statements, null if tracing is disabled
+     */
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Compress large values of the rows marked with {@link mxrlin.sqlib.misc.Table.TableRow#isCompressed()}
+     * @param compression The compression, null to disable it. Compressed values stay readable only while it's set.
+     * @see ValueCompression
+     */
+    public void setValueCompression(ValueCompression compression) {
+        this.valueCompression = compression;
+    }
+
+    @Override
+    public ValueCompression getValueCompression() {
+        return valueCompression;
+    }
+
+    /**
+     * Check the table and row names of every command against the schema of the database before it is sent
+     * @param cache The cache of the schemas, null to disable the checks
+     * @see SchemaCache
+     */
+    public void setSchemaCache(SchemaCache cache) {
+        this.schemaCache = cache;
+    }
+
+    /**
+     * @return The cache of the schemas, null if the checks are disabled
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    private void validate(QueryCommand command) throws SQLibException {
+        SchemaCache schema = schemaCache;
+        if(schema != null) schema.validate(connection, command);
+    }
+
+    private void checkPlan(MySQLStatement commandStatement) throws SQLibException {
+        PlanChecker checker = planChecker;
+        if(checker != null && isOpen()) checker.check(connection, commandStatement);
     }
 
     @Override
@@ -60,11 +891,25 @@ public class SQLibConnection implements IConnection {
     @Override
     public void open() throws SQLibException {
         if(isOpen()) throw new SQLibException("Can't open connection while connection is open.");
+        ConnectEvent event = JfrEvents.beginConnect();
+        boolean reconnect = connected;
         try {
-            connection = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port + "/" + database, username, password);
+            connection = DriverManager.getConnection(url, username, password);
         } catch (SQLException e) {
+            if(event != null) event.finish(url, reconnect, true);
             throw new SQLibException("Failed to connect to database", e);
         }
+        connected = true;
+
+        WriteJournal journal = writeJournal;
+        if(journal != null && journal.hasPending()){
+            try {
+                replayJournal();
+            } catch (SQLibException e) {
+                LOGGER.log(Level.WARNING, "Failed to replay the journal " + journal.getPath(), e);
+            }
+        }
+        if(event != null) event.finish(url, reconnect, false);
     }
 
     @Override
@@ -75,10 +920,11 @@ public class SQLibConnection implements IConnection {
 
     @Override
     public boolean isOpen() {
+        if(connection == null) return false;
         try {
             return !connection.isClosed();
         } catch (SQLException ignored) {}
-        return connection != null;
+        return false;
     }
 
     @Override
@@ -117,9 +963,15 @@ public class SQLibConnection implements IConnection {
         }
     }
 
+    private void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {}
+    }
+
     private void checkIfConnectionIsClosed() throws SQLibException {
         try{
-            if(connection.isClosed()) throw new SQLibException("Connection is closed");
+            if(connection == null || connection.isClosed()) throw new SQLibException("Connection is closed");
         }catch (SQLException e){
             throw new SQLibException("Failed to check if connection is closed", e);
         }
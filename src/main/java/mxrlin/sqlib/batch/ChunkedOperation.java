@@ -0,0 +1,334 @@
+package mxrlin.sqlib.batch;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.SelectCommand;
+import mxrlin.sqlib.command.set.DeleteWhereCommand;
+import mxrlin.sqlib.command.set.UpdateWhereCommand;
+import mxrlin.sqlib.command.set.UpdatingCommand;
+import mxrlin.sqlib.concurrent.AdmissionController;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.RowData;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Deletes or updates a large amount of columns in many small statements ("chunks") instead of a single one.
+ * Every chunk only holds its locks and undo log for a short time and replicas can keep up between the chunks.
+ *
+ * Chunks are either built by a LIMIT (deletes without a key row) or by ranges of a unique, indexed key row
+ * ("WHERE key > ? AND key <= ?"). The chunk size adapts to the observed statement time, so chunks stay close to
+ * the target time even when the load of the database changes.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create an operation with {@link #delete(IConnection, String, Condition)} or {@link #update(IConnection, String, List, Condition, String)}.
+ * 3. Optionally set the chunk size, the pause between chunks and a listener.
+ * 4. Call {@link #run()}, for example in a background thread. {@link #cancel()} stops it after the current chunk.
+ *
+ * Each chunk is a statement of its own, so with auto commit every chunk is committed on its own.
+ * Operations with a key row can be resumed after a failure or a restart: {@link #getLastKey()} is the key the executed
+ * chunks reached, a new operation continues after it with {@link #resumeAfter(Object)}.
+ *
+ * @see DeleteWhereCommand
+ * @see UpdateWhereCommand
+ */
+public class ChunkedOperation {
+
+    // the connection the chunks are executed with
+    private IConnection connection;
+
+    // table
+    private String tableName;
+
+    // the rows that are getting updated, null for deletes
+    private List<RowData> updatingRows;
+
+    // the condition the affected columns match, null = all columns
+    private Condition condition;
+
+    // the unique, indexed row the chunks are built by, null = LIMIT chunks
+    private String keyRow;
+
+    // current and allowed amount of columns per chunk
+    private int chunkSize = 1000;
+    private int minChunkSize = 100;
+    private int maxChunkSize = 50000;
+
+    // time a chunk should take, 0 = fixed chunk size
+    private long targetChunkMillis = 200;
+
+    // pause after every chunk
+    private long pauseMillis = 50;
+
+    // notified after every chunk, may be null
+    private ProgressListener listener;
+
+    private volatile boolean cancelled;
+
+    // the upper key of the last executed chunk, the next chunk starts after it. null = from the first column
+    private Object lastKey;
+
+    // true once no more columns matched
+    private boolean finished;
+    private long affectedRows;
+    private int chunks;
+
+    private ChunkedOperation(IConnection connection, String tableName, List<RowData> updatingRows, Condition condition, String keyRow) {
+        this.connection = connection;
+        this.tableName = tableName;
+        this.updatingRows = updatingRows;
+        this.condition = condition;
+        this.keyRow = keyRow;
+    }
+
+    /**
+     * Delete all columns matching {@param condition} in chunks built by a LIMIT
+     * @param connection The connection the chunks are executed with
+     * @param tableName The name of the table
+     * @param condition The condition the deleted columns match, null = all columns
+     */
+    public static ChunkedOperation delete(IConnection connection, String tableName, Condition condition) {
+        return new ChunkedOperation(connection, tableName, null, condition, null);
+    }
+
+    /**
+     * Delete all columns matching {@param condition} in chunks built by ranges of {@param keyRow}
+     * @param connection The connection the chunks are executed with
+     * @param tableName The name of the table
+     * @param condition The condition the deleted columns match, null = all columns
+     * @param keyRow A unique, indexed row, for example the primary key
+     */
+    public static ChunkedOperation delete(IConnection connection, String tableName, Condition condition, String keyRow) {
+        return new ChunkedOperation(connection, tableName, null, condition, keyRow);
+    }
+
+    /**
+     * Update all columns matching {@param condition} in chunks built by ranges of {@param keyRow}
+     * @param connection The connection the chunks are executed with
+     * @param tableName The name of the table
+     * @param updatingRows The Row(s) that is/are getting updated
+     * @param condition The condition the updated columns match, null = all columns
+     * @param keyRow A unique, indexed row, for example the primary key
+     */
+    public static ChunkedOperation update(IConnection connection, String tableName, List<RowData> updatingRows, Condition condition, String keyRow) {
+        if(keyRow == null) throw new IllegalArgumentException("Chunked updates need a key row");
+        return new ChunkedOperation(connection, tableName, updatingRows, condition, keyRow);
+    }
+
+    /**
+     * Set the amount of columns of the first chunk and the range the chunk size adapts in
+     * @param initial Amount of columns of the first chunk
+     * @param min Minimum amount of columns per chunk
+     * @param max Maximum amount of columns per chunk
+     */
+    public ChunkedOperation chunkSize(int initial, int min, int max) {
+        if(min <= 0 || min > initial || initial > max) throw new IllegalArgumentException("Expected 0 < min <= initial <= max");
+        this.chunkSize = initial;
+        this.minChunkSize = min;
+        this.maxChunkSize = max;
+        return this;
+    }
+
+    /**
+     * Set the time a chunk should take. The chunk size shrinks when chunks are slower and grows when they are faster.
+     * @param millis Target time of a chunk, 0 = never change the chunk size
+     */
+    public ChunkedOperation targetChunkTime(long millis) {
+        this.targetChunkMillis = millis;
+        return this;
+    }
+
+    /**
+     * Set the pause after every chunk, which leaves room for other statements and replication
+     * @param millis Pause after every chunk, 0 = no pause
+     */
+    public ChunkedOperation pause(long millis) {
+        this.pauseMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param listener Notified after every chunk
+     */
+    public ChunkedOperation listener(ProgressListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Start after the key a previous operation reached, so its chunks aren't executed again
+     * @param key The {@link #getLastKey()} of the previous operation, null = from the first column
+     */
+    public ChunkedOperation resumeAfter(Object key) {
+        if(keyRow == null && key != null) throw new IllegalStateException("Only operations with a key row can be resumed");
+        this.lastKey = key;
+        return this;
+    }
+
+    /**
+     * Stop the operation after the currently running chunk. Can be called from any thread.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Execute the chunks until no more columns match, or the operation is cancelled.
+     * The chunks are executed with {@link AdmissionController.Priority#BACKGROUND}.
+     *
+     * A chunk with an unknown amount of affected columns, for example one that was written to the
+     * {@link mxrlin.sqlib.journal.WriteJournal} while the database was unreachable, stops the operation without
+     * finishing it. Call this method again once the database is reachable, {@link #isFinished()} tells if it's done.
+     * Every call continues after the {@link #getLastKey()} of the previous one.
+     * @return The amount of deleted / updated columns
+     * @throws SQLibException Thrown when a chunk failed. Already executed chunks stay executed.
+     */
+    public long run() throws SQLibException {
+        AdmissionController.Priority previous = AdmissionController.setPriority(AdmissionController.Priority.BACKGROUND);
+        try {
+            return runChunks();
+        } finally {
+            AdmissionController.setPriority(previous);
+        }
+    }
+
+    private long runChunks() throws SQLibException {
+        boolean unknown = false;
+
+        while (!finished && !unknown && !cancelled){
+            int size = chunkSize;
+            long start = System.nanoTime();
+            int affected;
+
+            if(keyRow == null){
+                affected = connection.executeUpdateCount(new DeleteWhereCommand(tableName, condition).limit(null, size));
+                finished = affected >= 0 && affected < size;
+            }else{
+                Object upperKey = findUpperKey(lastKey, size);
+                Condition range = buildRange(lastKey, upperKey);
+                Condition where = condition == null ? range : condition.and(range);
+                UpdatingCommand command = updatingRows == null ? new DeleteWhereCommand(tableName, where) : new UpdateWhereCommand(tableName, updatingRows, where);
+                affected = connection.executeUpdateCount(command);
+                finished = affected >= 0 && upperKey == null;
+                // the last chunk has no upper key, a run after an unknown last chunk starts after the previous one
+                if(upperKey != null) lastKey = upperKey;
+            }
+
+            long chunkMillis = (System.nanoTime() - start) / 1_000_000;
+            // negative counts (Statement.SUCCESS_NO_INFO) tell that the chunk wasn't executed yet
+            unknown = affected < 0;
+            if(!unknown) affectedRows += affected;
+            chunks++;
+            adaptChunkSize(chunkMillis);
+
+            if(listener != null) listener.onChunk(chunks, affected, affectedRows, chunkMillis, chunkSize);
+
+            if(!finished && !unknown && pauseMillis > 0){
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                }
+            }
+        }
+
+        return affectedRows;
+    }
+
+    // the key of the size-th matching column after lastKey, null if less columns are left
+    private Object findUpperKey(Object lastKey, int size) throws SQLibException {
+        Condition where = condition;
+        if(lastKey != null){
+            Condition after = Condition.greaterThan(keyRow, lastKey);
+            where = where == null ? after : where.and(after);
+        }
+
+        SelectCommand command = new SelectCommand(tableName).rows(keyRow).where(where).orderBy(keyRow, true).limit(1).offset(size - 1);
+        try (ResultSet set = connection.executeQuery(command)){
+            return set.next() ? set.getObject(1) : null;
+        } catch (SQLException e) {
+            throw new SQLibException("Couldn't fetch the upper key of the next chunk of table " + tableName, e);
+        }
+    }
+
+    private Condition buildRange(Object lastKey, Object upperKey) {
+        if(lastKey == null && upperKey == null) return Condition.all();
+        if(lastKey == null) return Condition.lessOrEqual(keyRow, upperKey);
+        if(upperKey == null) return Condition.greaterThan(keyRow, lastKey);
+        return Condition.greaterThan(keyRow, lastKey).and(Condition.lessOrEqual(keyRow, upperKey));
+    }
+
+    // halve the chunk size when a chunk is too slow, grow it by a quarter when it is fast
+    private void adaptChunkSize(long chunkMillis) {
+        if(targetChunkMillis <= 0) return;
+        if(chunkMillis > targetChunkMillis * 3 / 2) chunkSize = Math.max(minChunkSize, chunkSize / 2);
+        else if(chunkMillis < targetChunkMillis / 2) chunkSize = Math.min(maxChunkSize, chunkSize + Math.max(1, chunkSize / 4));
+    }
+
+    /**
+     * @return The key the executed chunks reached, the next chunk starts after it. null if no chunk was executed yet
+     *         or the chunks are built by a LIMIT
+     */
+    public Object getLastKey() {
+        return lastKey;
+    }
+
+    /**
+     * @return The amount of columns deleted / updated so far
+     */
+    public long getAffectedRows() {
+        return affectedRows;
+    }
+
+    /**
+     * @return The amount of executed chunks so far
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return The amount of columns of the next chunk
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return true if no more columns matched, false if the operation was cancelled or stopped by a chunk with an
+     *         unknown amount of affected columns
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Notified after every executed chunk
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+
+        /**
+         * @param chunk Number of the executed chunk, starting at 1
+         * @param affectedRows Amount of columns deleted / updated by this chunk, negative if it's unknown
+         * @param totalAffectedRows Amount of columns deleted / updated so far
+         * @param chunkMillis Time the chunk took
+         * @param nextChunkSize Amount of columns of the next chunk
+         */
+        void onChunk(int chunk, int affectedRows, long totalAffectedRows, long chunkMillis, int nextChunkSize);
+
+    }
+
+}
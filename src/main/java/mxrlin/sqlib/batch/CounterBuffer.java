@@ -0,0 +1,377 @@
+package mxrlin.sqlib.batch;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.SelectCommand;
+import mxrlin.sqlib.command.set.IncrementCommand;
+import mxrlin.sqlib.concurrent.AdmissionController;
+import mxrlin.sqlib.exception.BatchException;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.jfr.FlushEvent;
+import mxrlin.sqlib.jfr.JfrEvents;
+import mxrlin.sqlib.misc.MultiEntryResult;
+import mxrlin.sqlib.misc.RowData;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Part of the SQLib API
+ *
+ * Collects increments of counters (kills, coins earned, blocks broken, ...) in memory and writes them periodically as
+ * one batch of "row = row + ?" statements. Thousands of increments of the same counter become a single statement,
+ * and no increment reads the counter first. Increments are added to striped cells ({@link LongAdder}), so threads
+ * incrementing the same counter don't contend.
+ *
+ * 1. Create an instance and optionally set the flush interval, upserts and slots.
+ * 2. Call {@link #start()} to flush periodically in the background, or call {@link #flush()} yourself.
+ * 3. Count with {@link #increment(String, String, String, Object, long)}, read with {@link #get(String, String, String, Object)}.
+ * 4. Close it, which writes the remaining increments.
+ *
+ * Very hot counters can be spread over {@link #slots(String, int)} columns per key, so concurrent flushes of several
+ * servers lock different columns. Their value is the sum of the slots. Slots need upserts and a unique index over the
+ * key row and the slot row.
+ *
+ * Increments of a batch that failed are kept and written with the next flush, increments the database reported as
+ * executed aren't written again. Counters without pending increments are removed from memory after a flush.
+ * Without upserts an increment of a counter whose column doesn't exist changes nothing, it's kept and logged until the
+ * column is inserted.
+ *
+ * @see IncrementCommand
+ */
+public class CounterBuffer implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(CounterBuffer.class.getName());
+
+    // the connection the increments are written with
+    private final IConnection connection;
+
+    // (table, counter row, key row, key) -> increments that weren't written yet
+    private final Map<CounterKey, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // counters removed by the last flush, increments that still reached them are moved back by the next flush
+    private List<Map.Entry<CounterKey, LongAdder>> retired = new ArrayList<>();
+
+    private long flushIntervalMillis = 1000;
+    private int batchSize = 500;
+
+    // true = missing columns are inserted
+    private boolean upsert;
+
+    // the row that tells the slots of a key apart, null = no slots
+    private String slotRow;
+    private int slots = 1;
+
+    private final Object flushLock = new Object();
+    private Thread flushThread;
+    private volatile boolean closed;
+
+    private final LongAdder flushedIncrements = new LongAdder();
+    private final LongAdder writtenStatements = new LongAdder();
+
+    /**
+     * @param connection The connection the increments are written with
+     */
+    public CounterBuffer(IConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param interval Time between two flushes of {@link #start()}
+     * @param unit The unit of {@param interval}
+     */
+    public CounterBuffer flushInterval(long interval, TimeUnit unit) {
+        if(interval <= 0) throw new IllegalArgumentException("Interval has to be positive");
+        this.flushIntervalMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * @param batchSize Maximum amount of statements written as one batch
+     */
+    public CounterBuffer batchSize(int batchSize) {
+        if(batchSize <= 0) throw new IllegalArgumentException("Batch size has to be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Insert the columns of counters that don't exist yet ("INSERT ... ON DUPLICATE KEY UPDATE"),
+     * needs a unique index over the key row. Without it increments of missing columns are kept until they're inserted.
+     */
+    public CounterBuffer upsert() {
+        this.upsert = true;
+        return this;
+    }
+
+    /**
+     * Spread every counter over {@param slots} columns, each flush adds to a random one. Enables upserts.
+     * @param slotRow The row that tells the slots of a key apart, part of the unique index together with the key row
+     * @param slots Amount of columns per key
+     */
+    public CounterBuffer slots(String slotRow, int slots) {
+        if(slots <= 0) throw new IllegalArgumentException("Slots have to be positive");
+        this.slotRow = Objects.requireNonNull(slotRow, "slotRow");
+        this.slots = slots;
+        this.upsert = true;
+        return this;
+    }
+
+    /**
+     * Flush every flush interval in a background thread
+     */
+    public synchronized void start() {
+        if(flushThread != null) return;
+        flushThread = new Thread(this::flushLoop, "SQLib-CounterBuffer");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    private void flushLoop() {
+        AdmissionController.setPriority(AdmissionController.Priority.BACKGROUND);
+        while (!closed){
+            try {
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                flush();
+            } catch (SQLibException e) {
+                LOGGER.log(Level.WARNING, "Failed to flush counters, the increments are kept for the next flush", e);
+            }
+        }
+    }
+
+    /**
+     * Add {@param delta} to a counter, it's written with the next flush
+     * @param tableName The table name
+     * @param counterRow The numeric row of the counter
+     * @param keyRow The row that identifies the column, for example the uuid of a player
+     * @param key The value of the key row
+     * @param delta The added value, can be negative
+     */
+    public void increment(String tableName, String counterRow, String keyRow, Object key, long delta) {
+        if(closed) throw new IllegalStateException("The counter buffer is closed");
+        if(delta == 0) return;
+        pending.computeIfAbsent(new CounterKey(tableName, counterRow, keyRow, key), counterKey -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * @return The increments of a counter that weren't written yet
+     */
+    public long getPending(String tableName, String counterRow, String keyRow, Object key) {
+        LongAdder adder = pending.get(new CounterKey(tableName, counterRow, keyRow, key));
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Read a counter, including the increments that weren't written yet
+     * @param tableName The table name
+     * @param counterRow The numeric row of the counter
+     * @param keyRow The row that identifies the column
+     * @param key The value of the key row
+     * @return The value of the counter, the sum of all slots
+     * @throws SQLibException Thrown when the counter couldn't be read
+     */
+    public long get(String tableName, String counterRow, String keyRow, Object key) throws SQLibException {
+        SelectCommand select = new SelectCommand(tableName).aggregate(SelectCommand.Aggregate.SUM, counterRow).where(Condition.equal(keyRow, key));
+        try (ResultSet set = connection.executeQuery(select)){
+            long stored = set.next() ? set.getLong(1) : 0;
+            return stored + getPending(tableName, counterRow, keyRow, key);
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to read the counter " + counterRow + " of the table " + tableName, e);
+        }
+    }
+
+    /**
+     * Write all pending increments, as batches of {@link IncrementCommand}s
+     * @return The amount of written statements, without the increments of missing columns that are kept
+     * @throws SQLibException Thrown when a batch failed, its increments that weren't executed and those of the following
+     *                        batches are kept
+     */
+    public int flush() throws SQLibException {
+        synchronized (flushLock){
+            restoreRetired();
+
+            List<CounterKey> keys = new ArrayList<>();
+            List<Long> deltas = new ArrayList<>();
+            List<IncrementCommand> commands = new ArrayList<>();
+
+            for (Map.Entry<CounterKey, LongAdder> entry : pending.entrySet()) {
+                // subtracting instead of resetting keeps increments that are added meanwhile
+                long delta = entry.getValue().sum();
+                if(delta == 0){
+                    retireIfIdle(entry.getKey());
+                    continue;
+                }
+                entry.getValue().add(-delta);
+
+                keys.add(entry.getKey());
+                deltas.add(delta);
+                commands.add(toCommand(entry.getKey(), delta));
+            }
+
+            if(commands.isEmpty()) return 0;
+
+            FlushEvent event = JfrEvents.beginFlush();
+            int written = 0;
+            int missing = 0;
+            for (int from = 0; from < commands.size(); from += batchSize) {
+                int to = Math.min(commands.size(), from + batchSize);
+                int[] updateCounts;
+                try {
+                    updateCounts = connection.executeBatch(commands.subList(from, to));
+                } catch (SQLibException | RuntimeException e) {
+                    // without update counts nothing of the batch is known to be executed
+                    BatchException batchFailure = e instanceof BatchException ? (BatchException) e : null;
+                    for (int i = from; i < commands.size(); i++) {
+                        if(i < to && batchFailure != null && batchFailure.wasExecuted(i - from)){
+                            written++;
+                            writtenStatements.add(1);
+                            flushedIncrements.add(Math.abs(deltas.get(i)));
+                        }else {
+                            pending.computeIfAbsent(keys.get(i), counterKey -> new LongAdder()).add(deltas.get(i));
+                        }
+                    }
+                    if(event != null) event.finish(IncrementCommand.class, tableOf(keys), written, true);
+                    throw e;
+                }
+                for (int i = from; i < to; i++) {
+                    // an update that changed no column didn't find the counter, an upsert always changes one
+                    if(!upsert && updateCounts != null && i - from < updateCounts.length && updateCounts[i - from] == 0){
+                        pending.computeIfAbsent(keys.get(i), counterKey -> new LongAdder()).add(deltas.get(i));
+                        missing++;
+                        continue;
+                    }
+                    written++;
+                    writtenStatements.add(1);
+                    flushedIncrements.add(Math.abs(deltas.get(i)));
+                    retireIfIdle(keys.get(i));
+                }
+            }
+            if(missing > 0){
+                LOGGER.warning(missing + " counters have no column to add to, their increments are kept until the columns are inserted. Use upsert() to insert them.");
+            }
+            if(event != null) event.finish(IncrementCommand.class, tableOf(keys), written, false);
+            return written;
+        }
+    }
+
+    // removes the counter if nothing was incremented since it was collected, so idle counters don't stay in memory
+    private void retireIfIdle(CounterKey key) {
+        LongAdder adder = pending.get(key);
+        if(adder == null || adder.sum() != 0) return;
+        if(pending.remove(key, adder)) retired.add(new AbstractMap.SimpleImmutableEntry<>(key, adder));
+    }
+
+    // an increment may have got a counter just before it was removed, it's added to the new counter of its key
+    private void restoreRetired() {
+        for (Map.Entry<CounterKey, LongAdder> entry : retired) {
+            long late = entry.getValue().sum();
+            if(late == 0) continue;
+            entry.getValue().add(-late);
+            pending.computeIfAbsent(entry.getKey(), counterKey -> new LongAdder()).add(late);
+        }
+        retired = new ArrayList<>();
+    }
+
+    // the table of all counters, null if they belong to several tables
+    private static String tableOf(List<CounterKey> keys) {
+        String tableName = keys.get(0).tableName;
+        for (CounterKey key : keys) {
+            if(!key.tableName.equals(tableName)) return null;
+        }
+        return tableName;
+    }
+
+    private IncrementCommand toCommand(CounterKey key, long delta) {
+        List<RowData> keyRows = slotRow == null
+                ? Arrays.asList(new RowData(key.keyRow, key.key))
+                : Arrays.asList(new RowData(key.keyRow, key.key), new RowData(slotRow, ThreadLocalRandom.current().nextInt(slots)));
+        IncrementCommand command = new IncrementCommand(key.tableName, key.counterRow, delta, keyRows);
+        return upsert ? command.upsert() : command;
+    }
+
+    /**
+     * @return Amount of counters that have pending increments or were incremented since the last flush
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return Sum of the absolute values of all written increments
+     */
+    public long getFlushedIncrements() {
+        return flushedIncrements.sum();
+    }
+
+    /**
+     * @return Amount of written statements
+     */
+    public long getWrittenStatements() {
+        return writtenStatements.sum();
+    }
+
+    /**
+     * Stop flushing in the background and write the remaining increments
+     * @throws SQLibException Thrown when the remaining increments couldn't be written
+     */
+    @Override
+    public void close() throws SQLibException {
+        closed = true;
+        Thread thread;
+        synchronized (this){
+            thread = flushThread;
+        }
+        if(thread != null) thread.interrupt();
+        flush();
+    }
+
+    private static final class CounterKey {
+
+        private final String tableName;
+        private final String counterRow;
+        private final String keyRow;
+        private final Object key;
+
+        // equal keys of different number types are the same counter
+        private final Object normalizedKey;
+
+        CounterKey(String tableName, String counterRow, String keyRow, Object key) {
+            this.tableName = tableName;
+            this.counterRow = counterRow;
+            this.keyRow = keyRow;
+            this.key = key;
+            this.normalizedKey = MultiEntryResult.normalize(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof CounterKey)) return false;
+            CounterKey other = (CounterKey) o;
+            return tableName.equals(other.tableName) && counterRow.equals(other.counterRow) && keyRow.equals(other.keyRow) && Objects.equals(normalizedKey, other.normalizedKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, counterRow, keyRow, normalizedKey);
+        }
+
+    }
+
+}
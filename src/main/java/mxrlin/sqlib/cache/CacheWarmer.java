@@ -0,0 +1,396 @@
+package mxrlin.sqlib.cache;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.GetEntriesCommand;
+import mxrlin.sqlib.command.get.KeysetPaginator;
+import mxrlin.sqlib.command.get.SelectCommand;
+import mxrlin.sqlib.compression.ValueCompression;
+import mxrlin.sqlib.concurrent.AdmissionController;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.snapshot.SnapshotReader;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Part of the SQLib API
+ *
+ * Loads the columns of an {@link EntryCache} before the application serves requests, so a restart doesn't send a burst
+ * of single {@link mxrlin.sqlib.command.get.GetEntryCommand}s to the database. Columns are loaded in batches, either
+ * from the database (whole tables or lists of keys) or from a local {@link mxrlin.sqlib.snapshot.TableSnapshot} file.
+ *
+ * Sources are loaded in parallel by {@link #parallelism(int)} threads and batches are rate limited by
+ * {@link #maxBatchesPerSecond(double)}, so the warm-up itself doesn't overload the database. All queries of one connection
+ * share its JDBC connection, so the parallelism mostly helps when snapshots are loaded next to database sources.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and an {@link EntryCache} with the cached tables
+ * 2. Create a new instance of this class and add the sources with {@link #table(String)}, {@link #keys(String, Collection)} and {@link #snapshot(Path)}.
+ * 3. Call {@link mxrlin.sqlib.SQLibConnection#warmUp(CacheWarmer)} or {@link #start()}.
+ * 4. Serve requests once {@link #isReady()} returns true or {@link #awaitReady(long, TimeUnit)} returned.
+ *
+ * Columns of a snapshot are as old as the snapshot and expire after the max age of their table counted from its export.
+ * Once the table is changed through the connection while the snapshot is loaded, the rest of the snapshot is skipped.
+ *
+ * @see EntryCache
+ */
+public class CacheWarmer {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheWarmer.class.getName());
+
+    // a batch is read again if the table was changed while it was read
+    private static final int BATCH_ATTEMPTS = 3;
+
+    // the connection the columns are read with
+    private IConnection connection;
+
+    // the cache the columns are added to
+    private EntryCache cache;
+
+    // loaded one after another by every thread
+    private List<Source> sources = new ArrayList<>();
+
+    private int parallelism = 4;
+    private int batchSize = GetEntriesCommand.MAX_KEYS_PER_STATEMENT;
+
+    // minimum time between the start of two batches that are read from the database, 0 = no limit
+    private long batchIntervalNanos;
+    private long nextBatchNanos;
+
+    private final AtomicLong loadedColumns = new AtomicLong();
+    private final AtomicInteger skippedBatches = new AtomicInteger();
+    private final AtomicReference<SQLibException> failure = new AtomicReference<>();
+    private volatile CompletableFuture<Void> ready;
+
+    /**
+     * @param connection The connection the columns are read with
+     * @param cache The cache the columns are added to, the warmed tables have to be cached by it
+     */
+    public CacheWarmer(IConnection connection, EntryCache cache) {
+        this.connection = connection;
+        this.cache = cache;
+    }
+
+    /**
+     * Load all columns of the table {@param tableName}, page by page in the order of its key row
+     * @param tableName The name of a table cached by the cache
+     */
+    public CacheWarmer table(String tableName) {
+        checkCached(tableName);
+        sources.add(new Source(tableName, null, null));
+        return this;
+    }
+
+    /**
+     * Load the columns with the keys {@param keys}, for example the keys that were used most before the restart
+     * @param tableName The name of a table cached by the cache
+     * @param keys The values of the key row
+     */
+    public CacheWarmer keys(String tableName, Collection<?> keys) {
+        checkCached(tableName);
+        sources.add(new Source(tableName, new ArrayList<Object>(new LinkedHashSet<Object>(keys)), null));
+        return this;
+    }
+
+    /**
+     * Load all columns of a snapshot file into the cached table the snapshot was taken of. Reading a snapshot doesn't
+     * query the database.
+     * @param path A file written by {@link mxrlin.sqlib.snapshot.TableSnapshot#export(IConnection, mxrlin.sqlib.misc.Table, Path, boolean)}
+     */
+    public CacheWarmer snapshot(Path path) {
+        sources.add(new Source(null, null, path));
+        return this;
+    }
+
+    /**
+     * @param threads Amount of sources that are loaded at the same time
+     */
+    public CacheWarmer parallelism(int threads) {
+        if(threads <= 0) throw new IllegalArgumentException("Parallelism has to be positive");
+        this.parallelism = threads;
+        return this;
+    }
+
+    /**
+     * @param columns Amount of columns read with one query or added to the cache at once
+     */
+    public CacheWarmer batchSize(int columns) {
+        if(columns <= 0) throw new IllegalArgumentException("Batch size has to be positive");
+        this.batchSize = columns;
+        return this;
+    }
+
+    /**
+     * Limit the amount of queries the warm-up sends to the database
+     * @param batches Maximum amount of batches per second that are read from the database, 0 = no limit
+     */
+    public CacheWarmer maxBatchesPerSecond(double batches) {
+        this.batchIntervalNanos = batches <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / batches);
+        return this;
+    }
+
+    /**
+     * Start loading all sources in background threads. Calling this again returns the running warm-up.
+     * @return Completes when all sources are loaded, or exceptionally with the first {@link SQLibException} of a source
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if(ready != null) return ready;
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ready = future;
+
+        List<Source> remaining = Collections.synchronizedList(new ArrayList<>(sources));
+        AtomicInteger runningThreads = new AtomicInteger(Math.max(1, Math.min(parallelism, remaining.size())));
+        ExecutorService executor = Executors.newFixedThreadPool(runningThreads.get(), runnable -> {
+            Thread thread = new Thread(runnable, "SQLib-CacheWarmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = runningThreads.get(); i > 0; i--) {
+            executor.execute(() -> {
+                AdmissionController.setPriority(AdmissionController.Priority.BACKGROUND);
+                Source source;
+                while ((source = poll(remaining)) != null){
+                    try {
+                        load(source);
+                    } catch (SQLibException e) {
+                        LOGGER.log(Level.WARNING, "Failed to warm up the cache with " + source, e);
+                        failure.compareAndSet(null, e);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to warm up the cache with " + source, e);
+                        failure.compareAndSet(null, new SQLibException("Failed to warm up the cache with " + source, e));
+                    }
+                }
+
+                if(runningThreads.decrementAndGet() == 0){
+                    executor.shutdown();
+                    SQLibException e = failure.get();
+                    if(e == null) future.complete(null);
+                    else future.completeExceptionally(e);
+                }
+            });
+        }
+
+        return future;
+    }
+
+    /**
+     * @return true if all sources were loaded successfully
+     */
+    public boolean isReady() {
+        CompletableFuture<Void> future = ready;
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * Wait until all sources are loaded
+     * @param timeout Maximum time to wait
+     * @param unit The unit of {@param timeout}
+     * @return true if all sources were loaded, false if the timeout elapsed first
+     * @throws SQLibException Thrown when the warm-up wasn't started, a source failed or the thread was interrupted
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws SQLibException {
+        CompletableFuture<Void> future = ready;
+        if(future == null) throw new SQLibException("The warm-up wasn't started");
+        try {
+            future.get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLibException("Interrupted while waiting for the warm-up", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof SQLibException) throw (SQLibException) e.getCause();
+            throw new SQLibException("Failed to warm up the cache", e);
+        }
+    }
+
+    /**
+     * @return The cache the columns are added to
+     */
+    public EntryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return Amount of columns added to the cache so far
+     */
+    public long getLoadedCount() {
+        return loadedColumns.get();
+    }
+
+    /**
+     * @return Amount of batches that weren't added, because their table was changed every time they were read
+     */
+    public int getSkippedBatchCount() {
+        return skippedBatches.get();
+    }
+
+    private void load(Source source) throws SQLibException {
+        if(source.path != null) loadSnapshot(source.path);
+        else if(source.keys != null) loadKeys(source.tableName, source.keys);
+        else loadTable(source.tableName);
+    }
+
+    private void loadTable(String tableName) throws SQLibException {
+        String keyRow = cache.getKeyRow(tableName);
+        KeysetPaginator paginator = connection.paginate(tableName, Collections.singletonList(keyRow), batchSize);
+        int attempt = 1;
+        while (paginator.hasMorePages()){
+            String cursor = paginator.getCursor();
+            long generation = cache.getGeneration(tableName);
+            awaitBatchPermit();
+
+            // a page that was read while the table was changed is read again, already loaded pages are kept
+            if(add(tableName, paginator.nextPage(), generation) || attempt == BATCH_ATTEMPTS){
+                attempt = 1;
+            }else{
+                paginator.resumeFrom(cursor);
+                attempt++;
+            }
+        }
+    }
+
+    private void loadKeys(String tableName, List<Object> keys) throws SQLibException {
+        String keyRow = cache.getKeyRow(tableName);
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<Object> chunk = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            SelectCommand command = new SelectCommand(tableName).where(Condition.in(keyRow, chunk));
+
+            for (int attempt = 1; attempt <= BATCH_ATTEMPTS; attempt++) {
+                long generation = cache.getGeneration(tableName);
+                awaitBatchPermit();
+
+                List<List<RowData>> columns = new ArrayList<>(chunk.size());
+                try (ResultSet set = connection.executeQuery(command)){
+                    while (set.next()){
+                        columns.add(RowData.fromResultSet(set));
+                    }
+                } catch (SQLException e) {
+                    throw new SQLibException("Couldn't read the columns of table " + tableName, e);
+                }
+
+                if(add(tableName, columns, generation)) break;
+            }
+        }
+    }
+
+    private void loadSnapshot(Path path) throws SQLibException {
+        try (SnapshotReader reader = new SnapshotReader(path)){
+            String tableName = reader.getTable().getTableName();
+            checkCached(tableName);
+            // once the table was invalidated, the snapshot may hold older values of the changed columns
+            long generation = cache.getGeneration(tableName);
+            long exportedMillis = reader.getExportedMillis();
+
+            List<List<RowData>> batch = new ArrayList<>(batchSize);
+            reader.forEach(column -> {
+                checkDecompressed(path, column);
+                batch.add(column);
+                if(batch.size() >= batchSize){
+                    add(tableName, batch, generation, exportedMillis);
+                    batch.clear();
+                }
+            });
+            if(!batch.isEmpty()) add(tableName, batch, generation, exportedMillis);
+        } catch (IllegalArgumentException e) {
+            throw new SQLibException("Can't warm up the cache with the snapshot " + path, e);
+        }
+    }
+
+    // snapshots of compressed rows that were exported as text hold the compressed bytes instead of the values
+    private static void checkDecompressed(Path path, List<RowData> column) throws SQLibException {
+        for (RowData row : column) {
+            if(row.getValue() instanceof String && ValueCompression.isCompressedText((String) row.getValue())){
+                throw new SQLibException("The snapshot " + path + " holds compressed values of the row " + row.getRowName()
+                        + " as text, export it again");
+            }
+        }
+    }
+
+    private boolean add(String tableName, List<List<RowData>> columns, long generation) {
+        return add(tableName, columns, generation, System.currentTimeMillis());
+    }
+
+    private boolean add(String tableName, List<List<RowData>> columns, long generation, long loadedMillis) {
+        if(cache.putAll(tableName, columns, generation, loadedMillis)){
+            loadedColumns.addAndGet(columns.size());
+            return true;
+        }
+        skippedBatches.incrementAndGet();
+        return false;
+    }
+
+    private void awaitBatchPermit() throws SQLibException {
+        if(batchIntervalNanos <= 0) return;
+
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if(nextBatchNanos - now < 0) nextBatchNanos = now;
+            waitNanos = nextBatchNanos - now;
+            nextBatchNanos += batchIntervalNanos;
+        }
+
+        if(waitNanos <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLibException("Interrupted while waiting for the next batch", e);
+        }
+    }
+
+    private void checkCached(String tableName) {
+        if(!cache.isCached(tableName)) throw new IllegalArgumentException("The table " + tableName + " isn't cached");
+    }
+
+    private static Source poll(List<Source> remaining) {
+        synchronized (remaining) {
+            return remaining.isEmpty() ? null : remaining.remove(0);
+        }
+    }
+
+    // a table, a list of keys of a table or a snapshot file
+    private static final class Source {
+
+        private final String tableName;
+        private final List<Object> keys;
+        private final Path path;
+
+        Source(String tableName, List<Object> keys, Path path) {
+            this.tableName = tableName;
+            this.keys = keys;
+            this.path = path;
+        }
+
+        @Override
+        public String toString() {
+            if(path != null) return "snapshot " + path;
+            if(keys != null) return keys.size() + " keys of table " + tableName;
+            return "table " + tableName;
+        }
+
+    }
+
+}
@@ -0,0 +1,563 @@
+package mxrlin.sqlib.cache;
+
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.MultiEntryResult;
+import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Part of the SQLib API
+ *
+ * A second cache tier in a memory-mapped local file, beneath the columns the {@link EntryCache} keeps on the heap.
+ * Columns are appended to the file and found through an index in memory, so a lookup that misses the heap costs a
+ * local read instead of a database round trip. Removals are appended as well, and the file is compacted when it's full.
+ *
+ * The file survives restarts: the index is rebuilt from the records when it's opened, so the cache is warm from the
+ * start. Updates that happened while the application was stopped can't be seen, so columns of an earlier run are only
+ * used for {@link #DEFAULT_MAX_AGE_MILLIS} after they were written, unless a {@link #maxAge(long, TimeUnit)} is set.
+ * Tables that are also changed by other applications should have a max age or be removed with {@link #removeTable(String)}.
+ *
+ * 1. Create an instance with the file, the size of the file and the maximum amount of columns.
+ * 2. Add it to an {@link EntryCache} with {@link EntryCache#secondLevel(DiskCache)}, which keeps it up to date.
+ * 3. Close it with the application.
+ *
+ * File layout:     [magic int][version int][end offset long]
+ *                  [length int][crc32 int][type byte, written millis long, table, key, rows and values] ...
+ *
+ * @see EntryCache
+ */
+public class DiskCache implements AutoCloseable {
+
+    /**
+     * Default size of the cache file
+     */
+    public static final int DEFAULT_CAPACITY = 256 * 1024 * 1024;
+
+    /**
+     * Max age of the columns of an earlier run if no {@link #maxAge(long, TimeUnit)} is set
+     */
+    public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int MAGIC = 0x53514443; // SQDC
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte REMOVE_TABLE = 3;
+
+    // the cache file
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // (table, key) -> record of the column, in least recently used order
+    private final LinkedHashMap<EntryKey, Slot> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxEntries;
+
+    // offset after the last record
+    private int endOffset;
+
+    // bytes of records that are still in the index
+    private long liveBytes;
+
+    // columns older than this are ignored, 0 = only columns of an earlier run expire, after DEFAULT_MAX_AGE_MILLIS
+    private long maxAgeMillis;
+
+    // columns written before are from an earlier run
+    private final long openedMillis = System.currentTimeMillis();
+
+    private boolean closed;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    /**
+     * Open or create the cache file {@param path} with {@link #DEFAULT_CAPACITY} and up to one million columns
+     * @param path The cache file
+     * @throws SQLibException Thrown when the file couldn't be opened or isn't a cache file
+     */
+    public DiskCache(Path path) throws SQLibException {
+        this(path, DEFAULT_CAPACITY, 1_000_000);
+    }
+
+    /**
+     * Open or create the cache file {@param path}. The columns of an existing file are kept.
+     * @param path The cache file
+     * @param capacity Size of the file in bytes, an existing file keeps its size
+     * @param maxEntries Maximum amount of cached columns, the least recently used columns are removed first
+     * @throws SQLibException Thrown when the file couldn't be opened or isn't a cache file
+     */
+    public DiskCache(Path path, int capacity, int maxEntries) throws SQLibException {
+        if(maxEntries <= 0) throw new IllegalArgumentException("Max entries has to be positive");
+        this.path = path;
+        this.maxEntries = maxEntries;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean existing = channel.size() >= HEADER_SIZE;
+            int size = existing ? (int) Math.min(Integer.MAX_VALUE, channel.size()) : capacity;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new SQLibException("Failed to open the cache file " + path, e);
+        }
+
+        if(buffer.getInt(0) == MAGIC){
+            if(buffer.getInt(4) != VERSION) throw new SQLibException("Unsupported cache file version " + buffer.getInt(4) + " in " + path);
+            load((int) Math.min(buffer.getLong(8), buffer.capacity()));
+        }else{
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            endOffset = HEADER_SIZE;
+            writeHeader();
+        }
+    }
+
+    /**
+     * @param maxAge Columns that were written longer ago are ignored, also after a restart. Replaces
+     *               {@link #DEFAULT_MAX_AGE_MILLIS} for the columns of an earlier run.
+     * @param unit The unit of {@param maxAge}
+     */
+    public synchronized DiskCache maxAge(long maxAge, TimeUnit unit) {
+        if(maxAge <= 0) throw new IllegalArgumentException("Max age has to be positive");
+        this.maxAgeMillis = unit.toMillis(maxAge);
+        return this;
+    }
+
+    /**
+     * Get a cached column
+     * @param tableName The name of the table
+     * @param key The value of the key row
+     * @return The rows of the column and their values, null if the column isn't cached
+     */
+    public List<RowData> get(String tableName, Object key) {
+        Entry entry = getEntry(tableName, key);
+        return entry == null ? null : entry.column;
+    }
+
+    // the column and the time it was written, null if it isn't cached
+    synchronized Entry getEntry(String tableName, Object key) {
+        EntryKey entryKey = new EntryKey(tableName, key);
+        Slot slot = closed ? null : index.get(entryKey);
+        if(slot == null || isExpired(slot)){
+            if(slot != null) removeSlot(entryKey);
+            misses.increment();
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(read(slot.offset + RECORD_HEADER_SIZE, slot.length - RECORD_HEADER_SIZE)));
+            in.readByte();
+            in.readLong();
+            in.readUTF();
+            ValueIO.read(in);
+            int count = ValueIO.readLength(in, 3);
+            List<RowData> column = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                column.add(new RowData(in.readUTF(), ValueIO.read(in)));
+            }
+            hits.increment();
+            return new Entry(column, slot.writtenMillis);
+        } catch (IOException e) {
+            // a damaged record is a miss, the column is read from the database again
+            removeSlot(entryKey);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Add a column to the cache, it replaces the cached column with the same key
+     * @param tableName The name of the table
+     * @param key The value of the key row
+     * @param column The rows of the column and their values
+     * @return true if the column was added, false if a value can't be stored or the column is too large
+     */
+    public boolean put(String tableName, Object key, List<RowData> column) {
+        return put(tableName, key, column, System.currentTimeMillis());
+    }
+
+    // writtenMillis = the time the column was read from the database
+    synchronized boolean put(String tableName, Object key, List<RowData> column, long writtenMillis) {
+        if(closed || key == null) return false;
+        for (RowData row : column) {
+            if(!ValueIO.isSupported(row.getValue())) return false;
+        }
+
+        byte[] payload;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeRecordStart(out, PUT, tableName, writtenMillis);
+            ValueIO.write(out, key);
+            ValueIO.writeVarInt(out, column.size());
+            for (RowData row : column) {
+                out.writeUTF(row.getRowName());
+                ValueIO.write(out, row.getValue());
+            }
+            out.flush();
+            payload = bytes.toByteArray();
+        } catch (IOException e) {
+            return false;
+        }
+        // a single column may use a quarter of the file at most
+        if(RECORD_HEADER_SIZE + payload.length > (buffer.capacity() - HEADER_SIZE) / 4) return false;
+
+        EntryKey entryKey = new EntryKey(tableName, key);
+        removeSlot(entryKey);
+        int offset = append(payload);
+        Slot slot = new Slot(offset, RECORD_HEADER_SIZE + payload.length, writtenMillis);
+        index.put(entryKey, slot);
+        liveBytes += slot.length;
+
+        while (index.size() > maxEntries){
+            evict();
+        }
+        return true;
+    }
+
+    /**
+     * Remove the column with the key {@param key}
+     * @param tableName The name of the table
+     * @param key The value of the key row
+     */
+    public synchronized void remove(String tableName, Object key) {
+        EntryKey entryKey = new EntryKey(tableName, key);
+        if(closed || !index.containsKey(entryKey)) return;
+        removeSlot(entryKey);
+        appendRemove(tableName, key);
+    }
+
+    /**
+     * Remove all columns of the table {@param tableName}
+     * @param tableName The name of the table
+     */
+    public synchronized void removeTable(String tableName) {
+        if(closed) return;
+        boolean removed = false;
+        for (Iterator<Map.Entry<EntryKey, Slot>> iterator = index.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<EntryKey, Slot> entry = iterator.next();
+            if(!entry.getKey().tableName.equals(tableName)) continue;
+            liveBytes -= entry.getValue().length;
+            iterator.remove();
+            removed = true;
+        }
+        if(!removed) return;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeRecordStart(out, REMOVE_TABLE, tableName, System.currentTimeMillis());
+            out.flush();
+            append(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode a removal", e);
+        }
+    }
+
+    /**
+     * Remove all columns of all tables
+     */
+    public synchronized void clear() {
+        if(closed) return;
+        index.clear();
+        liveBytes = 0;
+        endOffset = HEADER_SIZE;
+        writeHeader();
+    }
+
+    /**
+     * @return The amount of cached columns
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return The amount of bytes used by records of cached columns
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * @return Amount of lookups answered by the cache file
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Amount of lookups of columns that weren't cached or expired
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Amount of columns that were removed to stay within the maximum amount of columns or the size of the file
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Amount of compactions of the file
+     */
+    public long getCompactionCount() {
+        return compactions.sum();
+    }
+
+    /**
+     * @return The cache file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Force the cache file to disk and close it
+     * @throws SQLibException Thrown when the file couldn't be closed
+     */
+    @Override
+    public synchronized void close() throws SQLibException {
+        if(closed) return;
+        closed = true;
+        buffer.force();
+        index.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to close the cache file " + path, e);
+        }
+    }
+
+    private boolean isExpired(Slot slot) {
+        long age = System.currentTimeMillis() - slot.writtenMillis;
+        if(maxAgeMillis > 0) return age > maxAgeMillis;
+        // the columns of this run are kept up to date, those of an earlier run may have missed updates
+        return slot.writtenMillis < openedMillis && age > DEFAULT_MAX_AGE_MILLIS;
+    }
+
+    private void removeSlot(EntryKey entryKey) {
+        Slot slot = index.remove(entryKey);
+        if(slot != null) liveBytes -= slot.length;
+    }
+
+    // the record of an evicted column stays in the file until the next compaction, the removal keeps it from being loaded again
+    private void evict() {
+        Map.Entry<EntryKey, Slot> eldest = index.entrySet().iterator().next();
+        removeSlot(eldest.getKey());
+        appendRemove(eldest.getKey().tableName, eldest.getKey().key);
+        evictions.increment();
+    }
+
+    private void appendRemove(String tableName, Object key) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeRecordStart(out, REMOVE, tableName, System.currentTimeMillis());
+            ValueIO.write(out, key);
+            out.flush();
+            append(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode a removal", e);
+        }
+    }
+
+    private int append(byte[] payload) {
+        int length = RECORD_HEADER_SIZE + payload.length;
+        if(endOffset + length > buffer.capacity()) compact(length);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        int offset = endOffset;
+        buffer.putInt(offset, payload.length);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        ByteBuffer target = buffer.duplicate();
+        target.position(offset + RECORD_HEADER_SIZE);
+        target.put(payload);
+
+        endOffset += length;
+        // records after the end offset of the header are never loaded, so a torn record is never read
+        writeHeader();
+        return offset;
+    }
+
+    // moves the records of cached columns to the start of the file, evicting the least recently used columns until
+    // a quarter of the file and {@param needed} bytes are free
+    private void compact(int needed) {
+        long target = Math.min(buffer.capacity() - HEADER_SIZE - needed, (buffer.capacity() - HEADER_SIZE) * 3L / 4);
+        while (!index.isEmpty() && liveBytes > target){
+            Map.Entry<EntryKey, Slot> eldest = index.entrySet().iterator().next();
+            removeSlot(eldest.getKey());
+            evictions.increment();
+        }
+
+        // nothing is loaded from a file that is compacted while the application stops
+        endOffset = HEADER_SIZE;
+        writeHeader();
+
+        List<Slot> slots = new ArrayList<>(index.values());
+        slots.sort(Comparator.comparingInt(slot -> slot.offset));
+        byte[] chunk = new byte[64 * 1024];
+        int position = HEADER_SIZE;
+        for (Slot slot : slots) {
+            // the target is always before the source, so copying from front to back never overwrites unread bytes
+            for (int copied = 0; copied < slot.length; copied += chunk.length) {
+                int length = Math.min(chunk.length, slot.length - copied);
+                ByteBuffer source = buffer.duplicate();
+                source.position(slot.offset + copied);
+                source.get(chunk, 0, length);
+                ByteBuffer destination = buffer.duplicate();
+                destination.position(position + copied);
+                destination.put(chunk, 0, length);
+            }
+            slot.offset = position;
+            position += slot.length;
+        }
+
+        endOffset = position;
+        writeHeader();
+        compactions.increment();
+    }
+
+    private void load(int end) {
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= end){
+            int length = buffer.getInt(offset);
+            if(length <= 0 || offset + RECORD_HEADER_SIZE + length > end) break;
+
+            byte[] payload = read(offset + RECORD_HEADER_SIZE, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if((int) crc.getValue() != buffer.getInt(offset + 4)) break;
+
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = in.readByte();
+                long writtenMillis = in.readLong();
+                String tableName = in.readUTF();
+                if(type == REMOVE_TABLE){
+                    index.keySet().removeIf(key -> key.tableName.equals(tableName));
+                }else{
+                    EntryKey entryKey = new EntryKey(tableName, ValueIO.read(in));
+                    index.remove(entryKey);
+                    if(type == PUT) index.put(entryKey, new Slot(offset, RECORD_HEADER_SIZE + length, writtenMillis));
+                }
+            } catch (IOException e) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+
+        endOffset = offset;
+        liveBytes = 0;
+        for (Slot slot : index.values()) {
+            liveBytes += slot.length;
+        }
+        while (index.size() > maxEntries){
+            evict();
+        }
+        writeHeader();
+    }
+
+    private static void writeRecordStart(DataOutputStream out, byte type, String tableName, long writtenMillis) throws IOException {
+        out.writeByte(type);
+        out.writeLong(writtenMillis);
+        out.writeUTF(tableName);
+    }
+
+    private byte[] read(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return bytes;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(8, endOffset);
+    }
+
+    // a table and a key, equal for equal numbers of different types
+    private static final class EntryKey {
+
+        private final String tableName;
+        private final Object key;
+        private final Object normalizedKey;
+
+        EntryKey(String tableName, Object key) {
+            this.tableName = tableName;
+            this.key = key;
+            this.normalizedKey = MultiEntryResult.normalize(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof EntryKey)) return false;
+            EntryKey other = (EntryKey) o;
+            return tableName.equals(other.tableName) && Objects.equals(normalizedKey, other.normalizedKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, normalizedKey);
+        }
+
+    }
+
+    // a cached column and the time it was written
+    static final class Entry {
+
+        final List<RowData> column;
+        final long writtenMillis;
+
+        Entry(List<RowData> column, long writtenMillis) {
+            this.column = column;
+            this.writtenMillis = writtenMillis;
+        }
+
+    }
+
+    // position of a record in the file
+    private static final class Slot {
+
+        private int offset;
+        private final int length;
+        private final long writtenMillis;
+
+        Slot(int offset, int length, long writtenMillis) {
+            this.offset = offset;
+            this.length = length;
+            this.writtenMillis = writtenMillis;
+        }
+
+    }
+
+}
@@ -0,0 +1,450 @@
+package mxrlin.sqlib.cache;
+
+import mxrlin.sqlib.command.get.GetEntryCommand;
+import mxrlin.sqlib.command.set.DeleteColumnCommand;
+import mxrlin.sqlib.command.set.IncrementCommand;
+import mxrlin.sqlib.command.set.InsertColumnCommand;
+import mxrlin.sqlib.command.set.InsertColumnsCommand;
+import mxrlin.sqlib.command.set.UpdateEntryCommand;
+import mxrlin.sqlib.command.set.UpdatingCommand;
+import mxrlin.sqlib.jfr.CacheEvent;
+import mxrlin.sqlib.jfr.JfrEvents;
+import mxrlin.sqlib.misc.CachedResult;
+import mxrlin.sqlib.misc.MultiEntryResult;
+import mxrlin.sqlib.misc.RowData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Part of the SQLib API
+ *
+ * Keeps whole columns of configured tables in memory, looked up by a unique key row. {@link GetEntryCommand}s that
+ * reference a column by its key row are answered from the cache without a database round trip.
+ *
+ * Columns are added by {@link #put(String, List)}, usually through a {@link CacheWarmer}, and by the connection when a
+ * lookup by the key row missed: it reads the whole column and adds it, unless the table was changed meanwhile.
+ * Every update executed through the connection invalidates the affected column, or the whole table if the affected
+ * columns can't be determined.
+ *
+ * Updates of other nodes or applications don't invalidate anything. Tables that aren't only written through this
+ * connection need a max age, which limits how long a changed column can be served from the cache.
+ *
+ * With a {@link #secondLevel(DiskCache)} every added column is also written to a local file, which can hold more
+ * columns than the heap and survives restarts. Lookups that miss the heap are answered from the file before they go to
+ * the database, and invalidations remove the columns from both tiers.
+ *
+ * 1. Create a new instance of this class and add the cached tables with {@link #cacheTable(String, String, int, long, TimeUnit)}.
+ * 2. Optionally add a {@link DiskCache} as second tier.
+ * 3. Load the columns with a {@link CacheWarmer}.
+ * 4. Use it with {@link mxrlin.sqlib.SQLibConnection#warmUp(CacheWarmer)} or {@link mxrlin.sqlib.SQLibConnection#setEntryCache(EntryCache)}.
+ *
+ * @see CacheWarmer
+ * @see DiskCache
+ */
+public class EntryCache {
+
+    // table name -> cached columns of the table
+    private final ConcurrentHashMap<String, TableCache> tables = new ConcurrentHashMap<>();
+
+    // second tier in a local file, null = heap only
+    private volatile DiskCache secondLevel;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Cache columns of the table {@param tableName} without a max age. Only use this for tables that are written
+     * through this connection alone, changes of other nodes are never seen.
+     * @param tableName The name of the table
+     * @param keyRow A unique row the columns are looked up by, for example the primary key
+     * @param maxEntries Maximum amount of cached columns, the least recently used columns are removed first
+     */
+    public EntryCache cacheTable(String tableName, String keyRow, int maxEntries) {
+        if(maxEntries <= 0) throw new IllegalArgumentException("Max entries has to be positive");
+        tables.put(tableName, new TableCache(keyRow, maxEntries, 0));
+        return this;
+    }
+
+    /**
+     * Cache columns of the table {@param tableName}, each column is read from the database again after {@param maxAge}
+     * @param tableName The name of the table
+     * @param keyRow A unique row the columns are looked up by, for example the primary key
+     * @param maxEntries Maximum amount of cached columns, the least recently used columns are removed first
+     * @param maxAge Time a column is served from the cache after it was read, changes of other nodes are seen after it
+     * @param unit The unit of {@param maxAge}
+     */
+    public EntryCache cacheTable(String tableName, String keyRow, int maxEntries, long maxAge, TimeUnit unit) {
+        if(maxEntries <= 0) throw new IllegalArgumentException("Max entries has to be positive");
+        if(maxAge <= 0) throw new IllegalArgumentException("Max age has to be positive");
+        tables.put(tableName, new TableCache(keyRow, maxEntries, unit.toMillis(maxAge)));
+        return this;
+    }
+
+    /**
+     * Keep the columns of all cached tables in {@param diskCache} as well, it's checked before the database when a
+     * column isn't on the heap. Columns already in the file from a previous run are used, if their table is cached.
+     * @param diskCache The second tier, null to only use the heap
+     */
+    public EntryCache secondLevel(DiskCache diskCache) {
+        this.secondLevel = diskCache;
+        return this;
+    }
+
+    /**
+     * @return The second tier in a local file, null if only the heap is used
+     */
+    public DiskCache getSecondLevel() {
+        return secondLevel;
+    }
+
+    /**
+     * @return true if columns of the table {@param tableName} are cached
+     */
+    public boolean isCached(String tableName) {
+        return tables.containsKey(tableName);
+    }
+
+    /**
+     * @return The row the columns of {@param tableName} are looked up by, null if the table isn't cached
+     */
+    public String getKeyRow(String tableName) {
+        TableCache table = tables.get(tableName);
+        return table == null ? null : table.keyRow;
+    }
+
+    /**
+     * @return The names of all cached tables
+     */
+    public List<String> getTableNames() {
+        return new ArrayList<>(tables.keySet());
+    }
+
+    /**
+     * Get a cached column
+     * @param tableName The name of the table
+     * @param key The value of the key row
+     * @return The rows of the column and their values, null if the column isn't cached
+     */
+    public List<RowData> get(String tableName, Object key) {
+        TableCache table = tables.get(tableName);
+        if(table == null) return null;
+
+        Map<String, Object> column = getColumn(tableName, table, key);
+        if(column == null) return null;
+
+        List<RowData> rowData = new ArrayList<>(column.size());
+        for (Map.Entry<String, Object> entry : column.entrySet()) {
+            rowData.add(new RowData(entry.getKey(), entry.getValue()));
+        }
+        return rowData;
+    }
+
+    /**
+     * Answer {@param command} out of the cache
+     * @param command The command that should be answered
+     * @return The result with the single requested entry, null if the column isn't cached or isn't referenced by its key row
+     */
+    public CachedResult lookup(GetEntryCommand command) {
+        TableCache table = tables.get(command.getTableName());
+        if(table == null) return null;
+
+        CacheEvent event = JfrEvents.beginCacheLookup();
+        RowData atRow = command.getAtRow();
+        Map<String, Object> column = atRow.getRowName().equals(table.keyRow) ? getColumn(command.getTableName(), table, atRow.getValue()) : null;
+        if(column == null || !column.containsKey(command.getRowName())){
+            misses.increment();
+            if(event != null) event.finish(GetEntryCommand.class, command.getTableName(), false);
+            return null;
+        }
+
+        hits.increment();
+        if(event != null) event.finish(GetEntryCommand.class, command.getTableName(), true);
+        return CachedResult.ofColumn(Collections.singletonList(new RowData(command.getRowName(), column.get(command.getRowName()))));
+    }
+
+    // the column from the heap, or from the second tier which moves it onto the heap
+    private Map<String, Object> getColumn(String tableName, TableCache table, Object key) {
+        Map<String, Object> column = table.get(key);
+        DiskCache diskCache = secondLevel;
+        if(column != null || diskCache == null || key == null) return column;
+
+        long generation = table.getGeneration();
+        DiskCache.Entry entry = diskCache.getEntry(tableName, key);
+        if(entry == null) return null;
+        // the column keeps the age it has in the file
+        if(table.isExpired(entry.writtenMillis)){
+            diskCache.remove(tableName, key);
+            return null;
+        }
+        table.put(entry.column, generation, entry.writtenMillis);
+        return toMap(entry.column);
+    }
+
+    /**
+     * Add a column to the cache. The column is ignored if its table isn't cached or it doesn't contain the key row.
+     * @param tableName The name of the table
+     * @param column The rows of the column and their values, should contain all rows that are looked up
+     */
+    public void put(String tableName, List<RowData> column) {
+        TableCache table = tables.get(tableName);
+        if(table == null) return;
+        synchronized (table) {
+            long loadedMillis = System.currentTimeMillis();
+            if(table.put(column, table.getGeneration(), loadedMillis)) putSecondLevel(tableName, table, column, loadedMillis);
+        }
+    }
+
+    // called while holding the lock of the table, so an invalidation can't happen between both tiers
+    private void putSecondLevel(String tableName, TableCache table, List<RowData> column, long loadedMillis) {
+        DiskCache diskCache = secondLevel;
+        if(diskCache == null) return;
+        RowData keyData = findRow(column, table.keyRow);
+        if(keyData != null) diskCache.put(tableName, keyData.getValue(), column, loadedMillis);
+    }
+
+    /**
+     * Add columns that were read while the generation of the table was {@param generation}. The columns are ignored if
+     * the table was changed in the meantime, so columns read before an update never replace the result of the update.
+     * @param tableName The name of the table
+     * @param columns The columns
+     * @param generation The generation of the table before the columns were read, see {@link #getGeneration(String)}
+     * @return true if the columns were added
+     */
+    public boolean putAll(String tableName, List<List<RowData>> columns, long generation) {
+        return putAll(tableName, columns, generation, System.currentTimeMillis());
+    }
+
+    /**
+     * Add columns that were read from the database at {@param loadedMillis}, for example from a snapshot. They expire
+     * after the max age of the table counted from that time.
+     * @param tableName The name of the table
+     * @param columns The columns
+     * @param generation The generation of the table before the columns were read, see {@link #getGeneration(String)}
+     * @param loadedMillis The time the columns were read from the database
+     * @return true if the columns were added
+     */
+    public boolean putAll(String tableName, List<List<RowData>> columns, long generation, long loadedMillis) {
+        TableCache table = tables.get(tableName);
+        if(table == null) return false;
+        synchronized (table) {
+            if(table.getGeneration() != generation) return false;
+            for (List<RowData> column : columns) {
+                if(table.put(column, generation, loadedMillis)) putSecondLevel(tableName, table, column, loadedMillis);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return A number that changes every time the table {@param tableName} is invalidated, -1 if the table isn't cached
+     */
+    public long getGeneration(String tableName) {
+        TableCache table = tables.get(tableName);
+        return table == null ? -1 : table.getGeneration();
+    }
+
+    /**
+     * Remove the column with the key {@param key}
+     * @param tableName The name of the table
+     * @param key The value of the key row
+     */
+    public void invalidate(String tableName, Object key) {
+        TableCache table = tables.get(tableName);
+        if(table != null) remove(tableName, table, key);
+    }
+
+    /**
+     * Remove all columns of the table {@param tableName}
+     * @param tableName The name of the table
+     */
+    public void invalidateTable(String tableName) {
+        TableCache table = tables.get(tableName);
+        if(table != null) clear(tableName, table);
+    }
+
+    /**
+     * Remove all columns of all tables
+     */
+    public void invalidateAll() {
+        for (Map.Entry<String, TableCache> entry : tables.entrySet()) {
+            clear(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void remove(String tableName, TableCache table, Object key) {
+        synchronized (table) {
+            table.remove(key);
+            DiskCache diskCache = secondLevel;
+            if(diskCache != null) diskCache.remove(tableName, key);
+        }
+    }
+
+    private void clear(String tableName, TableCache table) {
+        synchronized (table) {
+            table.clear();
+            DiskCache diskCache = secondLevel;
+            if(diskCache != null) diskCache.removeTable(tableName);
+        }
+    }
+
+    /**
+     * Remove the columns that may be changed by {@param command}
+     * @param command An executed or journaled update
+     */
+    public void onUpdate(UpdatingCommand command) {
+        String tableName = command.getTableName();
+        if(tableName == null){
+            invalidateAll();
+            return;
+        }
+
+        TableCache table = tables.get(tableName);
+        if(table == null) return;
+
+        List<List<RowData>> referenced = new ArrayList<>();
+        if(command instanceof InsertColumnCommand) referenced.add(((InsertColumnCommand) command).getRowData());
+        else if(command instanceof InsertColumnsCommand) referenced.addAll(((InsertColumnsCommand) command).getColumns());
+        else if(command instanceof DeleteColumnCommand) referenced.add(((DeleteColumnCommand) command).getRowData());
+        else if(command instanceof UpdateEntryCommand) referenced.add(((UpdateEntryCommand) command).getUpdateAt());
+        else if(command instanceof IncrementCommand) referenced.add(((IncrementCommand) command).getKeyRows());
+
+        // the affected columns are unknown (for example DeleteWhereCommand)
+        if(referenced.isEmpty()){
+            clear(tableName, table);
+            return;
+        }
+
+        for (List<RowData> rowData : referenced) {
+            RowData keyData = findRow(rowData, table.keyRow);
+            if(keyData == null){
+                clear(tableName, table);
+                return;
+            }
+            remove(tableName, table, keyData.getValue());
+        }
+    }
+
+    /**
+     * @return The amount of cached columns of the table {@param tableName}
+     */
+    public int size(String tableName) {
+        TableCache table = tables.get(tableName);
+        return table == null ? 0 : table.size();
+    }
+
+    /**
+     * @return Amount of {@link GetEntryCommand}s answered by the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Amount of {@link GetEntryCommand}s on cached tables that had to go to the database
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static Map<String, Object> toMap(List<RowData> rowData) {
+        Map<String, Object> column = new LinkedHashMap<>();
+        for (RowData row : rowData) {
+            column.put(row.getRowName(), row.getValue());
+        }
+        return Collections.unmodifiableMap(column);
+    }
+
+    private static RowData findRow(List<RowData> rowData, String rowName) {
+        for (RowData row : rowData) {
+            if(row.getRowName().equals(rowName)) return row;
+        }
+        return null;
+    }
+
+    // the cached columns of one table, in least recently used order
+    private static final class TableCache {
+
+        private final String keyRow;
+
+        // columns read longer ago are removed when they are looked up, 0 = no max age
+        private final long maxAgeMillis;
+
+        private final LinkedHashMap<Object, CachedColumn> columns;
+        private long generation;
+
+        TableCache(String keyRow, int maxEntries, long maxAgeMillis) {
+            this.keyRow = keyRow;
+            this.maxAgeMillis = maxAgeMillis;
+            this.columns = new LinkedHashMap<Object, CachedColumn>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, CachedColumn> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized Map<String, Object> get(Object key) {
+            Object normalizedKey = MultiEntryResult.normalize(key);
+            CachedColumn column = columns.get(normalizedKey);
+            if(column == null) return null;
+            if(isExpired(column.loadedMillis)){
+                columns.remove(normalizedKey);
+                return null;
+            }
+            return column.values;
+        }
+
+        boolean isExpired(long loadedMillis) {
+            return maxAgeMillis > 0 && System.currentTimeMillis() - loadedMillis > maxAgeMillis;
+        }
+
+        synchronized boolean put(List<RowData> rowData, long generation, long loadedMillis) {
+            if(this.generation != generation) return false;
+            RowData keyData = findRow(rowData, keyRow);
+            if(keyData == null || keyData.getValue() == null) return false;
+
+            columns.put(MultiEntryResult.normalize(keyData.getValue()), new CachedColumn(toMap(rowData), loadedMillis));
+            return true;
+        }
+
+        synchronized void remove(Object key) {
+            generation++;
+            columns.remove(MultiEntryResult.normalize(key));
+        }
+
+        synchronized void clear() {
+            generation++;
+            columns.clear();
+        }
+
+        synchronized long getGeneration() {
+            return generation;
+        }
+
+        synchronized int size() {
+            return columns.size();
+        }
+
+    }
+
+    // the rows of a column and the time they were read
+    private static final class CachedColumn {
+
+        private final Map<String, Object> values;
+        private final long loadedMillis;
+
+        CachedColumn(Map<String, Object> values, long loadedMillis) {
+            this.values = values;
+            this.loadedMillis = loadedMillis;
+        }
+
+    }
+
+}
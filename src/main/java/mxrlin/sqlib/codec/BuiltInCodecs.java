@@ -0,0 +1,166 @@
+package mxrlin.sqlib.codec;
+
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * The codecs every {@link CodecRegistry#withBuiltIns()} contains. Lengths and integers are written as variable length
+ * integers, so small arrays and small numbers take few bytes.
+ */
+final class BuiltInCodecs {
+
+    private BuiltInCodecs() {}
+
+    static void registerAll(CodecRegistry registry) {
+        registry.register(new UuidCodec());
+        registry.register(new IntArrayCodec());
+        registry.register(new LongArrayCodec());
+        registry.register(new DoubleArrayCodec());
+        registry.register(new StringArrayCodec());
+    }
+
+    // 16 bytes instead of 36 characters
+    static final class UuidCodec implements ValueCodec<UUID> {
+
+        @Override
+        public Class<UUID> getType() {
+            return UUID.class;
+        }
+
+        @Override
+        public void encode(UUID value, DataOutput out) throws IOException {
+            out.writeLong(value.getMostSignificantBits());
+            out.writeLong(value.getLeastSignificantBits());
+        }
+
+        @Override
+        public UUID decode(DataInput in) throws IOException {
+            return new UUID(in.readLong(), in.readLong());
+        }
+
+    }
+
+    // zigzag encoded, so small negative numbers are small as well
+    static final class IntArrayCodec implements ValueCodec<int[]> {
+
+        @Override
+        public Class<int[]> getType() {
+            return int[].class;
+        }
+
+        @Override
+        public void encode(int[] value, DataOutput out) throws IOException {
+            ValueIO.writeVarInt(out, value.length);
+            for (int i : value) {
+                ValueIO.writeVarInt(out, (i << 1) ^ (i >> 31));
+            }
+        }
+
+        @Override
+        public int[] decode(DataInput in) throws IOException {
+            int[] value = new int[ValueIO.readLength(in, 1)];
+            for (int i = 0; i < value.length; i++) {
+                int zigzag = ValueIO.readVarInt(in);
+                value[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            return value;
+        }
+
+    }
+
+    // zigzag encoded by ValueIO
+    static final class LongArrayCodec implements ValueCodec<long[]> {
+
+        @Override
+        public Class<long[]> getType() {
+            return long[].class;
+        }
+
+        @Override
+        public void encode(long[] value, DataOutput out) throws IOException {
+            ValueIO.writeVarInt(out, value.length);
+            for (long l : value) {
+                ValueIO.writeVarLong(out, l);
+            }
+        }
+
+        @Override
+        public long[] decode(DataInput in) throws IOException {
+            long[] value = new long[ValueIO.readLength(in, 1)];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = ValueIO.readVarLong(in);
+            }
+            return value;
+        }
+
+    }
+
+    static final class DoubleArrayCodec implements ValueCodec<double[]> {
+
+        @Override
+        public Class<double[]> getType() {
+            return double[].class;
+        }
+
+        @Override
+        public void encode(double[] value, DataOutput out) throws IOException {
+            ValueIO.writeVarInt(out, value.length);
+            for (double d : value) {
+                out.writeDouble(d);
+            }
+        }
+
+        @Override
+        public double[] decode(DataInput in) throws IOException {
+            double[] value = new double[ValueIO.readLength(in, 8)];
+            for (int i = 0; i < value.length; i++) {
+                value[i] = in.readDouble();
+            }
+            return value;
+        }
+
+    }
+
+    // lengths are written + 1, null elements with 0
+    static final class StringArrayCodec implements ValueCodec<String[]> {
+
+        @Override
+        public Class<String[]> getType() {
+            return String[].class;
+        }
+
+        @Override
+        public void encode(String[] value, DataOutput out) throws IOException {
+            ValueIO.writeVarInt(out, value.length);
+            for (String s : value) {
+                if(s == null){
+                    ValueIO.writeVarInt(out, 0);
+                    continue;
+                }
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                ValueIO.writeVarInt(out, bytes.length + 1);
+                out.write(bytes);
+            }
+        }
+
+        @Override
+        public String[] decode(DataInput in) throws IOException {
+            String[] value = new String[ValueIO.readLength(in, 1)];
+            for (int i = 0; i < value.length; i++) {
+                int length = ValueIO.readLength(in, 1);
+                if(length == 0) continue;
+                byte[] bytes = new byte[length - 1];
+                in.readFully(bytes);
+                value[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+
+    }
+
+}
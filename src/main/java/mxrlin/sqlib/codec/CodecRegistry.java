@@ -0,0 +1,199 @@
+package mxrlin.sqlib.codec;
+
+import mxrlin.sqlib.exception.SQLibException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Part of the SQLib API
+ *
+ * Knows the {@link ValueCodec} of every Java type that is stored as bytes. Values of these types are encoded when they are
+ * bound to a statement ({@link mxrlin.sqlib.misc.MySQLStatement#bindArguments(java.sql.PreparedStatement)}) and decoded
+ * with {@link mxrlin.sqlib.IConnection#getEntry(String, String, mxrlin.sqlib.misc.RowData, Class)}.
+ *
+ * The default registry contains codecs for {@link java.util.UUID}, all enums and arrays of ints, longs, doubles and Strings,
+ * plus every codec found by {@link ServiceLoader}. Encoding writes into a buffer of the current thread that is reused.
+ * Codecs are found by the class of a value, which doesn't tell a List&lt;Integer&gt; from a List&lt;Long&gt;, so lists of
+ * numbers are stored as int or long arrays.
+ */
+public class CodecRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(CodecRegistry.class.getName());
+
+    private static volatile CodecRegistry defaultRegistry;
+
+    // buffers larger than this aren't kept for reuse
+    private static final int MAX_REUSED_BUFFER = 1024 * 1024;
+
+    // a stack, so codecs can encode nested values
+    private static final ThreadLocal<Deque<EncodeBuffer>> BUFFERS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    // marks types without codec in the resolved map
+    private static final Object NONE = new Object();
+
+    // registered type -> codec
+    private final Map<Class<?>, ValueCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    // every type that was looked up -> its codec or NONE
+    private final Map<Class<?>, Object> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Create an empty registry, enums are encoded without registering a codec
+     */
+    public CodecRegistry() {}
+
+    /**
+     * @return The registry used for binding and reading values, contains the built-in codecs and those of the ServiceLoader
+     */
+    public static CodecRegistry getDefault() {
+        CodecRegistry registry = defaultRegistry;
+        if(registry == null){
+            synchronized (CodecRegistry.class){
+                registry = defaultRegistry;
+                if(registry == null){
+                    registry = withBuiltIns().loadServices(Thread.currentThread().getContextClassLoader());
+                    defaultRegistry = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @return A new registry with the codecs for UUIDs and arrays of ints, longs, doubles and Strings
+     */
+    public static CodecRegistry withBuiltIns() {
+        CodecRegistry registry = new CodecRegistry();
+        BuiltInCodecs.registerAll(registry);
+        return registry;
+    }
+
+    /**
+     * Register every codec that is listed in META-INF/services/mxrlin.sqlib.codec.ValueCodec
+     * @param classLoader The class loader that finds the codecs, null = the system class loader
+     */
+    public CodecRegistry loadServices(ClassLoader classLoader) {
+        try {
+            for (ValueCodec<?> codec : ServiceLoader.load(ValueCodec.class, classLoader)) {
+                register(codec);
+            }
+        } catch (ServiceConfigurationError e) {
+            LOGGER.log(Level.WARNING, "Failed to load a value codec", e);
+        }
+        return this;
+    }
+
+    /**
+     * Register {@param codec}, replaces the codec of the same type
+     * @param codec The codec
+     */
+    public CodecRegistry register(ValueCodec<?> codec) {
+        codecs.put(codec.getType(), codec);
+        resolved.clear();
+        return this;
+    }
+
+    /**
+     * @param type A type
+     * @return The codec of the type or of its closest supertype, null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ValueCodec<T> getCodec(Class<T> type) {
+        Object codec = resolved.get(type);
+        if(codec == null){
+            codec = resolve(type);
+            resolved.put(type, codec);
+        }
+        return codec == NONE ? null : (ValueCodec<T>) codec;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object resolve(Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            ValueCodec<?> codec = codecs.get(current);
+            if(codec != null) return codec;
+            for (Class<?> implemented : current.getInterfaces()) {
+                codec = codecs.get(implemented);
+                if(codec != null) return codec;
+            }
+        }
+        if(Enum.class.isAssignableFrom(type) && type != Enum.class){
+            // constants with a body are subclasses of their enum
+            Class<?> enumType = type.isEnum() ? type : type.getSuperclass();
+            return new EnumCodec(enumType);
+        }
+        return NONE;
+    }
+
+    /**
+     * Encode {@param value} with the codec of its type
+     * @param value The value
+     * @return The bytes of the value, null if its type has no codec
+     * @throws SQLibException Thrown when the codec failed
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Object value) throws SQLibException {
+        if(value == null) return null;
+        ValueCodec<Object> codec = (ValueCodec<Object>) getCodec(value.getClass());
+        if(codec == null) return null;
+
+        Deque<EncodeBuffer> buffers = BUFFERS.get();
+        EncodeBuffer buffer = buffers.isEmpty() ? new EncodeBuffer() : buffers.pop();
+        try {
+            buffer.reset();
+            codec.encode(value, buffer.data);
+            buffer.data.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to encode a value of type " + value.getClass().getName(), e);
+        } finally {
+            if(buffer.capacity() <= MAX_REUSED_BUFFER) buffers.push(buffer);
+        }
+    }
+
+    /**
+     * Decode bytes that were written by the codec of {@param type}
+     * @param bytes The bytes, may be null
+     * @param type The type of the value
+     * @return The value, null if {@param bytes} is null
+     * @throws SQLibException Thrown when the type has no codec or the bytes are corrupted
+     */
+    public <T> T decode(byte[] bytes, Class<T> type) throws SQLibException {
+        if(bytes == null) return null;
+        ValueCodec<T> codec = getCodec(type);
+        if(codec == null) throw new SQLibException("No codec is registered for the type " + type.getName());
+        try {
+            return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new SQLibException("Failed to decode a value of type " + type.getName(), e);
+        }
+    }
+
+    // a byte array output that is reset instead of reallocated
+    private static final class EncodeBuffer extends ByteArrayOutputStream {
+
+        private final DataOutputStream data = new DataOutputStream(this);
+
+        EncodeBuffer() {
+            super(256);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+    }
+
+}
@@ -0,0 +1,68 @@
+package mxrlin.sqlib.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Part of the SQLib API
+ *
+ * Writes enum constants by their name, so reordering the constants doesn't change stored values.
+ * {@link CodecRegistry} uses it for every enum without an own codec.
+ *
+ * @param <E> The enum type
+ */
+public class EnumCodec<E extends Enum<E>> implements ValueCodec<E> {
+
+    private final Class<E> type;
+
+    /**
+     * @param type The enum type
+     */
+    public EnumCodec(Class<E> type) {
+        this.type = type;
+    }
+
+    @Override
+    public Class<E> getType() {
+        return type;
+    }
+
+    @Override
+    public void encode(E value, DataOutput out) throws IOException {
+        // the input of decode holds exactly one value, so the name needs no length prefix
+        out.write(value.name().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public E decode(DataInput in) throws IOException {
+        String name = new String(readRemaining(in), StandardCharsets.UTF_8);
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown constant " + name + " of " + type.getName(), e);
+        }
+    }
+
+    private static byte[] readRemaining(DataInput in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        if(in instanceof InputStream){
+            byte[] buffer = new byte[64];
+            int read;
+            while ((read = ((InputStream) in).read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+        try {
+            while (true) bytes.write(in.readByte());
+        } catch (EOFException e) {
+            return bytes.toByteArray();
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package mxrlin.sqlib.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Part of the SQLib API
+ *
+ * Writes values of a Java type as compact bytes into a BLOB row and reads them back.
+ *
+ * 1. Implement this interface for your type.
+ * 2. Register it with {@link CodecRegistry#register(ValueCodec)}, or list it in
+ *    META-INF/services/mxrlin.sqlib.codec.ValueCodec to have it loaded by {@link java.util.ServiceLoader}.
+ * 3. Use values of the type in {@link mxrlin.sqlib.misc.RowData}, and read them with
+ *    {@link mxrlin.sqlib.IConnection#getEntry(String, String, mxrlin.sqlib.misc.RowData, Class)}.
+ *
+ * The output is a reusable buffer, so a codec shouldn't keep a reference to it.
+ *
+ * @param <T> The type the codec writes
+ * @see CodecRegistry
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * @return The type the codec writes, values of subclasses are written with it as well
+     */
+    Class<T> getType();
+
+    /**
+     * Write {@param value} to {@param out}
+     * @param value The value, never null
+     * @param out The output, backed by a reusable buffer
+     * @throws IOException Thrown when the value couldn't be written
+     */
+    void encode(T value, DataOutput out) throws IOException;
+
+    /**
+     * Read a value that was written with {@link #encode(Object, DataOutput)}
+     * @param in The input, contains exactly the bytes of one value
+     * @return The value
+     * @throws IOException Thrown when the bytes are corrupted
+     */
+    T decode(DataInput in) throws IOException;
+
+}
@@ -0,0 +1,257 @@
+package mxrlin.sqlib.command;
+
+import mxrlin.sqlib.misc.RowData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * A WHERE condition that is appended to a {@link CommandBuilder}. Every value is appended as a question mark,
+ * so conditions stay SQL-Injection safe.
+ *
+ * Example:     Condition.equal("world", "lobby").and(Condition.between("level", 10, 20))
+ *              -> "(world=? AND level BETWEEN ? AND ?)"
+ *
+ * @see mxrlin.sqlib.command.get.SelectCommand
+ */
+public class Condition {
+
+    // the operator of this condition
+    private Operator operator;
+
+    // the row the condition is checking, null for AND / OR groups
+    private String rowName;
+
+    // the values that are replacing the question marks
+    private List<Object> values;
+
+    // the conditions of an AND / OR group
+    private List<Condition> conditions;
+
+    private Condition(Operator operator, String rowName, List<Object> values, List<Condition> conditions) {
+        this.operator = operator;
+        this.rowName = rowName;
+        this.values = values;
+        this.conditions = conditions;
+    }
+
+    private static Condition compare(Operator operator, String rowName, Object value) {
+        List<Object> values = new ArrayList<>();
+        values.add(value);
+        return new Condition(operator, rowName, values, null);
+    }
+
+    /**
+     * "rowName=?", or "rowName IS NULL" if {@param value} is null
+     */
+    public static Condition equal(String rowName, Object value) {
+        if(value == null) return isNull(rowName);
+        return compare(Operator.EQUAL, rowName, value);
+    }
+
+    /**
+     * "rowName<>?", or "rowName IS NOT NULL" if {@param value} is null
+     */
+    public static Condition notEqual(String rowName, Object value) {
+        if(value == null) return isNotNull(rowName);
+        return compare(Operator.NOT_EQUAL, rowName, value);
+    }
+
+    /**
+     * "rowName<?"
+     */
+    public static Condition lessThan(String rowName, Object value) {
+        return compare(Operator.LESS, rowName, value);
+    }
+
+    /**
+     * "rowName<=?"
+     */
+    public static Condition lessOrEqual(String rowName, Object value) {
+        return compare(Operator.LESS_OR_EQUAL, rowName, value);
+    }
+
+    /**
+     * "rowName>?"
+     */
+    public static Condition greaterThan(String rowName, Object value) {
+        return compare(Operator.GREATER, rowName, value);
+    }
+
+    /**
+     * "rowName>=?"
+     */
+    public static Condition greaterOrEqual(String rowName, Object value) {
+        return compare(Operator.GREATER_OR_EQUAL, rowName, value);
+    }
+
+    /**
+     * "rowName BETWEEN ? AND ?" (both bounds inclusive)
+     */
+    public static Condition between(String rowName, Object from, Object to) {
+        return new Condition(Operator.BETWEEN, rowName, new ArrayList<>(Arrays.asList(from, to)), null);
+    }
+
+    /**
+     * "rowName IN (?, ?, ...)". An empty {@param values} collection never matches.
+     */
+    public static Condition in(String rowName, Collection<?> values) {
+        return new Condition(Operator.IN, rowName, new ArrayList<>(values), null);
+    }
+
+    /**
+     * "rowName IS NULL"
+     */
+    public static Condition isNull(String rowName) {
+        return new Condition(Operator.IS_NULL, rowName, new ArrayList<>(), null);
+    }
+
+    /**
+     * "rowName IS NOT NULL"
+     */
+    public static Condition isNotNull(String rowName) {
+        return new Condition(Operator.IS_NOT_NULL, rowName, new ArrayList<>(), null);
+    }
+
+    /**
+     * "(condition AND condition ...)"
+     */
+    public static Condition all(Condition... conditions) {
+        return new Condition(Operator.AND, null, new ArrayList<>(), new ArrayList<>(Arrays.asList(conditions)));
+    }
+
+    /**
+     * "(condition OR condition ...)"
+     */
+    public static Condition any(Condition... conditions) {
+        return new Condition(Operator.OR, null, new ArrayList<>(), new ArrayList<>(Arrays.asList(conditions)));
+    }
+
+    /**
+     * "(rowName=? AND rowName=? ...)", the same way the WHERE clause of {@link mxrlin.sqlib.command.set.DeleteColumnCommand} is built
+     * @param rowData The rows and their values
+     */
+    public static Condition of(List<RowData> rowData) {
+        Condition[] conditions = new Condition[rowData.size()];
+        for (int i = 0; i < rowData.size(); i++) {
+            conditions[i] = equal(rowData.get(i).getRowName(), rowData.get(i).getValue());
+        }
+        return all(conditions);
+    }
+
+    /**
+     * @return A condition that matches when this and {@param other} match
+     */
+    public Condition and(Condition other) {
+        return all(this, other);
+    }
+
+    /**
+     * @return A condition that matches when this or {@param other} matches
+     */
+    public Condition or(Condition other) {
+        return any(this, other);
+    }
+
+    /**
+     * @return The operator of this condition
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return The row the condition is checking, null for AND / OR groups
+     */
+    public String getRowName() {
+        return rowName;
+    }
+
+    /**
+     * @return The values that are replacing the question marks
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    /**
+     * @return The conditions of an AND / OR group
+     */
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * Append this condition to the command, without the leading "WHERE "
+     * @param builder The builder of the command
+     */
+    public void appendTo(CommandBuilder builder) {
+        switch (operator) {
+            case AND:
+            case OR:
+                if(conditions.isEmpty()){
+                    builder.append(operator == Operator.AND ? "1=1" : "1=0");
+                    return;
+                }
+                builder.append("(");
+                for (int i = 0; i < conditions.size(); i++) {
+                    conditions.get(i).appendTo(builder);
+                    if(i != conditions.size() - 1) builder.append(" " + operator.getSql() + " ");
+                }
+                builder.append(")");
+                return;
+            case BETWEEN:
+                builder.append(rowName + " BETWEEN ").appendQuestionMark(values.get(0)).append(" AND ").appendQuestionMark(values.get(1));
+                return;
+            case IN:
+                if(values.isEmpty()){
+                    builder.append("1=0");
+                    return;
+                }
+                builder.append(rowName + " IN (");
+                for (int i = 0; i < values.size(); i++) {
+                    builder.appendQuestionMark(values.get(i));
+                    if(i != values.size() - 1) builder.append(", ");
+                }
+                builder.append(")");
+                return;
+            case IS_NULL:
+            case IS_NOT_NULL:
+                builder.append(rowName + " " + operator.getSql());
+                return;
+            default:
+                builder.append(rowName + operator.getSql()).appendQuestionMark(values.get(0));
+        }
+    }
+
+    /**
+     * All operators a {@link Condition} can use
+     */
+    public enum Operator {
+
+        EQUAL("="), NOT_EQUAL("<>"), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">="),
+
+        BETWEEN("BETWEEN"), IN("IN"), IS_NULL("IS NULL"), IS_NOT_NULL("IS NOT NULL"),
+
+        AND("AND"), OR("OR");
+
+        private final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * @return The operator as it's written in a MySQL statement
+         */
+        public String getSql() {
+            return sql;
+        }
+
+    }
+
+}
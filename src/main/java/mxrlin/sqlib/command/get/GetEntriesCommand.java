@@ -0,0 +1,101 @@
+package mxrlin.sqlib.command.get;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.misc.MySQLStatement;
+
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Get the Entries of many columns out of a Table with a single statement ("WHERE keyRow IN (?, ?, ...)").
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeQuery(QueryCommand)} method to get an {@link java.sql.ResultSet}.
+ * 4. Read the key row and the entry row of every column of the {@link java.sql.ResultSet}.
+ *
+ * @see mxrlin.sqlib.IConnection#getEntries(String, String, String, java.util.Collection)
+ * @see mxrlin.sqlib.SQLibConnection
+ */
+public class GetEntriesCommand implements QueryCommand {
+
+    /**
+     * Default maximum amount of keys in one statement, keeps statements far below MySQL's placeholder and packet limits
+     */
+    public static final int MAX_KEYS_PER_STATEMENT = 1000;
+
+    // table
+    private String tableName;
+
+    // the row the entries are coming from
+    private String key;
+
+    // the row the keys are saved in
+    private String keyRow;
+
+    // the keys of the columns
+    private List<?> keys;
+
+    /**
+     * Get the Entries of the columns with the keys {@param keys}.
+     * @param tableName The Table Name the entries are in
+     * @param rowName The Row the Entries are saved in
+     * @param keyRow The Row the keys are saved in
+     * @param keys The keys of the columns
+     */
+    public GetEntriesCommand(String tableName, String rowName, String keyRow, List<?> keys) {
+        this.tableName = tableName;
+        this.key = rowName;
+        this.keyRow = keyRow;
+        this.keys = keys;
+    }
+
+    /**
+     * @return The Table Name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return Returns the row the entries (values) are coming from
+     */
+    public String getRowName() {
+        return key;
+    }
+
+    /**
+     * @return The row the keys are saved in
+     */
+    public String getKeyRow() {
+        return keyRow;
+    }
+
+    /**
+     * @return The keys of the columns
+     */
+    public List<?> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "SELECT keyRow, row FROM table WHERE keyRow IN (?, ?, ?)"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+
+        CommandBuilder builder = new CommandBuilder("SELECT ");
+        builder.append(keyRow).append(", ").append(key).append(" FROM ").append(tableName);
+        builder.append(" WHERE ");
+        Condition.in(keyRow, keys).appendTo(builder);
+
+        return builder.build();
+    }
+}
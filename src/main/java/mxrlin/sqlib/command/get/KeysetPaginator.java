@@ -0,0 +1,256 @@
+package mxrlin.sqlib.command.get;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Pages through a table ordered by an indexed key (keyset / "seek" pagination). Every page continues after the
+ * key of the last column of the previous page ("WHERE key > ?") instead of skipping columns with OFFSET,
+ * so every page costs the same, regardless of how deep the scan already is.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class with the key rows (for example the primary key) and the page size.
+ * 3. Call {@link #nextPage()} until {@link #hasMorePages()} returns false.
+ * 4. Optionally save {@link #getCursor()} and continue later with {@link #resumeFrom(String)}.
+ *
+ * The key rows have to be unique together, else columns with the same key can be skipped at page borders.
+ *
+ * @see mxrlin.sqlib.IConnection#paginate(String, List, int)
+ * @see SelectCommand
+ */
+public class KeysetPaginator {
+
+    private static final byte CURSOR_VERSION = 1;
+
+    // the connection the pages are fetched with
+    private IConnection connection;
+
+    // table
+    private String tableName;
+
+    // the rows the table is ordered by, most significant first
+    private List<String> keyRows;
+
+    // maximum amount of columns per page
+    private int pageSize;
+
+    // the selected rows, empty = all rows
+    private List<String> rowNames;
+
+    // additional condition every column has to match, null = no condition
+    private Condition condition;
+
+    // true = ascending key order
+    private boolean ascending;
+
+    // key of the last column returned, null before the first page
+    private Object[] lastKey;
+
+    // true when the last page was fetched
+    private boolean finished;
+
+    /**
+     * Page through the table {@param tableName} in ascending order of {@param keyRows}
+     * @param connection The connection the pages are fetched with
+     * @param tableName The Table Name
+     * @param keyRows The indexed row(s) the table is ordered by, most significant first
+     * @param pageSize Maximum amount of columns per page
+     */
+    public KeysetPaginator(IConnection connection, String tableName, List<String> keyRows, int pageSize) {
+        if(keyRows.isEmpty()) throw new IllegalArgumentException("At least one key row is needed");
+        if(pageSize <= 0) throw new IllegalArgumentException("Page size has to be positive");
+        this.connection = connection;
+        this.tableName = tableName;
+        this.keyRows = new ArrayList<>(keyRows);
+        this.pageSize = pageSize;
+        this.rowNames = new ArrayList<>();
+        this.ascending = true;
+    }
+
+    /**
+     * Only select the rows {@param rowNames}. The key rows are always selected.
+     * @param rowNames The selected rows
+     */
+    public KeysetPaginator rows(String... rowNames) {
+        this.rowNames.addAll(Arrays.asList(rowNames));
+        return this;
+    }
+
+    /**
+     * Only page through columns matching {@param condition}
+     * @param condition The condition every column has to match
+     */
+    public KeysetPaginator where(Condition condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    /**
+     * Page in descending key order ("WHERE key < ?")
+     */
+    public KeysetPaginator descending() {
+        this.ascending = false;
+        return this;
+    }
+
+    /**
+     * Continue after the position saved in {@param cursor}
+     * @param cursor A cursor returned by {@link #getCursor()}
+     * @throws SQLibException Thrown when the cursor is malformed or doesn't fit the key rows
+     */
+    public KeysetPaginator resumeFrom(String cursor) throws SQLibException {
+        this.lastKey = decodeCursor(cursor);
+        if(lastKey != null && lastKey.length != keyRows.size())
+            throw new SQLibException("Cursor has " + lastKey.length + " key values, but " + keyRows.size() + " key rows are used");
+        this.finished = false;
+        return this;
+    }
+
+    /**
+     * @return true if there may be another page
+     */
+    public boolean hasMorePages() {
+        return !finished;
+    }
+
+    /**
+     * Fetch the next page
+     * @return The columns of the next page, empty if there are no more columns
+     * @throws SQLibException Thrown when the page couldn't be fetched
+     */
+    public List<List<RowData>> nextPage() throws SQLibException {
+        List<List<RowData>> page = new ArrayList<>();
+        if(finished) return page;
+
+        try (ResultSet set = connection.executeQuery(buildPageCommand())){
+            while (set.next()){
+                page.add(RowData.fromResultSet(set));
+                Object[] key = new Object[keyRows.size()];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = set.getObject(keyRows.get(i));
+                }
+                lastKey = key;
+            }
+        } catch (SQLException e) {
+            throw new SQLibException("Couldn't fetch the next page of table " + tableName, e);
+        }
+
+        if(page.size() < pageSize) finished = true;
+        return page;
+    }
+
+    /**
+     * @return The command that selects the next page
+     */
+    public SelectCommand buildPageCommand() {
+        SelectCommand command = new SelectCommand(tableName);
+
+        if(!rowNames.isEmpty()){
+            List<String> selected = new ArrayList<>(rowNames);
+            for (String keyRow : keyRows) {
+                if(!selected.contains(keyRow)) selected.add(keyRow);
+            }
+            command.rows(selected.toArray(new String[0]));
+        }
+
+        Condition seek = lastKey == null ? null : buildSeekCondition();
+        if(condition != null && seek != null) command.where(condition.and(seek));
+        else if(condition != null) command.where(condition);
+        else if(seek != null) command.where(seek);
+
+        for (String keyRow : keyRows) {
+            command.orderBy(keyRow, ascending);
+        }
+
+        return command.limit(pageSize);
+    }
+
+    // (k1 > ?) OR (k1 = ? AND k2 > ?) OR ..., which MySQL can resolve as index range scan
+    private Condition buildSeekCondition() {
+        Condition[] alternatives = new Condition[keyRows.size()];
+        for (int i = 0; i < keyRows.size(); i++) {
+            Condition[] parts = new Condition[i + 1];
+            for (int j = 0; j < i; j++) {
+                parts[j] = Condition.equal(keyRows.get(j), lastKey[j]);
+            }
+            parts[i] = ascending ? Condition.greaterThan(keyRows.get(i), lastKey[i]) : Condition.lessThan(keyRows.get(i), lastKey[i]);
+            alternatives[i] = parts.length == 1 ? parts[0] : Condition.all(parts);
+        }
+        return alternatives.length == 1 ? alternatives[0] : Condition.any(alternatives);
+    }
+
+    /**
+     * @return A token that saves the current position, null if no page was fetched yet
+     * @throws SQLibException Thrown when a key value can't be saved in a cursor
+     */
+    public String getCursor() throws SQLibException {
+        if(lastKey == null) return null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CURSOR_VERSION);
+            ValueIO.writeVarInt(out, lastKey.length);
+            for (Object value : lastKey) {
+                ValueIO.write(out, value);
+            }
+            out.flush();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new SQLibException("Couldn't create a cursor", e);
+        }
+    }
+
+    private static Object[] decodeCursor(String cursor) throws SQLibException {
+        if(cursor == null || cursor.isEmpty()) return null;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)));
+            if(in.readByte() != CURSOR_VERSION) throw new SQLibException("Unsupported cursor version");
+            Object[] key = new Object[ValueIO.readLength(in, 1)];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = ValueIO.read(in);
+            }
+            return key;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SQLibException("Malformed cursor \"" + cursor + "\"", e);
+        }
+    }
+
+    /**
+     * @return The Table Name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The rows the table is ordered by, most significant first
+     */
+    public List<String> getKeyRows() {
+        return keyRows;
+    }
+
+    /**
+     * @return Maximum amount of columns per page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+}
@@ -25,4 +25,11 @@ public interface QueryCommand {
      */
     MySQLStatement getCommandStatement();
 
+    /**
+     * @return The name of the table that is read by this command, null if it is unknown
+     */
+    default String getTableName() {
+        return null;
+    }
+
 }
@@ -0,0 +1,261 @@
+package mxrlin.sqlib.command.get;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.misc.MySQLStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Select rows, aggregates or the existence of columns out of a Table. Filtering, sorting, paging and aggregating
+ * is done by the database, so only the needed data is sent to the client.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class and specify it with {@link #rows(String...)}, {@link #where(Condition)}, {@link #orderBy(String, boolean)} etc.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeQuery(QueryCommand)} method to get an {@link java.sql.ResultSet}.
+ * 4. Use the {@link java.sql.ResultSet} methods to get a string, an integer, a short etc.
+ *
+ * Example:     new SelectCommand("players").rows("uuid", "coins").where(Condition.greaterThan("coins", 100)).orderBy("coins", false).limit(10)
+ *
+ * @see mxrlin.sqlib.command.Condition
+ * @see mxrlin.sqlib.IConnection#executeQuery(QueryCommand)
+ * @see mxrlin.sqlib.SQLibConnection
+ */
+public class SelectCommand implements QueryCommand {
+
+    // table
+    private String tableName;
+
+    // the rows that are selected, empty = all rows
+    private List<String> rowNames;
+
+    // the aggregate function, null if the rows are selected directly
+    private Aggregate aggregate;
+
+    // the row the aggregate function is used on
+    private String aggregateRow;
+
+    // true = only select if a matching column exists
+    private boolean exists;
+
+    // the condition of the WHERE clause, null if every column is selected
+    private Condition condition;
+
+    // the ORDER BY parts, for example "name ASC"
+    private List<String> orderBy;
+
+    // maximum amount of columns, -1 = no limit
+    private long limit;
+
+    // amount of skipped columns, -1 = no offset
+    private long offset;
+
+    /**
+     * Select all rows of all columns in the table {@param tableName}
+     * @param tableName The Table Name
+     */
+    public SelectCommand(String tableName) {
+        this.tableName = tableName;
+        this.rowNames = new ArrayList<>();
+        this.orderBy = new ArrayList<>();
+        this.limit = -1;
+        this.offset = -1;
+    }
+
+    /**
+     * Only select the rows {@param rowNames}
+     * @param rowNames The selected rows
+     */
+    public SelectCommand rows(String... rowNames) {
+        this.rowNames.addAll(Arrays.asList(rowNames));
+        return this;
+    }
+
+    /**
+     * Select the result of an aggregate function instead of the rows, for example "SUM(coins)"
+     * @param aggregate The aggregate function
+     * @param rowName The row the function is used on, "*" is allowed for {@link Aggregate#COUNT}
+     */
+    public SelectCommand aggregate(Aggregate aggregate, String rowName) {
+        this.aggregate = aggregate;
+        this.aggregateRow = rowName;
+        return this;
+    }
+
+    /**
+     * Select the amount of matching columns ("COUNT(*)")
+     */
+    public SelectCommand count() {
+        return aggregate(Aggregate.COUNT, "*");
+    }
+
+    /**
+     * Select 1 if a matching column exists, else 0 ("SELECT EXISTS(SELECT 1 FROM ...)")
+     */
+    public SelectCommand exists() {
+        this.exists = true;
+        return this;
+    }
+
+    /**
+     * Only select columns matching {@param condition}
+     * @param condition The condition of the WHERE clause
+     */
+    public SelectCommand where(Condition condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    /**
+     * Sort the columns by {@param rowName}. Calling this multiple times sorts by multiple rows.
+     * @param rowName The row that is used for sorting
+     * @param ascending true = ascending / false = descending
+     */
+    public SelectCommand orderBy(String rowName, boolean ascending) {
+        this.orderBy.add(rowName + (ascending ? " ASC" : " DESC"));
+        return this;
+    }
+
+    /**
+     * Only select up to {@param limit} columns
+     * @param limit Maximum amount of columns
+     */
+    public SelectCommand limit(long limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Skip the first {@param offset} columns. Only used together with {@link #limit(long)}.
+     * @param offset Amount of skipped columns
+     */
+    public SelectCommand offset(long offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return The Table Name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The selected rows, empty = all rows
+     */
+    public List<String> getRowNames() {
+        return rowNames;
+    }
+
+    /**
+     * @return The aggregate function, null if the rows are selected directly
+     */
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * @return The row the aggregate function is used on
+     */
+    public String getAggregateRow() {
+        return aggregateRow;
+    }
+
+    /**
+     * @return true = only selects if a matching column exists
+     */
+    public boolean isExists() {
+        return exists;
+    }
+
+    /**
+     * @return The condition of the WHERE clause, null if every column is selected
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return The ORDER BY parts, for example "name ASC"
+     */
+    public List<String> getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return Maximum amount of columns, -1 = no limit
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return Amount of skipped columns, -1 = no offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "SELECT uuid, coins FROM players WHERE coins>? ORDER BY coins DESC LIMIT ?"
+     *              "SELECT EXISTS(SELECT 1 FROM players WHERE uuid=?)"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+
+        CommandBuilder builder = new CommandBuilder("SELECT ");
+
+        if(exists){
+            builder.append("EXISTS(SELECT 1 FROM ").append(tableName);
+            appendWhere(builder);
+            builder.append(")");
+            return builder.build();
+        }
+
+        if(aggregate != null){
+            builder.append(aggregate.name() + "(" + aggregateRow + ")");
+        }else if(rowNames.isEmpty()){
+            builder.append("*");
+        }else{
+            builder.append(String.join(", ", rowNames));
+        }
+
+        builder.append(" FROM ").append(tableName);
+        appendWhere(builder);
+
+        if(!orderBy.isEmpty()) builder.append(" ORDER BY ").append(String.join(", ", orderBy));
+
+        if(limit >= 0){
+            builder.append(" LIMIT ").appendQuestionMark(limit);
+            if(offset > 0) builder.append(" OFFSET ").appendQuestionMark(offset);
+        }
+
+        return builder.build();
+    }
+
+    private void appendWhere(CommandBuilder builder) {
+        if(condition == null) return;
+        builder.append(" WHERE ");
+        condition.appendTo(builder);
+    }
+
+    /**
+     * Aggregate functions that can be selected instead of the rows
+     */
+    public enum Aggregate {
+
+        COUNT, SUM, MIN, MAX, AVG;
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package mxrlin.sqlib.command.set;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.Partitioning;
+
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Adds new RANGE or LIST partitions to a partitioned table, for example the partition of the next time bucket.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeUpdate(UpdatingCommand)} with this class as first parameter.
+ *
+ * @see mxrlin.sqlib.IConnection#executeUpdate(UpdatingCommand)
+ * @see mxrlin.sqlib.SQLibConnection
+ * @see mxrlin.sqlib.misc.Partitioning
+ */
+public class AddPartitionCommand implements UpdatingCommand {
+
+    // the name of the table
+    private String tableName;
+
+    // the partitioning type of the table
+    private Partitioning.Type type;
+
+    // the partitions that are getting added
+    private List<Partitioning.Partition> partitions;
+
+    /**
+     * Add partitions to the table {@param tableName}
+     * @param tableName The name of the table
+     * @param type The partitioning type of the table (RANGE / RANGE_COLUMNS / LIST / LIST_COLUMNS)
+     * @param partitions The partitions that are getting added
+     */
+    public AddPartitionCommand(String tableName, Partitioning.Type type, List<Partitioning.Partition> partitions) {
+        this.tableName = tableName;
+        this.type = type;
+        this.partitions = partitions;
+    }
+
+    /**
+     * @return Name of table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The partitioning type of the table
+     */
+    public Partitioning.Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The partitions that are getting added
+     */
+    public List<Partitioning.Partition> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "ALTER TABLE table ADD PARTITION (PARTITION p1 VALUES LESS THAN (200))"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+        CommandBuilder builder = new CommandBuilder("ALTER TABLE ");
+        builder.append(tableName).append(" ADD PARTITION (");
+
+        for (int i = 0; i < partitions.size(); i++) {
+            builder.append(partitions.get(i).toDefinition(type));
+            if(i != partitions.size() - 1) builder.append(", ");
+        }
+
+        builder.append(")");
+
+        return builder.build();
+    }
+
+}
@@ -2,6 +2,7 @@ package mxrlin.sqlib.command.set;
 
 import mxrlin.sqlib.command.CommandBuilder;
 import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.DataType;
 import mxrlin.sqlib.misc.MySQLStatement;
 import mxrlin.sqlib.misc.StorageEngine;
 import mxrlin.sqlib.misc.Table;
@@ -45,6 +46,14 @@ public class CreateTableCommand implements UpdatingCommand {
         return table;
     }
 
+    /**
+     * @return The name of the new table
+     */
+    @Override
+    public String getTableName() {
+        return table.getTableName();
+    }
+
     /**
      * @return If true, the table is only getting created if it doesn't already exist
      */
@@ -74,19 +83,21 @@ public class CreateTableCommand implements UpdatingCommand {
             Table.TableRow row = table.getRows().get(i);
 
             commandBuilder.append(row.getRowName());
-            commandBuilder.append(" ").append(row.getDataType().name()).append("(").append("" + row.getMaxLength()).append(")");
+            DataType dataType = row.isCompressed() ? row.getDataType().toBinary() : row.getDataType();
+            commandBuilder.append(" ").append(dataType.name()).append("(").append("" + row.getMaxLength()).append(")");
 
             if(!row.isAllowedToContainNull()) commandBuilder.append(" NOT NULL");
             if(row.isAutoIncrement()) commandBuilder.append(" AUTO_INCREMENT");
 
-            if(i != table.getRows().size()) commandBuilder.append(", ");
+            if(i != table.getRows().size() - 1) commandBuilder.append(", ");
         }
 
         commandBuilder.append(")");
 
-        // name (rowname ROWTYPE(length), ...) ENGINE=engine DEFAULT CHARACTER SET;
-        if(table.getEngine() != null && table.getEngine() != StorageEngine.InnoDB) commandBuilder.append("ENGINE=" + table.getEngine().name());
-        if(table.getCharset() != null && !table.getCharset().isEmpty()) commandBuilder.append("DEFAULT CHARACTER SET " + table.getCharset());
+        // name (rowname ROWTYPE(length), ...) ENGINE=engine DEFAULT CHARACTER SET charset PARTITION BY ...;
+        if(table.getEngine() != null && table.getEngine() != StorageEngine.InnoDB) commandBuilder.append(" ENGINE=" + table.getEngine().name());
+        if(table.getCharset() != null && !table.getCharset().isEmpty()) commandBuilder.append(" DEFAULT CHARACTER SET " + table.getCharset());
+        if(table.getPartitioning() != null) commandBuilder.append(" " + table.getPartitioning().toClause());
 
         return commandBuilder.build();
     }
@@ -71,7 +71,7 @@ public class DeleteColumnCommand implements UpdatingCommand {
             RowData rowData = getRowData().get(i);
             builder.append(rowData.getRowName() + "=").appendQuestionMark(rowData.getValue());
 
-            if(i != getRowData().size()) builder.append(" AND ");
+            if(i != getRowData().size() - 1) builder.append(" AND ");
         }
 
         return builder.build();
@@ -0,0 +1,111 @@
+package mxrlin.sqlib.command.set;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.MySQLStatement;
+
+/**
+ * Part of the SQLib API
+ *
+ * Deletes all columns of a table matching a {@link Condition}, optionally limited to a maximum amount of columns.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeUpdate(UpdatingCommand)} with this class as first parameter.
+ *
+ * @see mxrlin.sqlib.IConnection#executeUpdate(UpdatingCommand)
+ * @see mxrlin.sqlib.batch.ChunkedOperation
+ * @see mxrlin.sqlib.SQLibConnection
+ */
+public class DeleteWhereCommand implements UpdatingCommand {
+
+    // The table name
+    private String tableName;
+
+    // the condition the deleted columns match, null = all columns
+    private Condition condition;
+
+    // the row the columns are deleted in order of, null = any order
+    private String orderRow;
+
+    // maximum amount of deleted columns, -1 = no limit
+    private int limit;
+
+    /**
+     * Delete all columns matching {@param condition} out of a table
+     * @param tableName The name of the table
+     * @param condition The condition the deleted columns match, null = all columns
+     */
+    public DeleteWhereCommand(String tableName, Condition condition) {
+        this.tableName = tableName;
+        this.condition = condition;
+        this.limit = -1;
+    }
+
+    /**
+     * Only delete up to {@param limit} columns in ascending order of {@param orderRow}
+     * @param orderRow The row the columns are deleted in order of, null = any order
+     * @param limit Maximum amount of deleted columns
+     */
+    public DeleteWhereCommand limit(String orderRow, int limit) {
+        this.orderRow = orderRow;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @return Returns the name of the table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The condition the deleted columns match, null = all columns
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return The row the columns are deleted in order of, null = any order
+     */
+    public String getOrderRow() {
+        return orderRow;
+    }
+
+    /**
+     * @return Maximum amount of deleted columns, -1 = no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "DELETE FROM table WHERE created<? ORDER BY id LIMIT 1000"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+        CommandBuilder builder = new CommandBuilder("DELETE FROM ");
+        builder.append(tableName);
+
+        if(condition != null){
+            builder.append(" WHERE ");
+            condition.appendTo(builder);
+        }
+
+        if(limit >= 0){
+            if(orderRow != null) builder.append(" ORDER BY ").append(orderRow);
+            builder.append(" LIMIT ").append("" + limit);
+        }
+
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,67 @@
+package mxrlin.sqlib.command.set;
+
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.MySQLStatement;
+
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Drops partitions of a partitioned table including all rows they contain. This is a metadata operation, so
+ * expiring old data doesn't need a mass {@link DeleteColumnCommand}.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeUpdate(UpdatingCommand)} with this class as first parameter.
+ *
+ * @see mxrlin.sqlib.IConnection#executeUpdate(UpdatingCommand)
+ * @see mxrlin.sqlib.SQLibConnection
+ * @see mxrlin.sqlib.misc.Partitioning
+ */
+public class DropPartitionCommand implements UpdatingCommand {
+
+    // the name of the table
+    private String tableName;
+
+    // names of the partitions
+    private List<String> partitionNames;
+
+    /**
+     * Drop the partitions {@param partitionNames} of the table {@param tableName}
+     * @param tableName The name of the table
+     * @param partitionNames The partitions that are getting dropped
+     */
+    public DropPartitionCommand(String tableName, List<String> partitionNames) {
+        this.tableName = tableName;
+        this.partitionNames = partitionNames;
+    }
+
+    /**
+     * @return Name of table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The partitions that are getting dropped
+     */
+    public List<String> getPartitionNames() {
+        return partitionNames;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "ALTER TABLE table DROP PARTITION p0, p1"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+        return new MySQLStatement("ALTER TABLE " + tableName + " DROP PARTITION " + String.join(", ", partitionNames));
+    }
+
+}
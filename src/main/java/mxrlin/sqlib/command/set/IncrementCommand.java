@@ -0,0 +1,138 @@
+package mxrlin.sqlib.command.set;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.RowData;
+
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Adds a delta to a numeric row of a column in a single statement ("UPDATE table SET row = row + ? WHERE key=?"),
+ * without reading the value first. With {@link #upsert()} a missing column is inserted with the delta as value
+ * ("INSERT ... ON DUPLICATE KEY UPDATE row = row + ?"), which needs a unique index over the key rows. The delta is bound a
+ * second time instead of using VALUES(row), which is deprecated since MySQL 8.0.20, so the statement runs on 5.7 and 8.0 alike.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeUpdate(UpdatingCommand)} with this class as first parameter.
+ *
+ * @see mxrlin.sqlib.batch.CounterBuffer
+ * @see mxrlin.sqlib.IConnection#executeUpdate(UpdatingCommand)
+ */
+public class IncrementCommand implements UpdatingCommand {
+
+    // table name
+    private String tableName;
+
+    // the row the delta is added to
+    private String counterRow;
+
+    // the added value, can be negative
+    private long delta;
+
+    // rows to specify which column is meant
+    private List<RowData> keyRows;
+
+    // true = insert the column if it doesn't exist
+    private boolean upsert;
+
+    /**
+     * Add {@param delta} to the row {@param counterRow} of the column specified by {@param keyRows}
+     * @param tableName The table name
+     * @param counterRow The numeric row the delta is added to
+     * @param delta The added value, can be negative
+     * @param keyRows The Row(s) to specify which column should be updated
+     */
+    public IncrementCommand(String tableName, String counterRow, long delta, List<RowData> keyRows) {
+        if(keyRows.isEmpty()) throw new IllegalArgumentException("At least one key row is needed");
+        this.tableName = tableName;
+        this.counterRow = counterRow;
+        this.delta = delta;
+        this.keyRows = keyRows;
+    }
+
+    /**
+     * Insert the column with the delta as value if it doesn't exist yet
+     */
+    public IncrementCommand upsert() {
+        this.upsert = true;
+        return this;
+    }
+
+    /**
+     * @return The table name
+     */
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The numeric row the delta is added to
+     */
+    public String getCounterRow() {
+        return counterRow;
+    }
+
+    /**
+     * @return The added value
+     */
+    public long getDelta() {
+        return delta;
+    }
+
+    /**
+     * @return The Row(s) to specify which column should be updated
+     */
+    public List<RowData> getKeyRows() {
+        return keyRows;
+    }
+
+    /**
+     * @return true = the column is inserted if it doesn't exist
+     */
+    public boolean isUpsert() {
+        return upsert;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "UPDATE stats SET kills = kills + ? WHERE uuid=?"
+     *              "INSERT INTO stats (uuid, kills) VALUES (?, ?) ON DUPLICATE KEY UPDATE kills = kills + ?"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+        if(upsert){
+            CommandBuilder builder = new CommandBuilder("INSERT INTO ");
+            builder.append(tableName).append(" (");
+            for (RowData keyRow : keyRows) {
+                builder.append(keyRow.getRowName()).append(", ");
+            }
+            builder.append(counterRow).append(") VALUES (");
+            for (RowData keyRow : keyRows) {
+                builder.appendQuestionMark(keyRow.getValue()).append(", ");
+            }
+            builder.appendQuestionMark(delta).append(")");
+            builder.append(" ON DUPLICATE KEY UPDATE " + counterRow + " = " + counterRow + " + ").appendQuestionMark(delta);
+            return builder.build();
+        }
+
+        CommandBuilder builder = new CommandBuilder("UPDATE ");
+        builder.append(tableName).append(" SET " + counterRow + " = " + counterRow + " + ").appendQuestionMark(delta);
+        builder.append(" WHERE ");
+        for (int i = 0; i < keyRows.size(); i++) {
+            RowData keyRow = keyRows.get(i);
+            builder.append(keyRow.getRowName() + "=").appendQuestionMark(keyRow.getValue());
+            if(i != keyRows.size() - 1) builder.append(" AND ");
+        }
+        return builder.build();
+    }
+
+}
@@ -69,7 +69,7 @@ public class InsertColumnCommand implements UpdatingCommand {
         for (int i = 0; i < getRowData().size(); i++) {
             RowData row = getRowData().get(i);
             builder.append(row.getRowName()); // INSERT INTO %TABLENAME% (rowName
-            if(i != getRowData().size()) builder.append(", "); // INSERT INTO %TABLENAME% (rowName, ...
+            if(i != getRowData().size() - 1) builder.append(", "); // INSERT INTO %TABLENAME% (rowName, ...
         }
 
         builder.append(") VALUES ("); // INSERT INTO %TABLENAME% (rowName, ..., ...) VALUES (
@@ -77,7 +77,7 @@ public class InsertColumnCommand implements UpdatingCommand {
         for (int i = 0; i < getRowData().size(); i++) {
             RowData row  = getRowData().get(i);
             builder.appendQuestionMark(row.getValue()); // INSERT INTO %TABLENAME% (rowName, ..., ...) VALUES (?
-            if(i != getRowData().size()) builder.append(", "); // INSERT INTO %TABLENAME% (rowName, ..., ...) VALUES (?, ...
+            if(i != getRowData().size() - 1) builder.append(", "); // INSERT INTO %TABLENAME% (rowName, ..., ...) VALUES (?, ...
         }
 
         builder.append(")"); // INSERT INTO %TABLENAME% (rowName, ..., ...) VALUES (?, ?, ?)
@@ -0,0 +1,96 @@
+package mxrlin.sqlib.command.set;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.RowData;
+
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Inserts many new columns into a table with a single statement.
+ * Every column needs the same rows in the same order as the first column.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeUpdate(UpdatingCommand)} with this class as first parameter.
+ *
+ * @see mxrlin.sqlib.IConnection#executeUpdate(UpdatingCommand)
+ * @see InsertColumnCommand
+ * @see mxrlin.sqlib.SQLibConnection
+ */
+public class InsertColumnsCommand implements UpdatingCommand {
+
+    // Table Name
+    private String tableName;
+
+    // the data of every column that should be inserted
+    private List<List<RowData>> columns;
+
+    /**
+     * Insert the columns {@param columns} into a table named {@param tableName}
+     * @param tableName The name of the table
+     * @param columns The data of every column that should be inserted
+     */
+    public InsertColumnsCommand(String tableName, List<List<RowData>> columns) {
+        if(columns.isEmpty()) throw new IllegalArgumentException("At least one column is needed");
+        this.tableName = tableName;
+        this.columns = columns;
+    }
+
+    /**
+     * @return The name of the table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The data of every column that should be inserted
+     */
+    public List<List<RowData>> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "INSERT INTO table (row1, row2) VALUES (?, ?), (?, ?)"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+
+        List<RowData> first = columns.get(0);
+
+        CommandBuilder builder = new CommandBuilder("INSERT INTO ");
+        builder.append(tableName + " (");
+
+        for (int i = 0; i < first.size(); i++) {
+            builder.append(first.get(i).getRowName());
+            if(i != first.size() - 1) builder.append(", ");
+        }
+
+        builder.append(") VALUES ");
+
+        for (int c = 0; c < columns.size(); c++) {
+            List<RowData> column = columns.get(c);
+            if(column.size() != first.size()) throw new IllegalArgumentException("Column " + c + " has " + column.size() + " rows, expected " + first.size());
+
+            builder.append("(");
+            for (int i = 0; i < column.size(); i++) {
+                builder.appendQuestionMark(column.get(i).getValue());
+                if(i != column.size() - 1) builder.append(", ");
+            }
+            builder.append(")");
+
+            if(c != columns.size() - 1) builder.append(", ");
+        }
+
+        return builder.build();
+    }
+}
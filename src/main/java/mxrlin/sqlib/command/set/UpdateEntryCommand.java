@@ -98,7 +98,7 @@ public class UpdateEntryCommand implements UpdatingCommand {
             RowData rowData = updatingRows.get(i);
             commandBuilder.append(rowData.getRowName() + "=");
             commandBuilder.appendQuestionMark(rowData.getValue());
-            if(i != updatingRows.size()) commandBuilder.append(", ");
+            if(i != updatingRows.size() - 1) commandBuilder.append(", ");
         }
 
         commandBuilder.append(" WHERE ");
@@ -108,7 +108,7 @@ public class UpdateEntryCommand implements UpdatingCommand {
             RowData rowData = updateAt.get(i);
             commandBuilder.append(rowData.getRowName() + "=").appendQuestionMark(rowData.getValue());
 
-            if(i != updateAt.size()) commandBuilder.append(" AND ");
+            if(i != updateAt.size() - 1) commandBuilder.append(" AND ");
         }
 
         return commandBuilder.build();
@@ -0,0 +1,132 @@
+package mxrlin.sqlib.command.set;
+
+import mxrlin.sqlib.command.CommandBuilder;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.RowData;
+
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * Updates all columns of a table matching a {@link Condition}, optionally limited to a maximum amount of columns.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class.
+ * 3. Use the {@link mxrlin.sqlib.SQLibConnection#executeUpdate(UpdatingCommand)} with this class as first parameter.
+ *
+ * @see mxrlin.sqlib.IConnection#executeUpdate(UpdatingCommand)
+ * @see mxrlin.sqlib.batch.ChunkedOperation
+ * @see mxrlin.sqlib.SQLibConnection
+ */
+public class UpdateWhereCommand implements UpdatingCommand {
+
+    // table name
+    private String tableName;
+
+    // rows that are getting updated
+    private List<RowData> updatingRows;
+
+    // the condition the updated columns match, null = all columns
+    private Condition condition;
+
+    // the row the columns are updated in order of, null = any order
+    private String orderRow;
+
+    // maximum amount of updated columns, -1 = no limit
+    private int limit;
+
+    /**
+     * Update all columns matching {@param condition}
+     * @param tableName The table name
+     * @param updatingRows The Row(s) that is/are getting updated
+     * @param condition The condition the updated columns match, null = all columns
+     */
+    public UpdateWhereCommand(String tableName, List<RowData> updatingRows, Condition condition) {
+        this.tableName = tableName;
+        this.updatingRows = updatingRows;
+        this.condition = condition;
+        this.limit = -1;
+    }
+
+    /**
+     * Only update up to {@param limit} columns in ascending order of {@param orderRow}
+     * @param orderRow The row the columns are updated in order of, null = any order
+     * @param limit Maximum amount of updated columns
+     */
+    public UpdateWhereCommand limit(String orderRow, int limit) {
+        this.orderRow = orderRow;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @return The table name
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The Row(s) that is/are getting updated
+     */
+    public List<RowData> getUpdatingRows() {
+        return updatingRows;
+    }
+
+    /**
+     * @return The condition the updated columns match, null = all columns
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return The row the columns are updated in order of, null = any order
+     */
+    public String getOrderRow() {
+        return orderRow;
+    }
+
+    /**
+     * @return Maximum amount of updated columns, -1 = no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the MySQL Statement, that is used for executing the
+     * command in {@link mxrlin.sqlib.IConnection#executeQuery(QueryCommand)}
+     *
+     * Example:     "UPDATE table SET state=? WHERE (id>? AND id<=?)"
+     *
+     * @return Returns an {@link MySQLStatement}
+     */
+    @Override
+    public MySQLStatement getCommandStatement() {
+        CommandBuilder builder = new CommandBuilder("UPDATE ");
+        builder.append(tableName).append(" SET ");
+
+        for (int i = 0; i < updatingRows.size(); i++) {
+            RowData rowData = updatingRows.get(i);
+            builder.append(rowData.getRowName() + "=").appendQuestionMark(rowData.getValue());
+            if(i != updatingRows.size() - 1) builder.append(", ");
+        }
+
+        if(condition != null){
+            builder.append(" WHERE ");
+            condition.appendTo(builder);
+        }
+
+        if(limit >= 0){
+            if(orderRow != null) builder.append(" ORDER BY ").append(orderRow);
+            builder.append(" LIMIT ").append("" + limit);
+        }
+
+        return builder.build();
+    }
+
+}
@@ -26,4 +26,11 @@ public interface UpdatingCommand {
      */
     MySQLStatement getCommandStatement();
 
+    /**
+     * @return The name of the table that is changed by this command, null if it is unknown
+     */
+    default String getTableName() {
+        return null;
+    }
+
 }
@@ -0,0 +1,402 @@
+package mxrlin.sqlib.compression;
+
+import mxrlin.sqlib.codec.CodecRegistry;
+import mxrlin.sqlib.command.set.CreateTableCommand;
+import mxrlin.sqlib.command.set.InsertColumnCommand;
+import mxrlin.sqlib.command.set.InsertColumnsCommand;
+import mxrlin.sqlib.command.set.UpdateEntryCommand;
+import mxrlin.sqlib.command.set.UpdateWhereCommand;
+import mxrlin.sqlib.command.set.UpdatingCommand;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.misc.Table;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Part of the SQLib API
+ *
+ * Compresses the values of large BLOB / TEXT rows before they are sent to the database and decompresses them when they
+ * are read, so less data goes over the network and more columns fit into the buffer pool of MySQL.
+ *
+ * 1. Mark the rows with {@link Table.TableRow#isCompressed()}, TEXT rows are created as the BLOB type of the same size.
+ * 2. Set an instance with {@link mxrlin.sqlib.SQLibConnection#setValueCompression(ValueCompression)}.
+ * 3. Tables created through the connection are registered automatically, existing tables with {@link #register(Table)}.
+ *
+ * Compressed values start with a small header (magic bytes and the original length), values smaller than the threshold
+ * or values that don't get smaller are stored as they are. Values written before compression was enabled stay readable.
+ * Texts are compressed as UTF-8. Values of {@link mxrlin.sqlib.misc.StreamValue} are stored as they are.
+ */
+public class ValueCompression {
+
+    /**
+     * Values smaller than this amount of bytes aren't compressed by default
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    // 0x00 'S' 'Z' + version, texts never start with a NUL character
+    private static final byte[] MAGIC = {0x00, 0x53, 0x5A, 0x01};
+
+    /**
+     * Deflate never expands data more than 1032 times, longer original lengths come from corrupted bytes
+     */
+    public static final int MAX_DEFLATE_RATIO = 1032;
+
+    // table -> compressed rows
+    private final Map<String, Set<String>> compressedRows = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<Deflater> deflaters;
+    private final BlockingQueue<Inflater> inflaters;
+
+    private int threshold = DEFAULT_THRESHOLD;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * Create a compression that keeps as many Deflaters and Inflaters as there are processors
+     */
+    public ValueCompression() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param poolSize Amount of Deflaters and Inflaters that are kept for reuse
+     */
+    public ValueCompression(int poolSize) {
+        if(poolSize <= 0) throw new IllegalArgumentException("Pool size has to be positive");
+        this.deflaters = new ArrayBlockingQueue<>(poolSize);
+        this.inflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * @param threshold Values smaller than this amount of bytes are stored uncompressed
+     */
+    public ValueCompression threshold(int threshold) {
+        if(threshold < 0) throw new IllegalArgumentException("Threshold can't be negative");
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param level The deflate level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public ValueCompression level(int level) {
+        if((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) throw new IllegalArgumentException("Invalid level " + level);
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * Compress the rows of {@param table} that are marked with {@link Table.TableRow#isCompressed()}
+     * @param table The table
+     */
+    public void register(Table table) {
+        for (Table.TableRow row : table.getRows()) {
+            if(row.isCompressed()) register(table.getTableName(), row.getRowName());
+        }
+    }
+
+    /**
+     * Compress the row {@param rowName} of the table {@param tableName}
+     * @param tableName The name of the table
+     * @param rowName The name of the row, has to be a BLOB type
+     */
+    public void register(String tableName, String rowName) {
+        compressedRows.computeIfAbsent(tableName, name -> ConcurrentHashMap.newKeySet()).add(rowName);
+    }
+
+    /**
+     * @param tableName The name of the table
+     * @param rowName The name of the row
+     * @return true if the values of the row are compressed
+     */
+    public boolean isCompressed(String tableName, String rowName) {
+        Set<String> rows = compressedRows.get(tableName);
+        return rows != null && rows.contains(rowName);
+    }
+
+    /**
+     * Compress the values of compressed rows in {@param command}. CreateTableCommands register their table.
+     * @param command The command that is about to be executed
+     * @return A command with compressed values, {@param command} if nothing is compressed
+     * @throws SQLibException Thrown when a value couldn't be compressed
+     */
+    public UpdatingCommand apply(UpdatingCommand command) throws SQLibException {
+        if(command instanceof CreateTableCommand){
+            register(((CreateTableCommand) command).getTable());
+            return command;
+        }
+
+        String tableName = command.getTableName();
+        if(tableName == null || !compressedRows.containsKey(tableName)) return command;
+
+        if(command instanceof InsertColumnCommand){
+            List<RowData> rowData = ((InsertColumnCommand) command).getRowData();
+            List<RowData> compressed = compress(tableName, rowData);
+            return compressed == rowData ? command : new InsertColumnCommand(tableName, compressed);
+        }
+        if(command instanceof InsertColumnsCommand){
+            List<List<RowData>> columns = ((InsertColumnsCommand) command).getColumns();
+            List<List<RowData>> compressed = new ArrayList<>(columns.size());
+            boolean changed = false;
+            for (List<RowData> column : columns) {
+                List<RowData> compressedColumn = compress(tableName, column);
+                changed |= compressedColumn != column;
+                compressed.add(compressedColumn);
+            }
+            return changed ? new InsertColumnsCommand(tableName, compressed) : command;
+        }
+        if(command instanceof UpdateEntryCommand){
+            UpdateEntryCommand update = (UpdateEntryCommand) command;
+            List<RowData> compressed = compress(tableName, update.getUpdatingRows());
+            return compressed == update.getUpdatingRows() ? command : new UpdateEntryCommand(tableName, compressed, update.getUpdateAt());
+        }
+        if(command instanceof UpdateWhereCommand){
+            UpdateWhereCommand update = (UpdateWhereCommand) command;
+            List<RowData> compressed = compress(tableName, update.getUpdatingRows());
+            if(compressed == update.getUpdatingRows()) return command;
+            UpdateWhereCommand compressedUpdate = new UpdateWhereCommand(tableName, compressed, update.getCondition());
+            return update.getLimit() > 0 ? compressedUpdate.limit(update.getOrderRow(), update.getLimit()) : compressedUpdate;
+        }
+        return command;
+    }
+
+    // returns rowData itself if no value was compressed
+    private List<RowData> compress(String tableName, List<RowData> rowData) throws SQLibException {
+        List<RowData> compressed = null;
+        for (int i = 0; i < rowData.size(); i++) {
+            RowData row = rowData.get(i);
+            if(!isCompressed(tableName, row.getRowName())) continue;
+
+            Object value = compress(row.getValue());
+            if(value == row.getValue()) continue;
+            if(compressed == null) compressed = new ArrayList<>(rowData);
+            compressed.set(i, new RowData(row.getRowName(), value));
+        }
+        return compressed == null ? rowData : compressed;
+    }
+
+    /**
+     * Compress a value if it's large enough and gets smaller
+     * @param value A byte array, String or value with a {@link mxrlin.sqlib.codec.ValueCodec}, other values are returned as they are
+     * @return The compressed bytes with header, or {@param value}
+     * @throws SQLibException Thrown when the value couldn't be compressed
+     */
+    public Object compress(Object value) throws SQLibException {
+        byte[] bytes;
+        if(value instanceof byte[]) bytes = (byte[]) value;
+        else if(value instanceof String) bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+        else {
+            // values with a codec are compressed as their encoded bytes
+            bytes = CodecRegistry.getDefault().encode(value);
+            if(bytes == null) return value;
+            value = bytes;
+        }
+
+        // values that look like a header are always compressed, so they are read back unchanged
+        boolean ambiguous = hasHeader(bytes);
+        if(bytes.length < threshold && !ambiguous) return value;
+
+        byte[] compressed = deflate(bytes);
+        if(compressed.length >= bytes.length && !ambiguous) return value;
+
+        compressedValues.increment();
+        savedBytes.add(bytes.length - compressed.length);
+        return compressed;
+    }
+
+    /**
+     * Decompress a value that was read from a compressed row
+     * @param bytes The stored bytes, can be compressed or not
+     * @return The original bytes
+     * @throws SQLibException Thrown when the value is corrupted
+     */
+    public byte[] decompress(byte[] bytes) throws SQLibException {
+        if(bytes == null || !hasHeader(bytes)) return bytes;
+
+        int offset = MAGIC.length;
+        int originalLength = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if(offset >= bytes.length || shift > 28) throw new SQLibException("Corrupted header of a compressed value");
+            b = bytes[offset++];
+            originalLength |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if(originalLength < 0 || originalLength > (bytes.length - offset) * (long) MAX_DEFLATE_RATIO)
+            throw new SQLibException("Corrupted header of a compressed value, invalid length " + originalLength);
+
+        Inflater inflater = borrowInflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            byte[] original = new byte[originalLength];
+            int read = 0;
+            while (read < originalLength){
+                int inflated = inflater.inflate(original, read, originalLength - read);
+                if(inflated == 0 && (inflater.finished() || inflater.needsInput())) break;
+                read += inflated;
+            }
+            if(read != originalLength) throw new SQLibException("Corrupted compressed value, expected " + originalLength + " bytes but got " + read);
+            return original;
+        } catch (DataFormatException e) {
+            throw new SQLibException("Corrupted compressed value", e);
+        } finally {
+            releaseInflater(inflater);
+        }
+    }
+
+    /**
+     * Decompress a value while it's read
+     * @param in The stored bytes, can be compressed or not
+     * @return A stream of the original bytes
+     * @throws IOException Thrown when the header couldn't be read
+     */
+    public InputStream decompressingStream(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, MAGIC.length);
+        byte[] head = new byte[MAGIC.length];
+        int read = 0;
+        while (read < head.length){
+            int r = pushback.read(head, read, head.length - read);
+            if(r == -1) break;
+            read += r;
+        }
+        if(read < head.length || !Arrays.equals(head, MAGIC)){
+            if(read > 0) pushback.unread(head, 0, read);
+            return pushback;
+        }
+
+        // skip the original length
+        int b;
+        do {
+            b = pushback.read();
+            if(b == -1) throw new IOException("Corrupted header of a compressed value");
+        } while ((b & 0x80) != 0);
+
+        Inflater inflater = borrowInflater();
+        return new InflaterInputStream(pushback, inflater) {
+            private boolean released;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if(!released){
+                        released = true;
+                        releaseInflater(inflater);
+                    }
+                }
+            }
+        };
+    }
+
+    private byte[] deflate(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        out.write(MAGIC, 0, MAGIC.length);
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0){
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+
+        Deflater deflater = borrowDeflater();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(64 * 1024, Math.max(512, bytes.length))];
+            while (!deflater.finished()){
+                int deflated = deflater.deflate(buffer);
+                out.write(buffer, 0, deflated);
+            }
+        } finally {
+            releaseDeflater(deflater);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param text A value that was read as text
+     * @return true if {@param text} is a compressed value that was read with getString instead of being decompressed
+     */
+    public static boolean isCompressedText(String text) {
+        if(text == null || text.length() < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if(text.charAt(i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean hasHeader(byte[] bytes) {
+        if(bytes.length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if(bytes[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    private Deflater borrowDeflater() {
+        Deflater deflater = deflaters.poll();
+        if(deflater == null) return new Deflater(level);
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    private void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if(!deflaters.offer(deflater)) deflater.end();
+    }
+
+    private Inflater borrowInflater() {
+        Inflater inflater = inflaters.poll();
+        return inflater == null ? new Inflater() : inflater;
+    }
+
+    private void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if(!inflaters.offer(inflater)) inflater.end();
+    }
+
+    /**
+     * @return The compressed rows of all registered tables, table -> rows
+     */
+    public Map<String, Set<String>> getCompressedRows() {
+        return Collections.unmodifiableMap(compressedRows);
+    }
+
+    /**
+     * @return Amount of values that were compressed
+     */
+    public long getCompressedCount() {
+        return compressedValues.sum();
+    }
+
+    /**
+     * @return Amount of bytes that compression saved
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+}
@@ -0,0 +1,374 @@
+package mxrlin.sqlib.concurrent;
+
+import mxrlin.sqlib.exception.OverloadedException;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.Deadline;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Part of the SQLib API
+ *
+ * Limits the amount of commands that are executed at the same time, so a load spike queues up in the application instead
+ * of overloading the database. The limit adapts to the observed latency (additive increase, multiplicative decrease):
+ * it grows slowly while commands are fast and shrinks when they get slower than the latency threshold.
+ *
+ * Waiting commands are started in the order of their {@link Priority}, so interactive reads overtake background writes.
+ * A command that can't start within its queue-wait budget is rejected with an {@link OverloadedException}, and commands
+ * are rejected right away when the estimated wait is already longer than their budget.
+ *
+ * The priority is set per thread with {@link #setPriority(Priority)}. Bulk work of SQLib ({@link mxrlin.sqlib.batch.ChunkedOperation},
+ * {@link mxrlin.sqlib.cache.CacheWarmer}, snapshots) runs with {@link Priority#BACKGROUND}.
+ *
+ * @see mxrlin.sqlib.SQLibConnection#setAdmissionController(AdmissionController)
+ */
+public class AdmissionController {
+
+    private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<>();
+
+    // latencies of a window are used to find the latency of an idle database
+    private static final int BASELINE_WINDOW = 250;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>();
+    private long waiterSequence;
+
+    // current limit, fractional so it can grow by less than one per command
+    private double limit;
+    private int minLimit;
+    private int maxLimit;
+    private int inFlight;
+
+    // a fixed latency threshold, 0 = baseline latency * tolerance
+    private long latencyThresholdNanos;
+    private double latencyTolerance = 2.0;
+    private double backoff = 0.9;
+
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecreaseNanos;
+
+    // smoothed latency, used to estimate the wait of new commands
+    private double averageLatencyNanos;
+
+    // maximum time a command waits for a permit, per priority
+    private final long[] maxQueueWaitNanos = {
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(5)
+    };
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param initialLimit The amount of commands that may run at the same time at the beginning
+     * @param minLimit The lowest limit
+     * @param maxLimit The highest limit
+     */
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit) {
+        if(minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) throw new IllegalArgumentException("Expected 0 < min <= initial <= max");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Use a fixed latency threshold instead of the measured baseline latency
+     * @param threshold Commands slower than this shrink the limit, 0 = baseline latency * tolerance
+     * @param unit The unit of {@param threshold}
+     */
+    public AdmissionController latencyThreshold(long threshold, TimeUnit unit) {
+        this.latencyThresholdNanos = unit.toNanos(threshold);
+        return this;
+    }
+
+    /**
+     * @param tolerance Commands slower than the baseline latency times {@param tolerance} shrink the limit
+     */
+    public AdmissionController latencyTolerance(double tolerance) {
+        if(tolerance < 1) throw new IllegalArgumentException("Tolerance has to be at least 1");
+        this.latencyTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * @param factor The limit is multiplied with {@param factor} when a command was too slow
+     */
+    public AdmissionController backoff(double factor) {
+        if(factor <= 0 || factor >= 1) throw new IllegalArgumentException("Backoff has to be between 0 and 1");
+        this.backoff = factor;
+        return this;
+    }
+
+    /**
+     * @param priority The priority
+     * @param maxWait Maximum time commands of {@param priority} wait for a permit before they are rejected
+     * @param unit The unit of {@param maxWait}
+     */
+    public AdmissionController maxQueueWait(Priority priority, long maxWait, TimeUnit unit) {
+        maxQueueWaitNanos[priority.ordinal()] = unit.toNanos(maxWait);
+        return this;
+    }
+
+    /**
+     * Set the priority of the commands the current thread executes
+     * @param priority The priority, null = {@link Priority#NORMAL}
+     * @return The previous priority of the thread, to restore it later
+     */
+    public static Priority setPriority(Priority priority) {
+        Priority previous = getPriority();
+        if(priority == null || priority == Priority.NORMAL) PRIORITY.remove();
+        else PRIORITY.set(priority);
+        return previous;
+    }
+
+    /**
+     * @return The priority of the commands the current thread executes
+     */
+    public static Priority getPriority() {
+        Priority priority = PRIORITY.get();
+        return priority == null ? Priority.NORMAL : priority;
+    }
+
+    /**
+     * Wait for a permit to execute a command with the priority of the current thread
+     * @param deadline The deadline of the command, the wait never exceeds it
+     * @return The permit, has to be closed after the command finished
+     * @throws OverloadedException Thrown when the command couldn't start within its queue-wait budget
+     * @throws SQLibException Thrown when the thread was interrupted while waiting
+     */
+    public Permit acquire(Deadline deadline) throws SQLibException {
+        Priority priority = getPriority();
+        long budgetNanos = maxQueueWaitNanos[priority.ordinal()];
+        if(!deadline.isUnlimited()) budgetNanos = Math.min(budgetNanos, TimeUnit.MILLISECONDS.toNanos(deadline.getRemainingMillis()));
+
+        Waiter waiter;
+        lock.lock();
+        try {
+            if(queue.isEmpty() && inFlight < (int) limit){
+                inFlight++;
+                admitted.increment();
+                return new Permit();
+            }
+
+            long estimatedWait = estimateWaitNanos(priority);
+            if(estimatedWait > budgetNanos) throw reject(priority, "the estimated wait of " + TimeUnit.NANOSECONDS.toMillis(estimatedWait) + "ms exceeds its budget");
+
+            waiter = new Waiter(priority, waiterSequence++, lock.newCondition());
+            queue.add(waiter);
+
+            long remaining = budgetNanos;
+            while (!waiter.granted){
+                if(remaining <= 0){
+                    queue.remove(waiter);
+                    throw reject(priority, "it waited longer than " + TimeUnit.NANOSECONDS.toMillis(budgetNanos) + "ms");
+                }
+                try {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if(waiter.granted) release(0, false);
+                    else queue.remove(waiter);
+                    throw new SQLibException("Interrupted while waiting for a permit", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        admitted.increment();
+        return new Permit();
+    }
+
+    private OverloadedException reject(Priority priority, String reason) {
+        rejected.increment();
+        return new OverloadedException("The database is overloaded, a " + priority + " command was rejected because " + reason
+                + " (limit " + (int) limit + ", in flight " + inFlight + ", queued " + queue.size() + ")");
+    }
+
+    // commands of at least the same priority that are ahead, divided by the commands that run at the same time
+    private long estimateWaitNanos(Priority priority) {
+        if(averageLatencyNanos == 0) return 0;
+        int ahead = 0;
+        for (Waiter waiter : queue) {
+            if(waiter.priority.ordinal() <= priority.ordinal()) ahead++;
+        }
+        return (long) ((ahead + 1) * averageLatencyNanos / Math.max(1, (int) limit));
+    }
+
+    private void release(long latencyNanos, boolean measured) {
+        lock.lock();
+        try {
+            inFlight--;
+            if(measured) adaptLimit(latencyNanos);
+
+            while (inFlight < (int) limit && !queue.isEmpty()){
+                Waiter next = queue.poll();
+                next.granted = true;
+                inFlight++;
+                next.condition.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // additive increase while commands are fast and the limit is used, multiplicative decrease once per round trip when slow
+    private void adaptLimit(long latencyNanos) {
+        averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos : averageLatencyNanos * 0.9 + latencyNanos * 0.1;
+
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        if(baselineNanos == Long.MAX_VALUE || ++windowSamples >= BASELINE_WINDOW){
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+
+        long threshold = latencyThresholdNanos > 0 ? latencyThresholdNanos : (long) (baselineNanos * latencyTolerance);
+        long now = System.nanoTime();
+
+        if(latencyNanos > threshold){
+            if(now - lastDecreaseNanos >= latencyNanos){
+                limit = Math.max(minLimit, limit * backoff);
+                lastDecreaseNanos = now;
+            }
+        }else if(inFlight + 1 >= (int) limit / 2){
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * @return The amount of commands that may run at the same time
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The amount of commands that are running
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The amount of commands waiting for a permit
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Amount of commands that got a permit
+     */
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    /**
+     * @return Amount of commands that were rejected
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Priorities of commands, waiting commands of a higher priority always start first
+     */
+    public enum Priority {
+
+        /**
+         * Commands a user is waiting for, for example reads of a request
+         */
+        INTERACTIVE,
+
+        /**
+         * The priority of threads that didn't set one
+         */
+        NORMAL,
+
+        /**
+         * Bulk work that can wait, for example batch writes, cache warm-ups and snapshots
+         */
+        BACKGROUND
+
+    }
+
+    /**
+     * The permission to execute a command. Closing it lets the next command start.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final long startNanos = System.nanoTime();
+        private boolean closed;
+
+        private Permit() {}
+
+        /**
+         * Release the permit and let the latency of the command adapt the limit
+         */
+        @Override
+        public void close() {
+            close(true);
+        }
+
+        /**
+         * Release the permit without adapting the limit. Used for batches and streamed scans, which take longer than
+         * single statements without the database being slower.
+         */
+        public void closeUnmeasured() {
+            close(false);
+        }
+
+        private void close(boolean measured) {
+            if(closed) return;
+            closed = true;
+            release(System.nanoTime() - startNanos, measured);
+        }
+
+    }
+
+    // a thread waiting for a permit
+    private static final class Waiter implements Comparable<Waiter> {
+
+        private final Priority priority;
+        private final long sequence;
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter(Priority priority, long sequence, Condition condition) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.condition = condition;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            if(priority != other.priority) return priority.compareTo(other.priority);
+            return Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
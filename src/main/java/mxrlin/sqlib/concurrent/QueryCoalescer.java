@@ -0,0 +1,147 @@
+package mxrlin.sqlib.concurrent;
+
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.CachedResult;
+import mxrlin.sqlib.misc.Deadline;
+import mxrlin.sqlib.misc.MySQLStatement;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Part of the SQLib API
+ *
+ * Lets concurrent executions of the same {@link MySQLStatement} (same command and same arguments) share a single
+ * database round trip ("single flight"). The first thread executes the statement, every thread that asks for the same
+ * statement while it is still running waits for it and gets its own {@link ResultSet} of the same {@link CachedResult}.
+ *
+ * Nothing is cached after the execution finished, so results are never older than the running query.
+ *
+ * @see mxrlin.sqlib.SQLibConnection#setQueryCoalescing(boolean)
+ */
+public class QueryCoalescer {
+
+    // statements that are currently executed
+    private final ConcurrentHashMap<MySQLStatement, CompletableFuture<CachedResult>> inFlight = new ConcurrentHashMap<>();
+
+    // amount of statements that were sent to the database
+    private final LongAdder executed = new LongAdder();
+
+    // amount of statements that were answered by an execution of another thread
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Execute {@param statement} or wait for the running execution of an equal statement
+     * @param statement The statement that should be executed
+     * @param loader Executes the statement and reads its result, only called if no equal statement is running
+     * @return A new ResultSet of the result
+     * @throws SQLibException Thrown when the execution failed
+     */
+    public ResultSet execute(MySQLStatement statement, Loader loader) throws SQLibException {
+        return execute(statement, Deadline.none(), loader);
+    }
+
+    /**
+     * Execute {@param statement} or wait for the running execution of an equal statement until {@param deadline} expires
+     * @param statement The statement that should be executed
+     * @param deadline The deadline of the calling thread, a running execution of another thread isn't cancelled by it
+     * @param loader Executes the statement and reads its result, only called if no equal statement is running
+     * @return A new ResultSet of the result
+     * @throws SQLibException Thrown when the execution failed or the deadline expired while waiting
+     */
+    public ResultSet execute(MySQLStatement statement, Deadline deadline, Loader loader) throws SQLibException {
+        CachedResult result;
+
+        CompletableFuture<CachedResult> own = new CompletableFuture<>();
+        CompletableFuture<CachedResult> running = inFlight.putIfAbsent(statement, own);
+
+        if(running != null){
+            coalesced.increment();
+            result = await(statement, running, deadline);
+        }else{
+            executed.increment();
+            try {
+                result = loader.load();
+                own.complete(result);
+            } catch (SQLibException | RuntimeException | Error e) {
+                own.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(statement, own);
+            }
+        }
+
+        try {
+            return result.toResultSet();
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to create a ResultSet of the command \"" + statement.getCommand() + "\"", e);
+        }
+    }
+
+    private CachedResult await(MySQLStatement statement, CompletableFuture<CachedResult> running, Deadline deadline) throws SQLibException {
+        try {
+            if(deadline.isUnlimited()) return running.get();
+            return running.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new SQLibException("The deadline of the command \"" + statement.getCommand() + "\" expired", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLibException("Interrupted while waiting for the command \"" + statement.getCommand() + "\"", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof SQLibException) throw (SQLibException) e.getCause();
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw (Error) e.getCause();
+        }
+    }
+
+    /**
+     * @return Amount of statements that were sent to the database
+     */
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * @return Amount of statements that were answered by the execution of another thread
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return The share of statements that didn't need an own round trip (0.0 - 1.0)
+     */
+    public double getCoalesceRatio() {
+        long coalesced = getCoalescedCount();
+        long total = coalesced + getExecutedCount();
+        return total == 0 ? 0 : (double) coalesced / total;
+    }
+
+    /**
+     * @return Amount of statements that are currently executed
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Executes a statement and reads its whole result
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * @return The result of the statement
+         * @throws SQLibException Thrown when the execution failed
+         */
+        CachedResult load() throws SQLibException;
+
+    }
+
+}
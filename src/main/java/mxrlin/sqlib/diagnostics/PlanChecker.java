@@ -0,0 +1,244 @@
+package mxrlin.sqlib.diagnostics;
+
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.StreamValue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Part of the SQLib API
+ *
+ * Checks the execution plans of the statements SQLib generates. Every distinct statement (its command with all values
+ * replaced by placeholders, the "fingerprint") is checked once with "EXPLAIN" and the verdict is cached, so only the
+ * first execution of a statement pays for the extra round trip.
+ *
+ * Full table scans, filesorts and temporary tables are reported as {@link PlanFinding}s. They are logged and kept in
+ * {@link #getFindings()}, and in {@link Mode#FAIL} the statement isn't executed, so missing indexes are noticed in
+ * staging before they slow down production.
+ *
+ * 1. Create a new instance of {@link mxrlin.sqlib.SQLibConnection} and create a MySQL-Connection
+ * 2. Create a new instance of this class and set it with {@link mxrlin.sqlib.SQLibConnection#setPlanChecker(PlanChecker)}.
+ * 3. Execute the commands as usual and look at {@link #getFindings()}.
+ *
+ * @see PlanFinding
+ */
+public class PlanChecker {
+
+    private static final Logger LOGGER = Logger.getLogger(PlanChecker.class.getName());
+
+    // "IN (?, ?, ?)" and multi-column "VALUES (?, ?), (?, ?)" only differ by the amount of keys / columns
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\?(\\s*,\\s*\\?)*\\)");
+    private static final Pattern VALUES_LIST = Pattern.compile("\\(\\?\\+\\)(\\s*,\\s*\\(\\?\\+\\))+");
+
+    // what happens to a statement with findings
+    private Mode mode;
+
+    // full table scans of tables with less estimated columns are ignored
+    private long minScannedRows;
+
+    // notified about every new finding, may be null
+    private volatile FindingListener listener;
+
+    // fingerprint -> findings of the statement, empty if the plan is fine
+    private final ConcurrentHashMap<String, List<PlanFinding>> verdicts = new ConcurrentHashMap<>();
+
+    /**
+     * Check plans and log findings as warnings
+     */
+    public PlanChecker() {
+        this(Mode.WARN);
+    }
+
+    /**
+     * @param mode What happens to a statement with findings
+     */
+    public PlanChecker(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Ignore full table scans of tables the optimizer estimates to have less than {@param rows} columns, as reading small
+     * tables completely is often faster than using an index
+     * @param rows Minimum estimated amount of scanned columns, 0 = report every full table scan
+     */
+    public PlanChecker minScannedRows(long rows) {
+        this.minScannedRows = rows;
+        return this;
+    }
+
+    /**
+     * @param listener Notified once about every statement with findings
+     */
+    public PlanChecker listener(FindingListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Check the plan of {@param statement} unless its fingerprint was already checked
+     * @param connection The connection the plan is explained with
+     * @param statement The statement that is about to be executed
+     * @throws SQLibException Thrown in {@link Mode#FAIL} when the plan has findings
+     */
+    public void check(Connection connection, MySQLStatement statement) throws SQLibException {
+        String fingerprint = fingerprint(statement.getCommand());
+
+        List<PlanFinding> findings = verdicts.get(fingerprint);
+        if(findings == null){
+            if(!isExplainable(statement.getCommand())){
+                verdicts.putIfAbsent(fingerprint, Collections.emptyList());
+                return;
+            }
+
+            findings = explain(connection, statement, fingerprint);
+            // no verdict, the statement is explained again the next time
+            if(findings == null) return;
+            if(verdicts.putIfAbsent(fingerprint, findings) == null && !findings.isEmpty()) report(findings);
+        }
+
+        if(mode == Mode.FAIL && !findings.isEmpty()){
+            throw new SQLibException("The plan of the command \"" + statement.getCommand() + "\" has findings: " + findings);
+        }
+    }
+
+    /**
+     * @return All findings of all checked statements
+     */
+    public List<PlanFinding> getFindings() {
+        List<PlanFinding> all = new ArrayList<>();
+        for (List<PlanFinding> findings : verdicts.values()) {
+            all.addAll(findings);
+        }
+        return all;
+    }
+
+    /**
+     * @return The amount of distinct statements that were checked
+     */
+    public int getCheckedCount() {
+        return verdicts.size();
+    }
+
+    /**
+     * Forget all verdicts, for example after indexes were added. Every statement is checked again.
+     */
+    public void reset() {
+        verdicts.clear();
+    }
+
+    /**
+     * @return What happens to a statement with findings
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @param command The command of a {@link MySQLStatement}
+     * @return The command with every list of placeholders collapsed, so statements that only differ by the amount of
+     *         keys or inserted columns have the same fingerprint
+     */
+    public static String fingerprint(String command) {
+        String collapsed = PLACEHOLDER_LIST.matcher(command).replaceAll("(?+)");
+        return VALUES_LIST.matcher(collapsed).replaceAll("(?+)+");
+    }
+
+    // inserting values never scans a table and DDL commands can't be explained
+    private static boolean isExplainable(String command) {
+        String start = command.trim().toUpperCase(Locale.ROOT);
+        return start.startsWith("SELECT") || start.startsWith("UPDATE") || start.startsWith("DELETE");
+    }
+
+    // the findings of the plan, null if it couldn't be explained
+    private List<PlanFinding> explain(Connection connection, MySQLStatement statement, String fingerprint) {
+        // streams can only be read once, explaining with them would leave nothing for the statement itself
+        List<Object> arguments = statement.getReplaceArguments();
+        arguments.replaceAll(argument -> argument instanceof StreamValue ? null : argument);
+        MySQLStatement explain = new MySQLStatement("EXPLAIN " + statement.getCommand(), arguments);
+        List<PlanFinding> findings = new ArrayList<>();
+
+        try (PreparedStatement prepared = explain.asPreparedStatement(connection);
+             ResultSet set = prepared.executeQuery()){
+            while (set.next()){
+                String table = set.getString("table");
+                String type = set.getString("type");
+                String possibleKeys = set.getString("possible_keys");
+                long rows = set.getLong("rows");
+                String extra = set.getString("Extra");
+
+                if("ALL".equalsIgnoreCase(type) && rows >= minScannedRows){
+                    findings.add(new PlanFinding(fingerprint, PlanFinding.Problem.FULL_TABLE_SCAN, table, possibleKeys, rows, extra));
+                }
+                if(extra != null && extra.contains("Using filesort")){
+                    findings.add(new PlanFinding(fingerprint, PlanFinding.Problem.FILESORT, table, possibleKeys, rows, extra));
+                }
+                if(extra != null && extra.contains("Using temporary")){
+                    findings.add(new PlanFinding(fingerprint, PlanFinding.Problem.TEMPORARY_TABLE, table, possibleKeys, rows, extra));
+                }
+            }
+        } catch (SQLibException | SQLException e) {
+            // a plan that can't be explained isn't a finding, the statement itself will report real errors
+            LOGGER.log(Level.FINE, "Failed to explain the command \"" + statement.getCommand() + "\"", e);
+            return null;
+        }
+
+        return Collections.unmodifiableList(findings);
+    }
+
+    private void report(List<PlanFinding> findings) {
+        for (PlanFinding finding : findings) {
+            LOGGER.log(mode == Mode.FAIL ? Level.SEVERE : Level.WARNING, finding.toString());
+        }
+
+        FindingListener listener = this.listener;
+        if(listener == null) return;
+        try {
+            listener.onFindings(findings);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Plan finding listener failed", e);
+        }
+    }
+
+    /**
+     * What happens to a statement whose plan has findings
+     */
+    public enum Mode {
+
+        /**
+         * Log the findings and execute the statement
+         */
+        WARN,
+
+        /**
+         * Log the findings and throw an {@link SQLibException} instead of executing the statement
+         */
+        FAIL
+
+    }
+
+    /**
+     * Notified once about every statement whose plan has findings
+     */
+    @FunctionalInterface
+    public interface FindingListener {
+
+        /**
+         * @param findings The findings of a single statement
+         */
+        void onFindings(List<PlanFinding> findings);
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package mxrlin.sqlib.diagnostics;
+
+/**
+ * Part of the SQLib API
+ *
+ * A problem in the execution plan of a statement, found by {@link PlanChecker}.
+ *
+ * @see PlanChecker#getFindings()
+ */
+public class PlanFinding {
+
+    // the command with collapsed placeholder lists
+    private String fingerprint;
+
+    private Problem problem;
+
+    // the table of the plan row, may be null
+    private String tableName;
+
+    // the indexes the optimizer could have used, null if there is none
+    private String possibleKeys;
+
+    // the estimated amount of examined columns
+    private long rows;
+
+    // the "Extra" column of the plan row, may be null
+    private String extra;
+
+    /**
+     * @param fingerprint The command with collapsed placeholder lists
+     * @param problem The problem
+     * @param tableName The table of the plan row
+     * @param possibleKeys The indexes the optimizer could have used
+     * @param rows The estimated amount of examined columns
+     * @param extra The "Extra" column of the plan row
+     */
+    public PlanFinding(String fingerprint, Problem problem, String tableName, String possibleKeys, long rows, String extra) {
+        this.fingerprint = fingerprint;
+        this.problem = problem;
+        this.tableName = tableName;
+        this.possibleKeys = possibleKeys;
+        this.rows = rows;
+        this.extra = extra;
+    }
+
+    /**
+     * @return The command of the statement with collapsed placeholder lists
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return The problem
+     */
+    public Problem getProblem() {
+        return problem;
+    }
+
+    /**
+     * @return The table of the plan row, may be null
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The indexes the optimizer could have used, null if there is no index for the condition
+     */
+    public String getPossibleKeys() {
+        return possibleKeys;
+    }
+
+    /**
+     * @return The estimated amount of examined columns
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The "Extra" column of the plan row, may be null
+     */
+    public String getExtra() {
+        return extra;
+    }
+
+    @Override
+    public String toString() {
+        return problem + " on table " + tableName + " (about " + rows + " columns, possible keys: " + possibleKeys
+                + ", extra: " + extra + ") in \"" + fingerprint + "\"";
+    }
+
+    /**
+     * Problems that are reported
+     */
+    public enum Problem {
+
+        /**
+         * Every column of the table is read, usually because the condition has no index
+         */
+        FULL_TABLE_SCAN,
+
+        /**
+         * The columns are sorted after reading them, because no index has the order of ORDER BY
+         */
+        FILESORT,
+
+        /**
+         * A temporary table is created, for example for GROUP BY or DISTINCT without a fitting index
+         */
+        TEMPORARY_TABLE
+
+    }
+
+}
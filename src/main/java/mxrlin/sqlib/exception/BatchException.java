@@ -0,0 +1,48 @@
+package mxrlin.sqlib.exception;
+
+import java.sql.Statement;
+
+/**
+ * Part of the SQLib API
+ *
+ * Exception that is thrown when an update of a batch failed. Updates before it, and with some drivers updates after it,
+ * may have been executed, {@link #getUpdateCounts()} tells which ones.
+ *
+ * @see mxrlin.sqlib.IConnection#executeBatch(java.util.List)
+ */
+public class BatchException extends SQLibException {
+
+    private static final long serialVersionUID = 1L;
+
+    // one count per command of the batch, Statement.EXECUTE_FAILED if it wasn't executed
+    private final int[] updateCounts;
+
+    /**
+     * @param reason The Reason the batch failed
+     * @param before The Exception that was the reason this Exception was thrown
+     * @param updateCounts The amount of affected columns of each command, {@link Statement#EXECUTE_FAILED} if the
+     *                     command failed, wasn't executed or it's unknown whether it was executed
+     */
+    public BatchException(String reason, Exception before, int[] updateCounts) {
+        super(reason, before);
+        this.updateCounts = updateCounts;
+    }
+
+    /**
+     * @return The amount of affected columns of each command, {@link Statement#EXECUTE_FAILED} if the command failed,
+     *         wasn't executed or it's unknown whether it was executed, {@link Statement#SUCCESS_NO_INFO} if it was
+     *         executed but the amount is unknown
+     */
+    public int[] getUpdateCounts() {
+        return updateCounts.clone();
+    }
+
+    /**
+     * @param index The index of the command in the batch
+     * @return true if the command was executed
+     */
+    public boolean wasExecuted(int index) {
+        return index < updateCounts.length && updateCounts[index] != Statement.EXECUTE_FAILED;
+    }
+
+}
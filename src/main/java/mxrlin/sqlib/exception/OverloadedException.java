@@ -0,0 +1,22 @@
+package mxrlin.sqlib.exception;
+
+/**
+ * Part of the SQLib API
+ *
+ * Exception that is thrown when a command is rejected before it reaches the database, because the database is busy and
+ * the command couldn't start within its queue-wait budget. Nothing of the command was executed, so it can be retried later.
+ *
+ * @see mxrlin.sqlib.concurrent.AdmissionController
+ */
+public class OverloadedException extends SQLibException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param reason The Reason the command was rejected
+     */
+    public OverloadedException(String reason) {
+        super(reason);
+    }
+
+}
@@ -26,7 +26,7 @@ public class SQLibException extends Exception {
      * @param before The Exception that was the reason this Exception was thrown
      */
     public SQLibException(String reason, Exception before){
-        super(reason + (before != null ? " (Exception thrown by other exception [" + before.getClass().getName() + "])" : "") + ": " + before.getMessage());
+        super(reason + (before != null ? " (Exception thrown by other exception [" + before.getClass().getName() + "]): " + before.getMessage() : ""), before);
         this.before = before;
     }
 
@@ -0,0 +1,22 @@
+package mxrlin.sqlib.exception;
+
+/**
+ * Part of the SQLib API
+ *
+ * Exception that is thrown when a command references a table or row that doesn't exist. It's thrown before the command
+ * is sent to the database, nothing of the command was executed.
+ *
+ * @see mxrlin.sqlib.schema.SchemaCache
+ */
+public class UnknownIdentifierException extends SQLibException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param reason The Reason the command was rejected
+     */
+    public UnknownIdentifierException(String reason) {
+        super(reason);
+    }
+
+}
@@ -0,0 +1,22 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Part of the SQLib API
+ *
+ * A command waiting for a permit of the {@link mxrlin.sqlib.concurrent.AdmissionController}, recorded as the Flight
+ * Recorder event {@link JfrEvents#ACQUIRE}. The connection of SQLib isn't pooled, so this is the time a command waited
+ * for its turn on the database.
+ *
+ * @see JfrEvents
+ */
+public interface AcquireEvent {
+
+    /**
+     * End the event and commit it if it exceeds the threshold
+     * @param commandClass The class of the waiting command
+     * @param table The table of the command, may be null
+     * @param failed true if no permit was acquired
+     */
+    void finish(Class<?> commandClass, String table, boolean failed);
+
+}
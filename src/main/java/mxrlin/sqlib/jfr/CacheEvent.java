@@ -0,0 +1,21 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Part of the SQLib API
+ *
+ * A lookup in the {@link mxrlin.sqlib.cache.EntryCache}, recorded as the Flight Recorder event {@link JfrEvents#CACHE}.
+ * Lookups are frequent and fast, so the event is disabled unless a recording enables it.
+ *
+ * @see JfrEvents
+ */
+public interface CacheEvent {
+
+    /**
+     * End the event and commit it if it exceeds the threshold
+     * @param commandClass The class of the answered command
+     * @param table The table of the command
+     * @param hit true if the command was answered out of the cache
+     */
+    void finish(Class<?> commandClass, String table, boolean hit);
+
+}
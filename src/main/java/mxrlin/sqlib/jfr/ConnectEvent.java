@@ -0,0 +1,21 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Part of the SQLib API
+ *
+ * A {@link mxrlin.sqlib.SQLibConnection} opening its connection to the database, including the replay of a pending
+ * write journal, recorded as the Flight Recorder event {@link JfrEvents#CONNECT}.
+ *
+ * @see JfrEvents
+ */
+public interface ConnectEvent {
+
+    /**
+     * End the event and commit it if it exceeds the threshold
+     * @param url The JDBC url, its parameters aren't recorded
+     * @param reconnect true if the connection was open before
+     * @param failed true if the connection couldn't be opened
+     */
+    void finish(String url, boolean reconnect, boolean failed);
+
+}
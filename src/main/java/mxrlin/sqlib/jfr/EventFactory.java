@@ -0,0 +1,39 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Creates started events, null if the event isn't enabled. Implemented with the Flight Recorder classes in
+ * src/main/jfr, which are compiled for Java 11 and only loaded if the JVM has Flight Recorder.
+ */
+interface EventFactory {
+
+    /**
+     * @return true if a recording enabled the statement or the acquire event
+     */
+    boolean isCommandEnabled();
+
+    /**
+     * @return A started statement event, null if it isn't enabled
+     */
+    StatementEvent beginStatement();
+
+    /**
+     * @return A started acquire event, null if it isn't enabled
+     */
+    AcquireEvent beginAcquire();
+
+    /**
+     * @return A started cache lookup event, null if it isn't enabled
+     */
+    CacheEvent beginCacheLookup();
+
+    /**
+     * @return A started flush event, null if it isn't enabled
+     */
+    FlushEvent beginFlush();
+
+    /**
+     * @return A started connect event, null if it isn't enabled
+     */
+    ConnectEvent beginConnect();
+
+}
@@ -0,0 +1,22 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Part of the SQLib API
+ *
+ * A flush of a {@link mxrlin.sqlib.batch.CounterBuffer}, which writes the buffered increments as batches, recorded as
+ * the Flight Recorder event {@link JfrEvents#FLUSH}.
+ *
+ * @see JfrEvents
+ */
+public interface FlushEvent {
+
+    /**
+     * End the event and commit it if it exceeds the threshold
+     * @param commandClass The class of the flushed commands
+     * @param table The table of all flushed commands, null if they belong to several tables
+     * @param rows Written statements
+     * @param failed true if a batch threw an exception
+     */
+    void finish(Class<?> commandClass, String table, long rows, boolean failed);
+
+}
@@ -0,0 +1,121 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Part of the SQLib API
+ *
+ * Emits Java Flight Recorder events for statements, admission waits, cache lookups, batch flushes and connects, so
+ * database latency shows up next to GC pauses and thread stalls in the same recording.
+ *
+ * 1. Start a recording, for example with "-XX:StartFlightRecording" or "jcmd PID JFR.start".
+ * 2. Optionally change the thresholds of the events in the settings of the recording, for example
+ *    "recording.enable(JfrEvents.STATEMENT).withThreshold(Duration.ofMillis(50))".
+ * 3. Look at the events of the category "SQLib", for example in JDK Mission Control.
+ *
+ * Every event has the duration of the operation and carries the command class, the table and the amount of rows.
+ * Events below their threshold are only timed, their fields aren't set. Statement and acquire events of a connection
+ * are only created while one of them is enabled.
+ *
+ * Default thresholds:      {@link #STATEMENT} 10 ms, {@link #ACQUIRE} 1 ms, {@link #FLUSH} and {@link #CONNECT} 0 ms,
+ *                          {@link #CACHE} is disabled
+ *
+ * The events need a JVM with Flight Recorder (Java 11 and newer, the event classes are compiled for Java 11 from
+ * src/main/jfr). On other JVMs they aren't loaded and no events are created.
+ *
+ * @see StatementEvent
+ * @see AcquireEvent
+ * @see CacheEvent
+ * @see FlushEvent
+ * @see ConnectEvent
+ */
+public final class JfrEvents {
+
+    /**
+     * Name of the {@link StatementEvent}
+     */
+    public static final String STATEMENT = "mxrlin.sqlib.Statement";
+
+    /**
+     * Name of the {@link AcquireEvent}
+     */
+    public static final String ACQUIRE = "mxrlin.sqlib.Acquire";
+
+    /**
+     * Name of the {@link CacheEvent}
+     */
+    public static final String CACHE = "mxrlin.sqlib.CacheLookup";
+
+    /**
+     * Name of the {@link FlushEvent}
+     */
+    public static final String FLUSH = "mxrlin.sqlib.Flush";
+
+    /**
+     * Name of the {@link ConnectEvent}
+     */
+    public static final String CONNECT = "mxrlin.sqlib.Connect";
+
+    // null on JVMs without Flight Recorder, the event classes are never loaded then
+    private static final EventFactory FACTORY = loadFactory();
+
+    private JfrEvents() {
+    }
+
+    private static EventFactory loadFactory() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JfrEvents.class.getClassLoader());
+            return (EventFactory) Class.forName("mxrlin.sqlib.jfr.FlightRecorderEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the JVM supports Flight Recorder events
+     */
+    public static boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    /**
+     * @return true if a recording enabled the statement or the acquire event
+     */
+    public static boolean isCommandEnabled() {
+        return FACTORY != null && FACTORY.isCommandEnabled();
+    }
+
+    /**
+     * @return A started statement event, null if it isn't enabled
+     */
+    public static StatementEvent beginStatement() {
+        return FACTORY == null ? null : FACTORY.beginStatement();
+    }
+
+    /**
+     * @return A started acquire event, null if it isn't enabled
+     */
+    public static AcquireEvent beginAcquire() {
+        return FACTORY == null ? null : FACTORY.beginAcquire();
+    }
+
+    /**
+     * @return A started cache lookup event, null if it isn't enabled
+     */
+    public static CacheEvent beginCacheLookup() {
+        return FACTORY == null ? null : FACTORY.beginCacheLookup();
+    }
+
+    /**
+     * @return A started flush event, null if it isn't enabled
+     */
+    public static FlushEvent beginFlush() {
+        return FACTORY == null ? null : FACTORY.beginFlush();
+    }
+
+    /**
+     * @return A started connect event, null if it isn't enabled
+     */
+    public static ConnectEvent beginConnect() {
+        return FACTORY == null ? null : FACTORY.beginConnect();
+    }
+
+}
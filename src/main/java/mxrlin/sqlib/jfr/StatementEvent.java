@@ -0,0 +1,23 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * Part of the SQLib API
+ *
+ * An executed statement, recorded as the Flight Recorder event {@link JfrEvents#STATEMENT}. Updates and batches end
+ * when the server answered, queries when their ResultSet was closed, so the duration of a query includes reading the result.
+ *
+ * @see JfrEvents
+ */
+public interface StatementEvent {
+
+    /**
+     * End the event and commit it if it exceeds the threshold
+     * @param commandClass The class of the executed command
+     * @param table The table of the command, may be null
+     * @param command The command of the statement
+     * @param rows Affected or fetched columns, -1 if unknown
+     * @param failed true if the statement threw an exception
+     */
+    void finish(Class<?> commandClass, String table, String command, long rows, boolean failed);
+
+}
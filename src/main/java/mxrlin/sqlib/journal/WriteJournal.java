@@ -0,0 +1,433 @@
+package mxrlin.sqlib.journal;
+
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Part of the SQLib API
+ *
+ * An append-only journal in a memory-mapped local file that keeps updates while the database is unreachable.
+ * Every record is the command and the arguments of a {@link MySQLStatement}. Records are replayed in the order they
+ * were appended as soon as the connection is back, and the journal is compacted when all records are acknowledged.
+ *
+ * Every journal has a random id. A replayed record is marked with the id and its sequence in the table
+ * {@link #REPLAY_TABLE} in the same transaction, so a record that was executed but not acknowledged before a crash
+ * isn't executed twice.
+ *
+ * Appending only copies the record into the mapped file. A background thread forces the file to disk every
+ * sync interval, so many appends share one fsync (group commit). {@link #awaitDurable(long)} waits for that fsync.
+ *
+ * File layout:     [magic int][version int][acknowledged offset long][end offset long][id 16 bytes]
+ *                  [length int][crc32 int][sequence long, command, arguments] ...
+ *
+ * @see mxrlin.sqlib.SQLibConnection#setWriteJournal(WriteJournal, boolean)
+ */
+public class WriteJournal implements AutoCloseable {
+
+    /**
+     * Default size of the journal file
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024 * 1024;
+
+    /**
+     * Table with the replayed records of every journal, created when a journal is replayed the first time
+     */
+    public static final String REPLAY_TABLE = "sqlib_journal";
+
+    private static final int MAGIC = 0x53514A4C; // SQJL
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 40;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // the journal file
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // time between two group commits
+    private final long syncIntervalMillis;
+
+    // tells the records of this journal apart in the replay table
+    private final UUID id;
+
+    // offset of the first record that isn't acknowledged yet
+    private int acknowledgedOffset;
+
+    // offset after the last record
+    private int endOffset;
+
+    // sequence of the last appended and of the last durable record
+    private long appendedSequence;
+    private volatile long durableSequence;
+
+    private final Object syncLock = new Object();
+
+    // only one replay at a time, records are executed without holding the monitor of the journal
+    private final Object replayLock = new Object();
+    private final Thread syncThread;
+    private volatile boolean closed;
+
+    /**
+     * Open or create the journal file {@param path} with {@link #DEFAULT_CAPACITY} and a sync interval of 10 milliseconds
+     * @param path The journal file
+     * @throws SQLibException Thrown when the file couldn't be opened or isn't a journal
+     */
+    public WriteJournal(Path path) throws SQLibException {
+        this(path, DEFAULT_CAPACITY, 10);
+    }
+
+    /**
+     * Open or create the journal file {@param path}. Records of an existing journal are kept for replaying.
+     * @param path The journal file
+     * @param capacity Size of the file in bytes, an existing journal keeps its size
+     * @param syncIntervalMillis Time between two group commits
+     * @throws SQLibException Thrown when the file couldn't be opened or isn't a journal
+     */
+    public WriteJournal(Path path, int capacity, long syncIntervalMillis) throws SQLibException {
+        this.path = path;
+        this.syncIntervalMillis = syncIntervalMillis;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean existing = channel.size() >= HEADER_SIZE;
+            int size = existing ? (int) Math.min(Integer.MAX_VALUE, channel.size()) : capacity;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new SQLibException("Failed to open the journal " + path, e);
+        }
+
+        if(buffer.getInt(0) == MAGIC){
+            if(buffer.getInt(4) != VERSION) throw new SQLibException("Unsupported journal version " + buffer.getInt(4) + " in " + path);
+            acknowledgedOffset = (int) buffer.getLong(8);
+            id = new UUID(buffer.getLong(24), buffer.getLong(32));
+            endOffset = recoverEndOffset(acknowledgedOffset);
+        }else{
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            id = UUID.randomUUID();
+            buffer.putLong(24, id.getMostSignificantBits());
+            buffer.putLong(32, id.getLeastSignificantBits());
+            acknowledgedOffset = HEADER_SIZE;
+            endOffset = HEADER_SIZE;
+            writeHeader();
+        }
+
+        syncThread = new Thread(this::syncLoop, "SQLib-Journal-Sync");
+        syncThread.setDaemon(true);
+        syncThread.start();
+    }
+
+    /**
+     * Append {@param statement} to the journal. Returns as soon as the record is in the mapped file.
+     * @param statement The statement of an update
+     * @return The sequence of the record, used for {@link #awaitDurable(long)}
+     * @throws SQLibException Thrown when an argument can't be journaled or the journal is full
+     */
+    public long append(MySQLStatement statement) throws SQLibException {
+        byte[] payload;
+        long sequence;
+        synchronized (this) {
+            payload = encode(appendedSequence + 1, statement);
+            if(closed) throw new SQLibException("Journal " + path + " is closed");
+            if(endOffset + RECORD_HEADER_SIZE + payload.length + 4 > buffer.capacity()) compact();
+            if(endOffset + RECORD_HEADER_SIZE + payload.length + 4 > buffer.capacity())
+                throw new SQLibException("Journal " + path + " is full");
+
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+
+            buffer.putInt(endOffset + RECORD_HEADER_SIZE + payload.length, 0);
+            buffer.putInt(endOffset + 4, (int) crc.getValue());
+            ByteBuffer target = buffer.duplicate();
+            target.position(endOffset + RECORD_HEADER_SIZE);
+            target.put(payload);
+            // the length is written last, so a torn record is never read as valid
+            buffer.putInt(endOffset, payload.length);
+
+            endOffset += RECORD_HEADER_SIZE + payload.length;
+            sequence = ++appendedSequence;
+            writeHeader();
+        }
+        return sequence;
+    }
+
+    /**
+     * Wait until the record {@param sequence} was forced to disk by a group commit
+     * @param sequence The sequence returned by {@link #append(MySQLStatement)}
+     * @throws SQLibException Thrown when the thread was interrupted or the journal was closed
+     */
+    public void awaitDurable(long sequence) throws SQLibException {
+        synchronized (syncLock) {
+            while (durableSequence < sequence){
+                if(closed) throw new SQLibException("Journal " + path + " was closed before the record was durable");
+                try {
+                    syncLock.wait(syncIntervalMillis * 2 + 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLibException("Interrupted while waiting for the journal", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if records are waiting to be replayed
+     */
+    public synchronized boolean hasPending() {
+        return acknowledgedOffset < endOffset;
+    }
+
+    /**
+     * @return The amount of records that are waiting to be replayed
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (int offset = acknowledgedOffset; offset < endOffset; offset += RECORD_HEADER_SIZE + buffer.getInt(offset)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Execute all pending records in order. Every executed record is acknowledged at once, so a failing record
+     * stops the replay and is replayed first the next time. The journal is compacted and forced to disk afterwards.
+     * Records are appended meanwhile, only the execution of a record holds other replays back.
+     * @param executor Executes a journaled statement
+     * @return The amount of replayed records
+     * @throws SQLibException Thrown when a record couldn't be executed
+     */
+    public int replay(Executor executor) throws SQLibException {
+        synchronized (replayLock) {
+            int replayed = 0;
+            try {
+                while (true){
+                    long sequence;
+                    MySQLStatement statement;
+                    synchronized (this) {
+                        if(acknowledgedOffset >= endOffset) break;
+                        int length = buffer.getInt(acknowledgedOffset);
+                        sequence = buffer.getLong(acknowledgedOffset + RECORD_HEADER_SIZE);
+                        statement = decode(acknowledgedOffset + RECORD_HEADER_SIZE, length);
+                    }
+                    executor.execute(sequence, statement);
+                    synchronized (this) {
+                        // a compaction meanwhile moved the record to the acknowledged offset
+                        acknowledgedOffset += RECORD_HEADER_SIZE + buffer.getInt(acknowledgedOffset);
+                        writeHeader();
+                    }
+                    replayed++;
+                }
+            } finally {
+                synchronized (this) {
+                    compact();
+                    buffer.force();
+                }
+            }
+            return replayed;
+        }
+    }
+
+    /**
+     * Move the records that aren't acknowledged to the start of the journal, which frees the space of acknowledged records.
+     * The header points at the records until they are copied and forced to disk, so a crash during compaction loses
+     * nothing. Records are only moved if the acknowledged records before them have room for them, the journal isn't
+     * compacted while more than half of it is pending.
+     */
+    public synchronized void compact() {
+        if(acknowledgedOffset == HEADER_SIZE) return;
+
+        int pending = endOffset - acknowledgedOffset;
+        // the copy and the end marker after it must not overwrite a record the header still points at
+        if(HEADER_SIZE + pending + 4 > acknowledgedOffset) return;
+
+        ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_SIZE);
+        target.put(read(acknowledgedOffset, pending));
+        buffer.putInt(HEADER_SIZE + pending, 0);
+        buffer.force();
+
+        acknowledgedOffset = HEADER_SIZE;
+        endOffset = HEADER_SIZE + pending;
+        writeHeader();
+        buffer.force();
+    }
+
+    /**
+     * Stop the group commit thread and force the journal to disk
+     * @throws SQLibException Thrown when the file couldn't be closed
+     */
+    @Override
+    public void close() throws SQLibException {
+        closed = true;
+        syncThread.interrupt();
+        synchronized (this) {
+            buffer.force();
+        }
+        synchronized (syncLock) {
+            durableSequence = appendedSequence;
+            syncLock.notifyAll();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to close the journal " + path, e);
+        }
+    }
+
+    /**
+     * @return The journal file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return The id of the journal, its records are marked with it in {@link #REPLAY_TABLE}
+     */
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Check if {@param e} was thrown because the database is unreachable, the updates that can be journaled.
+     * @param e The exception thrown while executing an update
+     * @return true if the connection to the database failed
+     */
+    public static boolean isConnectionFailure(Throwable e) {
+        while (e != null){
+            if(e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException
+                    || e instanceof SQLRecoverableException) return true;
+            if(e instanceof SQLException && ((SQLException) e).getSQLState() != null
+                    && ((SQLException) e).getSQLState().startsWith("08")) return true;
+            e = e.getCause();
+        }
+        return false;
+    }
+
+    // forces everything appended during the last interval with a single fsync
+    private void syncLoop() {
+        while (!closed){
+            try {
+                Thread.sleep(Math.max(1, syncIntervalMillis));
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long target;
+            synchronized (this) {
+                target = appendedSequence;
+            }
+            if(target == durableSequence) continue;
+
+            buffer.force();
+            synchronized (syncLock) {
+                durableSequence = target;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    private int recoverEndOffset(int offset) {
+        while (offset + RECORD_HEADER_SIZE <= buffer.capacity()){
+            int length = buffer.getInt(offset);
+            if(length <= 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) break;
+
+            byte[] payload = read(offset + RECORD_HEADER_SIZE, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, length);
+            if((int) crc.getValue() != buffer.getInt(offset + 4)) break;
+
+            try {
+                appendedSequence = new DataInputStream(new ByteArrayInputStream(payload)).readLong();
+            } catch (IOException e) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        durableSequence = appendedSequence;
+        return offset;
+    }
+
+    private byte[] read(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return bytes;
+    }
+
+    private void writeHeader() {
+        buffer.putLong(8, acknowledgedOffset);
+        buffer.putLong(16, endOffset);
+    }
+
+    private static byte[] encode(long sequence, MySQLStatement statement) throws SQLibException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(sequence);
+            ValueIO.write(out, statement.getCommand());
+            List<Object> arguments = statement.getReplaceArguments();
+            ValueIO.writeVarInt(out, arguments.size());
+            for (Object argument : arguments) {
+                ValueIO.write(out, argument);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to journal the command \"" + statement.getCommand() + "\"", e);
+        }
+    }
+
+    private MySQLStatement decode(int offset, int length) throws SQLibException {
+        byte[] payload = read(offset, length);
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            in.readLong();
+            String command = (String) ValueIO.read(in);
+            int count = ValueIO.readLength(in, 1);
+            List<Object> arguments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                arguments.add(ValueIO.read(in));
+            }
+            return new MySQLStatement(command, arguments);
+        } catch (IOException e) {
+            throw new SQLibException("Corrupted record in journal " + path, e);
+        }
+    }
+
+    /**
+     * Executes a journaled statement while replaying
+     */
+    @FunctionalInterface
+    public interface Executor {
+
+        /**
+         * @param sequence The sequence of the record, unique within the journal
+         * @param statement The journaled statement
+         * @throws SQLibException Thrown when the statement couldn't be executed
+         */
+        void execute(long sequence, MySQLStatement statement) throws SQLibException;
+
+    }
+
+}
@@ -0,0 +1,216 @@
+package mxrlin.sqlib.misc;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * A fully read, immutable result of a {@link mxrlin.sqlib.command.get.QueryCommand}. It doesn't hold a database connection,
+ * so it can be shared between threads and turned into any number of independent {@link ResultSet}s.
+ *
+ * @see #of(ResultSet)
+ * @see #toResultSet()
+ */
+public class CachedResult {
+
+    // looked up once, RowSetProvider.newFactory() runs a service lookup on every call
+    private static volatile RowSetFactory rowSetFactory;
+
+    // the labels of the selected rows
+    private List<String> rowNames;
+
+    // the java.sql.Types of the selected rows
+    private int[] sqlTypes;
+
+    // the values of every column, in the order of rowNames
+    private List<Object[]> columns;
+
+    /**
+     * Create a result out of already read values
+     * @param rowNames The labels of the selected rows
+     * @param sqlTypes The {@link Types} of the selected rows
+     * @param columns The values of every column, in the order of {@param rowNames}
+     */
+    public CachedResult(List<String> rowNames, int[] sqlTypes, List<Object[]> columns) {
+        this.rowNames = rowNames;
+        this.sqlTypes = sqlTypes;
+        this.columns = columns;
+    }
+
+    /**
+     * Create a result with a single column, for example the entry of a {@link mxrlin.sqlib.command.get.GetEntryCommand}
+     * @param rowData The rows of the column and their values
+     * @return The result
+     */
+    public static CachedResult ofColumn(List<RowData> rowData) {
+        List<String> rowNames = new ArrayList<>();
+        int[] sqlTypes = new int[rowData.size()];
+        Object[] column = new Object[rowData.size()];
+        for (int i = 0; i < rowData.size(); i++) {
+            rowNames.add(rowData.get(i).getRowName());
+            sqlTypes[i] = sqlTypeOf(rowData.get(i).getValue());
+            column[i] = rowData.get(i).getValue();
+        }
+        List<Object[]> columns = new ArrayList<>();
+        columns.add(column);
+        return new CachedResult(rowNames, sqlTypes, columns);
+    }
+
+    /**
+     * Read all remaining columns of {@param set}. The set isn't closed.
+     * @param set The ResultSet that is read
+     * @return The result
+     * @throws SQLException Thrown when the set couldn't be read
+     */
+    public static CachedResult of(ResultSet set) throws SQLException {
+        ResultSetMetaData metaData = set.getMetaData();
+        int count = metaData.getColumnCount();
+
+        List<String> rowNames = new ArrayList<>(count);
+        int[] sqlTypes = new int[count];
+        for (int i = 1; i <= count; i++) {
+            rowNames.add(metaData.getColumnLabel(i));
+            sqlTypes[i - 1] = normalizeType(metaData.getColumnType(i));
+        }
+
+        List<Object[]> columns = new ArrayList<>();
+        while (set.next()){
+            Object[] column = new Object[count];
+            for (int i = 1; i <= count; i++) {
+                column[i - 1] = readValue(set, i, sqlTypes[i - 1]);
+            }
+            columns.add(column);
+        }
+
+        return new CachedResult(rowNames, sqlTypes, columns);
+    }
+
+    /**
+     * Create a new, independent {@link ResultSet} positioned before the first column
+     * @return The ResultSet
+     * @throws SQLException Thrown when the ResultSet couldn't be created
+     */
+    public ResultSet toResultSet() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(rowNames.size());
+        for (int i = 1; i <= rowNames.size(); i++) {
+            metaData.setColumnLabel(i, rowNames.get(i - 1));
+            metaData.setColumnName(i, rowNames.get(i - 1));
+            metaData.setColumnType(i, sqlTypes[i - 1]);
+            metaData.setNullable(i, ResultSetMetaData.columnNullableUnknown);
+        }
+
+        CachedRowSet set = rowSetFactory().createCachedRowSet();
+        set.setMetaData(metaData);
+
+        // inserted columns are placed before the current one, so insert them in reverse order
+        for (int c = columns.size() - 1; c >= 0; c--) {
+            Object[] column = columns.get(c);
+            set.moveToInsertRow();
+            for (int i = 0; i < column.length; i++) {
+                if(column[i] == null) set.updateNull(i + 1);
+                else set.updateObject(i + 1, column[i]);
+            }
+            set.insertRow();
+            set.moveToCurrentRow();
+        }
+
+        set.beforeFirst();
+        return set;
+    }
+
+    // the factory is stateless, so a lookup of two threads at the same time doesn't matter
+    private static RowSetFactory rowSetFactory() throws SQLException {
+        RowSetFactory factory = rowSetFactory;
+        if(factory == null) rowSetFactory = factory = RowSetProvider.newFactory();
+        return factory;
+    }
+
+    /**
+     * @return The labels of the selected rows
+     */
+    public List<String> getRowNames() {
+        return rowNames;
+    }
+
+    /**
+     * @return The {@link Types} of the selected rows
+     */
+    public int[] getSqlTypes() {
+        return sqlTypes;
+    }
+
+    /**
+     * @return The values of every column, in the order of {@link #getRowNames()}
+     */
+    public List<Object[]> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The amount of columns
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    /**
+     * @return The {@link Types} that fits {@param value} best
+     */
+    public static int sqlTypeOf(Object value) {
+        if(value == null) return Types.NULL;
+        if(value instanceof String) return Types.VARCHAR;
+        if(value instanceof Integer) return Types.INTEGER;
+        if(value instanceof Long) return Types.BIGINT;
+        if(value instanceof Short) return Types.SMALLINT;
+        if(value instanceof Byte) return Types.TINYINT;
+        if(value instanceof Boolean) return Types.BOOLEAN;
+        if(value instanceof Double) return Types.DOUBLE;
+        if(value instanceof Float) return Types.REAL;
+        if(value instanceof BigDecimal) return Types.DECIMAL;
+        if(value instanceof byte[]) return Types.VARBINARY;
+        if(value instanceof java.sql.Date) return Types.DATE;
+        if(value instanceof Time) return Types.TIME;
+        if(value instanceof Timestamp) return Types.TIMESTAMP;
+        if(value instanceof URL) return Types.DATALINK;
+        return Types.JAVA_OBJECT;
+    }
+
+    // LOBs are read into memory, so they are kept as binary / character data
+    private static int normalizeType(int sqlType) {
+        switch (sqlType) {
+            case Types.BLOB: return Types.LONGVARBINARY;
+            case Types.CLOB: return Types.LONGVARCHAR;
+            case Types.NCLOB: return Types.LONGNVARCHAR;
+            default: return sqlType;
+        }
+    }
+
+    private static Object readValue(ResultSet set, int index, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.DATE: return set.getDate(index);
+            case Types.TIME: return set.getTime(index);
+            case Types.TIMESTAMP: return set.getTimestamp(index);
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY: return set.getBytes(index);
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR: return set.getString(index);
+            default: return set.getObject(index);
+        }
+    }
+
+}
@@ -15,4 +15,17 @@ public enum DataType {
 
     TINYBLOB, BLOB, MEDIUMBLOB, LONGBLOB, TINYTEXT, TEXT, MEDIUMTEXT, LONGTEXT; // https://dev.mysql.com/doc/refman/8.0/en/blob.html
 
+    /**
+     * @return The BLOB type of the same size for TEXT types, used for rows with binary (compressed) values
+     */
+    public DataType toBinary() {
+        switch (this){
+            case TINYTEXT: return TINYBLOB;
+            case TEXT: return BLOB;
+            case MEDIUMTEXT: return MEDIUMBLOB;
+            case LONGTEXT: return LONGBLOB;
+            default: return this;
+        }
+    }
+
 }
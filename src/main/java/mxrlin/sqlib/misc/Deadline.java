@@ -0,0 +1,179 @@
+package mxrlin.sqlib.misc;
+
+import mxrlin.sqlib.exception.SQLibException;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Part of the SQLib API
+ *
+ * The point in time a command has to be finished at, and a handle to cancel it from another thread.
+ * The remaining time is passed to the statement with {@link Statement#setQueryTimeout(int)} and to SELECTs with a
+ * "MAX_EXECUTION_TIME" hint, so the database stops working on the command as well. The hint is rounded up to a few
+ * coarse steps so the text of the statement stays the same and prepared statements can be reused; the exact deadline
+ * is enforced by the query timeout and {@link #cancel()}.
+ *
+ * 1. Create a new instance with {@link #after(long, TimeUnit)} or {@link #none()}.
+ * 2. Execute a command with {@link mxrlin.sqlib.SQLibConnection#executeQuery(mxrlin.sqlib.command.get.QueryCommand, Deadline)}
+ *    or {@link mxrlin.sqlib.SQLibConnection#executeUpdateCount(mxrlin.sqlib.command.set.UpdatingCommand, Deadline)}.
+ * 3. Optionally call {@link #cancel()} from another thread to stop the running statement.
+ *
+ * A deadline can be used for many commands one after another (for example all commands of a request), but not for
+ * commands that run at the same time.
+ *
+ * @see mxrlin.sqlib.SQLibConnection#setDefaultTimeout(long, TimeUnit)
+ */
+public final class Deadline {
+
+    // the values of the MAX_EXECUTION_TIME hint, longer remaining times are rounded up to multiples of the last one
+    private static final long[] HINT_STEPS_MILLIS = {100, 250, 500, 1000, 2000, 5000, 10_000, 30_000, 60_000, 120_000, 300_000};
+
+    // System.nanoTime() the deadline expires at, Long.MAX_VALUE = never
+    private final long expiresAtNanos;
+    private final boolean unlimited;
+
+    private volatile boolean cancelled;
+
+    // the statement that is currently executed, null if none
+    private Statement running;
+
+    private Deadline(long expiresAtNanos, boolean unlimited) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.unlimited = unlimited;
+    }
+
+    /**
+     * @param timeout Time until the deadline expires
+     * @param unit The unit of {@param timeout}
+     * @return A deadline that expires after {@param timeout}
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        if(timeout < 0) throw new IllegalArgumentException("Timeout can't be negative");
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout), false);
+    }
+
+    /**
+     * @return A deadline that never expires, but can still be cancelled
+     */
+    public static Deadline none() {
+        return new Deadline(Long.MAX_VALUE, true);
+    }
+
+    /**
+     * @return true if this deadline never expires
+     */
+    public boolean isUnlimited() {
+        return unlimited;
+    }
+
+    /**
+     * @return The remaining time in milliseconds, 0 if expired, Long.MAX_VALUE if unlimited
+     */
+    public long getRemainingMillis() {
+        if(unlimited) return Long.MAX_VALUE;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    /**
+     * @return true if the deadline is over
+     */
+    public boolean isExpired() {
+        return !unlimited && expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Stop the running statement and let all following commands with this deadline fail. Can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        Statement statement;
+        synchronized (this) {
+            statement = running;
+        }
+        cancelQuietly(statement);
+    }
+
+    /**
+     * @return true if {@link #cancel()} was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @param command The command that should be executed
+     * @throws SQLibException Thrown when the deadline is expired or cancelled
+     */
+    public void check(String command) throws SQLibException {
+        if(cancelled) throw new SQLibException("The command \"" + command + "\" was cancelled");
+        if(isExpired()) throw new SQLibException("The deadline of the command \"" + command + "\" expired");
+    }
+
+    /**
+     * Pass the remaining time to {@param statement} and cancel it when {@link #cancel()} is called during its execution
+     * @param statement The statement that is about to be executed
+     * @throws SQLException Thrown when the timeout couldn't be set
+     */
+    public void attach(Statement statement) throws SQLException {
+        if(!unlimited){
+            // setQueryTimeout has a precision of seconds, 0 would mean no timeout
+            long seconds = (getRemainingMillis() + 999) / 1000;
+            statement.setQueryTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, seconds)));
+        }
+        synchronized (this) {
+            running = statement;
+        }
+        if(cancelled) cancelQuietly(statement);
+    }
+
+    /**
+     * Called after the statement finished
+     */
+    public synchronized void detach() {
+        running = null;
+    }
+
+    /**
+     * Add a "MAX_EXECUTION_TIME" optimizer hint with the remaining time, rounded up to a coarse step, to SELECT commands.
+     * Other commands are unchanged.
+     * @param statement The statement that is about to be executed
+     * @return The statement with the hint
+     */
+    public MySQLStatement applyHint(MySQLStatement statement) {
+        String command = statement.getCommand();
+        if(unlimited || !command.regionMatches(true, 0, "SELECT ", 0, 7)) return statement;
+        long millis = hintMillis(getRemainingMillis());
+        return new MySQLStatement("SELECT /*+ MAX_EXECUTION_TIME(" + millis + ") */ " + command.substring(7), statement.getReplaceArguments());
+    }
+
+    // the smallest step that isn't shorter than the remaining time
+    private static long hintMillis(long remainingMillis) {
+        for (long step : HINT_STEPS_MILLIS) {
+            if(remainingMillis <= step) return step;
+        }
+        long largest = HINT_STEPS_MILLIS[HINT_STEPS_MILLIS.length - 1];
+        return (remainingMillis + largest - 1) / largest * largest;
+    }
+
+    /**
+     * Describe why a statement failed if it was because of this deadline
+     * @param command The command that failed
+     * @param e The exception of the statement
+     * @return An exception that names the expired or cancelled deadline, null if the deadline isn't the reason
+     */
+    public SQLibException explainFailure(String command, SQLException e) {
+        if(cancelled) return new SQLibException("The command \"" + command + "\" was cancelled", e);
+        if(isExpired()) return new SQLibException("The deadline of the command \"" + command + "\" expired", e);
+        return null;
+    }
+
+    private static void cancelQuietly(Statement statement) {
+        if(statement == null) return;
+        try {
+            statement.cancel();
+        } catch (SQLException ignored) {}
+    }
+
+}
@@ -0,0 +1,76 @@
+package mxrlin.sqlib.misc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Part of the SQLib API
+ *
+ * The result of an insert: the amount of affected columns and the keys the database generated for the
+ * AUTO_INCREMENT row, in the order the columns were inserted.
+ *
+ * @see mxrlin.sqlib.IConnection#executeInsert(mxrlin.sqlib.command.set.UpdatingCommand)
+ */
+public class InsertResult {
+
+    // amount of inserted columns, or Statement.SUCCESS_NO_INFO if it's unknown
+    private final int affectedColumns;
+
+    // generated AUTO_INCREMENT keys in insertion order
+    private final List<Long> generatedKeys;
+
+    /**
+     * @param affectedColumns The amount of inserted columns
+     * @param generatedKeys The generated keys in insertion order
+     */
+    public InsertResult(int affectedColumns, List<Long> generatedKeys) {
+        this.affectedColumns = affectedColumns;
+        this.generatedKeys = Collections.unmodifiableList(generatedKeys);
+    }
+
+    /**
+     * Read the keys of {@link java.sql.Statement#getGeneratedKeys()}
+     * @param affectedColumns The amount of inserted columns
+     * @param keys The generated keys, one column per inserted column
+     * @return Returns the result of the insert
+     * @throws SQLException Thrown when the keys couldn't be read
+     */
+    public static InsertResult of(int affectedColumns, ResultSet keys) throws SQLException {
+        List<Long> generatedKeys = new ArrayList<>();
+        while (keys.next()){
+            generatedKeys.add(keys.getLong(1));
+        }
+        return new InsertResult(affectedColumns, generatedKeys);
+    }
+
+    /**
+     * @return The amount of inserted columns, {@link java.sql.Statement#SUCCESS_NO_INFO} if it's unknown
+     */
+    public int getAffectedColumns() {
+        return affectedColumns;
+    }
+
+    /**
+     * @return The generated keys in the order the columns were inserted, empty if the table has no AUTO_INCREMENT row
+     *         or the insert was journaled
+     */
+    public List<Long> getGeneratedKeys() {
+        return generatedKeys;
+    }
+
+    /**
+     * @return The generated key of the first inserted column, null if no key was generated
+     */
+    public Long getGeneratedKey() {
+        return generatedKeys.isEmpty() ? null : generatedKeys.get(0);
+    }
+
+    @Override
+    public String toString() {
+        return "InsertResult{affectedColumns=" + affectedColumns + ", generatedKeys=" + generatedKeys + "}";
+    }
+
+}
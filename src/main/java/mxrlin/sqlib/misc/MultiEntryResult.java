@@ -0,0 +1,98 @@
+package mxrlin.sqlib.misc;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Part of the SQLib API
+ *
+ * The result of {@link mxrlin.sqlib.IConnection#getEntries(String, String, String, Collection)}.
+ * Contains the fetched entry of every found key and explicitly lists the keys that weren't found.
+ *
+ * @param <K> The type of the keys
+ */
+public class MultiEntryResult<K> {
+
+    // the fetched entries in the order the database returned them
+    private Map<K, Object> entries;
+
+    // the requested keys that weren't found yet
+    private Set<K> missingKeys;
+
+    // normalized key -> requested key, so a Long from the database finds the requested Integer
+    private Map<Object, K> lookup;
+
+    /**
+     * Create an empty result where all {@param keys} are missing
+     * @param keys The requested keys
+     */
+    public MultiEntryResult(Collection<K> keys) {
+        this.entries = new LinkedHashMap<>();
+        this.missingKeys = new LinkedHashSet<>(keys);
+        this.lookup = new HashMap<>();
+        for (K key : missingKeys) {
+            lookup.put(normalize(key), key);
+        }
+    }
+
+    /**
+     * Add a fetched entry
+     * @param key The key as it was returned by the database
+     * @param value The entry
+     */
+    public void put(Object key, Object value) {
+        K requested = lookup.get(normalize(key));
+        if(requested == null) return;
+        entries.put(requested, value);
+        missingKeys.remove(requested);
+    }
+
+    /**
+     * @return The fetched entries of all found keys in the order the database returned them
+     *         (entries may be null if the value in the database is NULL)
+     */
+    public Map<K, Object> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param key A requested key
+     * @return The fetched entry, null if it is NULL or the key wasn't found
+     */
+    public Object get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @return The requested keys that weren't found in the table
+     */
+    public Set<K> getMissingKeys() {
+        return missingKeys;
+    }
+
+    /**
+     * @return true if all requested keys were found
+     */
+    public boolean isComplete() {
+        return missingKeys.isEmpty();
+    }
+
+    /**
+     * @param key A key as it was requested or returned by the database
+     * @return A key that is equal for equal numbers of different types (for example Integer 1 and Long 1) and equal byte arrays
+     */
+    public static Object normalize(Object key) {
+        if(key instanceof Number && !(key instanceof Double) && !(key instanceof Float)){
+            return new BigDecimal(key.toString()).stripTrailingZeros();
+        }
+        if(key instanceof byte[]) return ByteBuffer.wrap((byte[]) key);
+        return key;
+    }
+
+}
@@ -1,13 +1,18 @@
 package mxrlin.sqlib.misc;
 
+import mxrlin.sqlib.codec.CodecRegistry;
 import mxrlin.sqlib.exception.SQLibException;
 
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -29,11 +34,15 @@ public class MySQLStatement {
     // list with args that are later replaced with the question marks
     private List<Object> replaceArguments;
 
+    // the types of the rows the args are written to (see java.sql.Types), null if they aren't known
+    private int[] argumentTypes;
+
     /**
      * Generate a Simple MySQL Statement with just a normal String command
      */
     public MySQLStatement(String command) {
         this.command = command;
+        this.replaceArguments = new ArrayList<>();
     }
 
     /**
@@ -46,6 +55,20 @@ public class MySQLStatement {
         this.replaceArguments = replaceArguments;
     }
 
+    /**
+     * Create a copy of this statement that binds its arguments with the types of the rows they are written to.
+     * Null values are bound with the type of their row and texts of binary rows as bytes.
+     * @param argumentTypes The type of every argument, see {@link Types}
+     * @return The typed statement
+     */
+    public MySQLStatement withArgumentTypes(int[] argumentTypes) {
+        if(argumentTypes.length != replaceArguments.size())
+            throw new IllegalArgumentException("Expected " + replaceArguments.size() + " types, got " + argumentTypes.length);
+        MySQLStatement typed = new MySQLStatement(command, replaceArguments);
+        typed.argumentTypes = argumentTypes.clone();
+        return typed;
+    }
+
     /**
      * @return The String Command
      */
@@ -62,46 +85,114 @@ public class MySQLStatement {
 
     /**
      * Generate a PreparedStatement with the current MySQL {@link Connection} {@param connection}.
+     * The caller is responsible for closing the returned statement.
      * @param connection The ongoing MySQL Connection
      * @return Returns an {@link PreparedStatement}
      * @throws SQLibException Thrown when something went wrong while creating the statement.
      */
     public PreparedStatement asPreparedStatement(Connection connection) throws SQLibException {
-        try (PreparedStatement statement = connection.prepareStatement(command)){
-
-            if(getReplaceArguments() != null && getReplaceArguments().size() != 0){
-
-                for(int i = 0; i < getReplaceArguments().size(); i++){
-
-                    Object obj = getReplaceArguments().get(i);
-                    if(obj instanceof BigDecimal){
-                        statement.setBigDecimal(i+1,(BigDecimal)obj);
-                    }else if(obj instanceof Boolean){
-                        statement.setBoolean(i+1, (boolean) obj);
-                    }else if(obj instanceof Integer){
-                        statement.setInt(i+1, (int) obj);
-                    }else if(obj instanceof Byte){
-                        statement.setByte(i+1, (byte) obj);
-                    }else if(obj instanceof URL){
-                        statement.setURL(i+1, (URL) obj);
-                    }else if(obj instanceof Long){
-                        statement.setLong(i+1, (long) obj);
-                    }else if(obj instanceof Double){
-                        statement.setDouble(i+1, (double) obj);
-                    }else if(obj instanceof Short){
-                        statement.setShort(i+1, (short) obj);
-                    }else if(obj instanceof String){
-                        statement.setString(i+1, (String) obj);
-                    }else statement.setObject(i+1, obj);
-
-                }
-
-            }
+        return asPreparedStatement(connection, false);
+    }
 
+    /**
+     * Generate a PreparedStatement with the current MySQL {@link Connection} {@param connection}.
+     * The caller is responsible for closing the returned statement.
+     * @param connection The ongoing MySQL Connection
+     * @param returnGeneratedKeys true = the keys generated by an insert can be read with {@link PreparedStatement#getGeneratedKeys()}
+     * @return Returns an {@link PreparedStatement}
+     * @throws SQLibException Thrown when something went wrong while creating the statement.
+     */
+    public PreparedStatement asPreparedStatement(Connection connection, boolean returnGeneratedKeys) throws SQLibException {
+        PreparedStatement statement = null;
+        try {
+            statement = returnGeneratedKeys
+                    ? connection.prepareStatement(command, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(command);
+            bindArguments(statement);
             return statement;
         } catch (SQLException e) {
+            if(statement != null){
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {}
+            }
             throw new SQLibException("Failed to create an prepared Statement with the command \"" + command + "\"", e);
         }
     }
 
+    /**
+     * Replace the question marks of {@param statement} with the arguments of this statement.
+     * @param statement A statement that was prepared with the command of this statement
+     * @throws SQLException Thrown when an argument couldn't be set
+     */
+    public void bindArguments(PreparedStatement statement) throws SQLException {
+        if(replaceArguments == null) return;
+        CodecRegistry codecs = CodecRegistry.getDefault();
+
+        for(int i = 0; i < replaceArguments.size(); i++){
+
+            Object obj = replaceArguments.get(i);
+            if(argumentTypes != null && obj == null){
+                statement.setNull(i+1, argumentTypes[i]);
+            }else if(argumentTypes != null && obj instanceof String && isBinary(argumentTypes[i])){
+                statement.setBytes(i+1, ((String) obj).getBytes(StandardCharsets.UTF_8));
+            }else if(obj instanceof BigDecimal){
+                statement.setBigDecimal(i+1,(BigDecimal)obj);
+            }else if(obj instanceof Boolean){
+                statement.setBoolean(i+1, (boolean) obj);
+            }else if(obj instanceof Integer){
+                statement.setInt(i+1, (int) obj);
+            }else if(obj instanceof Byte){
+                statement.setByte(i+1, (byte) obj);
+            }else if(obj instanceof URL){
+                statement.setURL(i+1, (URL) obj);
+            }else if(obj instanceof Long){
+                statement.setLong(i+1, (long) obj);
+            }else if(obj instanceof Double){
+                statement.setDouble(i+1, (double) obj);
+            }else if(obj instanceof Short){
+                statement.setShort(i+1, (short) obj);
+            }else if(obj instanceof String){
+                statement.setString(i+1, (String) obj);
+            }else if(obj instanceof StreamValue){
+                ((StreamValue) obj).bind(statement, i+1);
+            }else if(obj != null && codecs.getCodec(obj.getClass()) != null){
+                statement.setBytes(i+1, encode(codecs, obj));
+            }else statement.setObject(i+1, obj);
+
+        }
+    }
+
+    private static boolean isBinary(int type) {
+        return type == Types.BINARY || type == Types.VARBINARY || type == Types.LONGVARBINARY || type == Types.BLOB;
+    }
+
+    private static byte[] encode(CodecRegistry codecs, Object value) throws SQLException {
+        try {
+            return codecs.encode(value);
+        } catch (SQLibException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Two statements are equal if they have the same command and the same arguments, so executing them returns the same result.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof MySQLStatement)) return false;
+        MySQLStatement other = (MySQLStatement) o;
+        return command.equals(other.command) && Arrays.deepEquals(argumentArray(), other.argumentArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * command.hashCode() + Arrays.deepHashCode(argumentArray());
+    }
+
+    private Object[] argumentArray() {
+        return replaceArguments == null ? new Object[0] : replaceArguments.toArray();
+    }
+
 }
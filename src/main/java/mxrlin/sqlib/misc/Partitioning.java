@@ -0,0 +1,218 @@
+package mxrlin.sqlib.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part of SQLib API
+ *
+ * Used for the {@link mxrlin.sqlib.command.set.CreateTableCommand} command, to declare how the rows of a {@link Table}
+ * are split into partitions. MySQL only reads the partitions matching the WHERE clause (partition pruning) and
+ * partitions can be dropped or truncated as a cheap metadata operation.
+ *
+ * @see <a href="https://dev.mysql.com/doc/refman/8.0/en/partitioning-types.html">Partitioning Types</a>
+ * @see mxrlin.sqlib.command.set.AddPartitionCommand
+ * @see mxrlin.sqlib.command.set.DropPartitionCommand
+ * @see mxrlin.sqlib.command.set.TruncatePartitionCommand
+ */
+public class Partitioning {
+
+    // the way the rows are assigned to partitions
+    private Type type;
+
+    // the expression or the row names the partitioning is based on
+    private String expression;
+
+    // the defined partitions (RANGE / LIST)
+    private List<Partition> partitions;
+
+    // amount of partitions (HASH / KEY)
+    private int partitionCount;
+
+    /**
+     * Create a RANGE or LIST partitioning with explicitly defined partitions
+     * @param type The partitioning type
+     * @param expression The expression or row name(s), for example "TO_DAYS(created)" or "created"
+     * @param partitions The partitions of the table
+     */
+    public Partitioning(Type type, String expression, List<Partition> partitions) {
+        this.type = type;
+        this.expression = expression;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Create a HASH or KEY partitioning with {@param partitionCount} partitions
+     * @param type The partitioning type
+     * @param expression The expression or row name(s), for example "id" (may be empty for KEY to use the primary key)
+     * @param partitionCount Amount of partitions
+     */
+    public Partitioning(Type type, String expression, int partitionCount) {
+        this.type = type;
+        this.expression = expression;
+        this.partitions = new ArrayList<>();
+        this.partitionCount = partitionCount;
+    }
+
+    /**
+     * @return The partitioning type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The expression or row name(s) the partitioning is based on
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return The defined partitions (RANGE / LIST)
+     */
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return Amount of partitions (HASH / KEY)
+     */
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Example:     "PARTITION BY RANGE (TO_DAYS(created)) (PARTITION p202601 VALUES LESS THAN (TO_DAYS('2026-02-01')), ...)"
+     *              "PARTITION BY HASH (id) PARTITIONS 8"
+     *
+     * @return The partition clause used at the end of a CREATE TABLE statement
+     */
+    public String toClause() {
+        StringBuilder builder = new StringBuilder("PARTITION BY ");
+        builder.append(type.getSql()).append(" (").append(expression == null ? "" : expression).append(")");
+
+        if(!type.isDefinedByPartitions()){
+            if(partitionCount > 0) builder.append(" PARTITIONS ").append(partitionCount);
+            return builder.toString();
+        }
+
+        builder.append(" (");
+        for (int i = 0; i < partitions.size(); i++) {
+            builder.append(partitions.get(i).toDefinition(type));
+            if(i != partitions.size() - 1) builder.append(", ");
+        }
+        builder.append(")");
+
+        return builder.toString();
+    }
+
+    /**
+     * The ways MySQL can assign rows to partitions
+     */
+    public enum Type {
+
+        /**
+         * Rows are assigned by an integer expression being less than a partition's value
+         */
+        RANGE("RANGE", true),
+
+        /**
+         * Rows are assigned by one or more rows (also dates and strings) being less than a partition's values
+         */
+        RANGE_COLUMNS("RANGE COLUMNS", true),
+
+        /**
+         * Rows are assigned by an integer expression being in a partition's list of values
+         */
+        LIST("LIST", true),
+
+        /**
+         * Rows are assigned by one or more rows being in a partition's list of values
+         */
+        LIST_COLUMNS("LIST COLUMNS", true),
+
+        /**
+         * Rows are spread over a fixed amount of partitions by a user defined integer expression
+         */
+        HASH("HASH", false),
+
+        /**
+         * Rows are spread over a fixed amount of partitions by MySQL's own hashing function
+         */
+        KEY("KEY", false);
+
+        private final String sql;
+        private final boolean definedByPartitions;
+
+        Type(String sql, boolean definedByPartitions) {
+            this.sql = sql;
+            this.definedByPartitions = definedByPartitions;
+        }
+
+        /**
+         * @return The type as it's written in a MySQL statement
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return true = the partitions are explicitly defined with values (RANGE / LIST)
+         */
+        public boolean isDefinedByPartitions() {
+            return definedByPartitions;
+        }
+
+    }
+
+    /**
+     * A single RANGE or LIST partition
+     */
+    public static class Partition {
+
+        private String name;
+        private String values;
+
+        /**
+         * Creates a partition definition
+         * @param name The name of the partition, for example "p202601"
+         * @param values The upper bound for RANGE ("100", "'2026-02-01'" or "MAXVALUE") or the value list for LIST ("1, 2, 3")
+         */
+        public Partition(String name, String values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        /**
+         * @return The name of the partition
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The upper bound (RANGE) or value list (LIST) of the partition
+         */
+        public String getValues() {
+            return values;
+        }
+
+        /**
+         * Example:     "PARTITION p0 VALUES LESS THAN (100)"
+         *              "PARTITION pEU VALUES IN (1, 2, 3)"
+         *
+         * @param type The partitioning type of the table
+         * @return The definition of this partition
+         */
+        public String toDefinition(Type type) {
+            if(type == Type.LIST || type == Type.LIST_COLUMNS)
+                return "PARTITION " + name + " VALUES IN (" + values + ")";
+            if(type == Type.RANGE && "MAXVALUE".equalsIgnoreCase(values.trim()))
+                return "PARTITION " + name + " VALUES LESS THAN MAXVALUE";
+            return "PARTITION " + name + " VALUES LESS THAN (" + values + ")";
+        }
+
+    }
+
+}
@@ -1,5 +1,11 @@
 package mxrlin.sqlib.misc;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Part of the SQLib API
  *
@@ -37,4 +43,19 @@ public class RowData {
         return value;
     }
 
+    /**
+     * Read the current column of {@param set} as a list with the data of all its rows
+     * @param set A ResultSet that is positioned at a column
+     * @return The rows of the column and their values
+     * @throws SQLException Thrown when the column couldn't be read
+     */
+    public static List<RowData> fromResultSet(ResultSet set) throws SQLException {
+        ResultSetMetaData metaData = set.getMetaData();
+        List<RowData> column = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            column.add(new RowData(metaData.getColumnLabel(i), set.getObject(i)));
+        }
+        return column;
+    }
+
 }
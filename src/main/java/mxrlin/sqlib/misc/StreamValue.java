@@ -0,0 +1,198 @@
+package mxrlin.sqlib.misc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Part of the SQLib API
+ *
+ * A BLOB / TEXT value that is sent to the database from a stream instead of a byte array or String, so large values are
+ * written with constant memory. Use it as the value of a {@link RowData}, for example in an
+ * {@link mxrlin.sqlib.command.set.InsertColumnCommand} or {@link mxrlin.sqlib.command.set.UpdateEntryCommand}.
+ *
+ * 1. Create it with {@link #of(InputStream, long)}, {@link #of(Reader, long)} or {@link #of(Path)}.
+ * 2. Use it as a value: new RowData("data", StreamValue.of(path)).
+ *
+ * Files are memory-mapped and read from the page cache. Streams and readers can only be sent once, so commands with them
+ * can't be retried or journaled; a file is read again every time the command is executed. A
+ * {@link mxrlin.sqlib.diagnostics.PlanChecker} explains statements with NULL in place of stream values, so it never
+ * reads them.
+ */
+public class StreamValue {
+
+    /**
+     * Length of values whose length isn't known in advance
+     */
+    public static final long UNKNOWN_LENGTH = -1;
+
+    // files are mapped in regions of this size, so files larger than 2 GiB can be sent as well
+    private static final int MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
+    // one of them is set
+    private final InputStream stream;
+    private final Reader reader;
+    private final Path path;
+
+    // length in bytes or characters, UNKNOWN_LENGTH = read until the end
+    private final long length;
+
+    private StreamValue(InputStream stream, Reader reader, Path path, long length) {
+        if(length < UNKNOWN_LENGTH) throw new IllegalArgumentException("Length can't be negative");
+        this.stream = stream;
+        this.reader = reader;
+        this.path = path;
+        this.length = length;
+    }
+
+    /**
+     * @param stream The bytes of a BLOB value, read until its end
+     * @return The value
+     */
+    public static StreamValue of(InputStream stream) {
+        return of(stream, UNKNOWN_LENGTH);
+    }
+
+    /**
+     * @param stream The bytes of a BLOB value
+     * @param length The amount of bytes that are read from {@param stream}
+     * @return The value
+     */
+    public static StreamValue of(InputStream stream, long length) {
+        if(stream == null) throw new NullPointerException("stream");
+        return new StreamValue(stream, null, null, length);
+    }
+
+    /**
+     * @param reader The characters of a TEXT value, read until its end
+     * @return The value
+     */
+    public static StreamValue of(Reader reader) {
+        return of(reader, UNKNOWN_LENGTH);
+    }
+
+    /**
+     * @param reader The characters of a TEXT value
+     * @param length The amount of characters that are read from {@param reader}
+     * @return The value
+     */
+    public static StreamValue of(Reader reader, long length) {
+        if(reader == null) throw new NullPointerException("reader");
+        return new StreamValue(null, reader, null, length);
+    }
+
+    /**
+     * @param path A file whose content is the BLOB value
+     * @return The value
+     */
+    public static StreamValue of(Path path) {
+        if(path == null) throw new NullPointerException("path");
+        return new StreamValue(null, null, path, UNKNOWN_LENGTH);
+    }
+
+    /**
+     * Set this value as the parameter {@param index} of {@param statement}
+     * @param statement The statement
+     * @param index The index of the parameter, starting at 1
+     * @throws SQLException Thrown when the value couldn't be set or the file couldn't be read
+     */
+    public void bind(PreparedStatement statement, int index) throws SQLException {
+        if(path != null){
+            try {
+                long size = Files.size(path);
+                statement.setBinaryStream(index, new MappedFileInputStream(path, size), size);
+            } catch (IOException e) {
+                throw new SQLException("Failed to read the file " + path, e);
+            }
+        }else if(stream != null){
+            if(length == UNKNOWN_LENGTH) statement.setBinaryStream(index, stream);
+            else statement.setBinaryStream(index, stream, length);
+        }else {
+            if(length == UNKNOWN_LENGTH) statement.setCharacterStream(index, reader);
+            else statement.setCharacterStream(index, reader, length);
+        }
+    }
+
+    /**
+     * @return true if the value is text, sent from a {@link Reader}
+     */
+    public boolean isText() {
+        return reader != null;
+    }
+
+    /**
+     * @return The length in bytes or characters, {@link #UNKNOWN_LENGTH} if it isn't known in advance
+     */
+    public long getLength() {
+        if(path != null){
+            try {
+                return Files.size(path);
+            } catch (IOException e) {
+                return UNKNOWN_LENGTH;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        if(path != null) return "StreamValue{path=" + path + "}";
+        return "StreamValue{" + (reader != null ? "text" : "binary") + ", length=" + length + "}";
+    }
+
+    // reads a file through memory-mapped regions, the file is only open while a region is mapped
+    private static final class MappedFileInputStream extends InputStream {
+
+        private final Path path;
+        private final long size;
+        private long position;
+        private MappedByteBuffer region;
+
+        MappedFileInputStream(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(!nextRegion()) return -1;
+            return region.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if(length == 0) return 0;
+            if(!nextRegion()) return -1;
+            int read = Math.min(length, region.remaining());
+            region.get(bytes, offset, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return region == null ? 0 : region.remaining();
+        }
+
+        private boolean nextRegion() throws IOException {
+            if(region != null && region.hasRemaining()) return true;
+            if(position >= size) return false;
+
+            long regionSize = Math.min(MAPPED_REGION_SIZE, size - position);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+                // the mapping stays valid after the channel is closed
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+            }
+            position += regionSize;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,252 @@
+package mxrlin.sqlib.misc;
+
+import mxrlin.sqlib.compression.ValueCompression;
+import mxrlin.sqlib.exception.SQLibException;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Part of the SQLib API
+ *
+ * A BLOB / TEXT entry that is read as a stream while its {@link ResultSet} (and with it the statement) stays open.
+ * The entry is read straight from the driver without copying it into a byte array first, and
+ * {@link #transferTo(WritableByteChannel)} writes it to a channel through a fixed-size buffer, so even large entries
+ * are served with constant memory.
+ *
+ * 1. Get an instance with {@link mxrlin.sqlib.IConnection#streamEntry(String, String, RowData)}.
+ * 2. Read it once with one of the stream getters or {@link #transferTo(WritableByteChannel)}.
+ * 3. Close it (or the returned stream), which closes the ResultSet and the statement.
+ *
+ * MySQL connections can't execute other commands while a streamed entry is open, so close it before the next command.
+ *
+ * @see mxrlin.sqlib.IConnection#readEntry(String, String, RowData, EntryReader)
+ * @see mxrlin.sqlib.IConnection#transferEntry(String, String, RowData, WritableByteChannel)
+ */
+public class StreamedEntry implements AutoCloseable {
+
+    /**
+     * Size of the buffer {@link #transferTo(WritableByteChannel)} copies with
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    // every thread reuses its buffer for all transfers
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    // positioned at the column of the entry
+    private final ResultSet set;
+
+    // the row the entry is saved in
+    private final String rowName;
+
+    // decompresses the entry while it's read, null if the row isn't compressed
+    private final ValueCompression compression;
+
+    private boolean closed;
+
+    /**
+     * @param set A ResultSet positioned at the column of the entry, closed together with this entry
+     * @param rowName The row the entry is saved in
+     */
+    public StreamedEntry(ResultSet set, String rowName) {
+        this(set, rowName, null);
+    }
+
+    /**
+     * @param set A ResultSet positioned at the column of the entry, closed together with this entry
+     * @param rowName The row the entry is saved in
+     * @param compression Decompresses the entry while it's read, null if the row isn't compressed
+     */
+    public StreamedEntry(ResultSet set, String rowName, ValueCompression compression) {
+        this.set = set;
+        this.rowName = rowName;
+        this.compression = compression;
+    }
+
+    /**
+     * @return The entry as a binary stream, null if the entry is NULL. Closing the stream closes this entry.
+     * @throws SQLibException Thrown when the stream couldn't be opened
+     */
+    public InputStream getBinaryStream() throws SQLibException {
+        try {
+            return closing(decompressed(set.getBinaryStream(rowName)));
+        } catch (SQLException | IOException e) {
+            throw new SQLibException("Couldn't fetch the result set as Binary Stream.", e);
+        }
+    }
+
+    /**
+     * @return The entry as an ascii stream, null if the entry is NULL. Closing the stream closes this entry.
+     * @throws SQLibException Thrown when the stream couldn't be opened
+     */
+    public InputStream getAsciiStream() throws SQLibException {
+        try {
+            if(compression != null) return closing(decompressed(set.getBinaryStream(rowName)));
+            return closing(set.getAsciiStream(rowName));
+        } catch (SQLException | IOException e) {
+            throw new SQLibException("Couldn't fetch the result set as Ascii Stream.", e);
+        }
+    }
+
+    /**
+     * @return The entry as a character stream, null if the entry is NULL. Closing the stream closes this entry.
+     * @throws SQLibException Thrown when the stream couldn't be opened
+     */
+    public Reader getCharacterStream() throws SQLibException {
+        try {
+            if(compression != null) return closing(decompressedReader(set.getBinaryStream(rowName)));
+            return closing(set.getCharacterStream(rowName));
+        } catch (SQLException | IOException e) {
+            throw new SQLibException("Couldn't fetch the result set as Character Stream.", e);
+        }
+    }
+
+    /**
+     * @return The entry as a national character stream, null if the entry is NULL. Closing the stream closes this entry.
+     * @throws SQLibException Thrown when the stream couldn't be opened
+     */
+    public Reader getNCharacterStream() throws SQLibException {
+        try {
+            if(compression != null) return closing(decompressedReader(set.getBinaryStream(rowName)));
+            return closing(set.getNCharacterStream(rowName));
+        } catch (SQLException | IOException e) {
+            throw new SQLibException("Couldn't fetch the result set as NCharacter Stream.", e);
+        }
+    }
+
+    /**
+     * Write the entry to {@param channel} through the reusable buffer of the current thread
+     * @param channel The channel the entry is written to, for example a socket or file channel
+     * @return The amount of written bytes, -1 if the entry is NULL
+     * @throws SQLibException Thrown when the entry couldn't be read or written
+     */
+    public long transferTo(WritableByteChannel channel) throws SQLibException {
+        return transferTo(channel, BUFFER.get());
+    }
+
+    /**
+     * Write the entry to {@param channel} through {@param buffer}
+     * @param channel The channel the entry is written to, for example a socket or file channel
+     * @param buffer The buffer the entry is copied through, can be reused for many transfers
+     * @return The amount of written bytes, -1 if the entry is NULL
+     * @throws SQLibException Thrown when the entry couldn't be read or written
+     */
+    public long transferTo(WritableByteChannel channel, byte[] buffer) throws SQLibException {
+        try (InputStream in = getBinaryStream()){
+            if(in == null) return -1;
+
+            long transferred = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1){
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()){
+                    channel.write(chunk);
+                }
+                transferred += read;
+            }
+            return transferred;
+        } catch (IOException e) {
+            throw new SQLibException("Failed to transfer the entry " + rowName, e);
+        }
+    }
+
+    /**
+     * @return The row the entry is saved in
+     */
+    public String getRowName() {
+        return rowName;
+    }
+
+    /**
+     * Close the ResultSet and with it the statement
+     * @throws SQLibException Thrown when the ResultSet couldn't be closed
+     */
+    @Override
+    public void close() throws SQLibException {
+        if(closed) return;
+        closed = true;
+        try {
+            set.close();
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to close the streamed entry " + rowName, e);
+        }
+    }
+
+    private InputStream decompressed(InputStream in) throws IOException {
+        return in == null || compression == null ? in : compression.decompressingStream(in);
+    }
+
+    // compressed texts are UTF-8
+    private Reader decompressedReader(InputStream in) throws IOException {
+        return in == null ? null : new InputStreamReader(compression.decompressingStream(in), StandardCharsets.UTF_8);
+    }
+
+    private InputStream closing(InputStream in) throws SQLibException {
+        if(in == null){
+            close();
+            return null;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    closeEntry();
+                }
+            }
+        };
+    }
+
+    private Reader closing(Reader in) throws SQLibException {
+        if(in == null){
+            close();
+            return null;
+        }
+        return new FilterReader(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    closeEntry();
+                }
+            }
+        };
+    }
+
+    private void closeEntry() throws IOException {
+        try {
+            close();
+        } catch (SQLibException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads a streamed entry while its statement is open
+     * @param <R> The type of the result
+     */
+    @FunctionalInterface
+    public interface EntryReader<R> {
+
+        /**
+         * @param entry The entry, closed after this method returned
+         * @return The result, for example the parsed entry
+         * @throws SQLibException Thrown when the entry couldn't be read
+         * @throws IOException Thrown when the stream of the entry couldn't be read
+         */
+        R read(StreamedEntry entry) throws SQLibException, IOException;
+
+    }
+
+}
@@ -18,6 +18,9 @@ public class Table {
     private StorageEngine engine;
     private String charset;
 
+    // partitioning of the table, null if the table isn't partitioned
+    private Partitioning partitioning;
+
     /**
      * Create a default table with the name {@param tableName} and the rows defined at {@param rows}
      * @param tableName The name of the Table
@@ -45,6 +48,21 @@ public class Table {
         this.charset = charset;
     }
 
+    /**
+     * Creates a partitioned table with the name {@param tableName} and rows defined at {@param rows}, a set charset at {@param charset},
+     * a defined {@param engine} and the partitioning at {@param partitioning}
+     * @param tableName The name of the Table
+     * @param rows A list with all rows of the table
+     * @param engine The engine the table is running on
+     * @param charset The Charset the table is using
+     * @param partitioning The way the table is split into partitions
+     * @see Partitioning
+     */
+    public Table(String tableName, List<TableRow> rows, StorageEngine engine, String charset, Partitioning partitioning) {
+        this(tableName, rows, engine, charset);
+        this.partitioning = partitioning;
+    }
+
     /**
      * @return The name of the Table
      */
@@ -73,6 +91,13 @@ public class Table {
         return charset;
     }
 
+    /**
+     * @return The partitioning of the table, null if the table isn't partitioned
+     */
+    public Partitioning getPartitioning() {
+        return partitioning;
+    }
+
     /**
      * Used for table creation to set defaults of a table row such as the rowName, the datatype or the maximum length.
      */
@@ -84,6 +109,9 @@ public class Table {
         private boolean canContainNull;
         private boolean autoIncrement;
 
+        // values are compressed, see mxrlin.sqlib.compression.ValueCompression
+        private boolean compressed;
+
         /**
          * Creates a tableRow with all defaults
          * @param rowName The Name of the row
@@ -100,6 +128,20 @@ public class Table {
             this.autoIncrement = autoIncrement;
         }
 
+        /**
+         * Creates a tableRow with all defaults whose values can be compressed
+         * @param rowName The Name of the row
+         * @param maxLength Maximum length of chars in the row
+         * @param dataType The DataType that is saved in that row, TEXT types are created as BLOB type of the same size when compressed
+         * @param canContainNull true = row can contain null
+         * @param autoIncrement true = value automatically increases on inserting new column
+         * @param compressed true = large values are compressed by {@link mxrlin.sqlib.compression.ValueCompression}
+         */
+        public TableRow(String rowName, int maxLength, DataType dataType, boolean canContainNull, boolean autoIncrement, boolean compressed) {
+            this(rowName, maxLength, dataType, canContainNull, autoIncrement);
+            this.compressed = compressed;
+        }
+
         /**
          * @return The Name of the row
          */
@@ -136,6 +178,13 @@ public class Table {
             return autoIncrement;
         }
 
+        /**
+         * @return true = large values are compressed by {@link mxrlin.sqlib.compression.ValueCompression}
+         */
+        public boolean isCompressed() {
+            return compressed;
+        }
+
     }
 
 }
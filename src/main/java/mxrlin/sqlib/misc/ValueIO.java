@@ -0,0 +1,249 @@
+package mxrlin.sqlib.misc;
+
+import mxrlin.sqlib.codec.CodecRegistry;
+import mxrlin.sqlib.exception.SQLibException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Part of the SQLib API
+ *
+ * Writes and reads the values of {@link RowData} and statement arguments in a compact, type tagged binary form.
+ * Used wherever SQLib has to store values outside of the database, for example in cursor tokens.
+ */
+public final class ValueIO {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte BIG_INTEGER = 10;
+    private static final byte BYTES = 11;
+    private static final byte SQL_DATE = 12;
+    private static final byte SQL_TIME = 13;
+    private static final byte SQL_TIMESTAMP = 14;
+    private static final byte DATE = 15;
+    private static final byte LOCAL_DATE = 16;
+    private static final byte LOCAL_TIME = 17;
+    private static final byte LOCAL_DATE_TIME = 18;
+
+    private ValueIO() {}
+
+    /**
+     * @param value The value that should be written
+     * @return true if {@link #write(DataOutput, Object)} supports the type of {@param value}
+     */
+    public static boolean isSupported(Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte || value instanceof Boolean || value instanceof Double
+                || value instanceof Float || value instanceof BigDecimal || value instanceof BigInteger
+                || value instanceof byte[] || value instanceof java.util.Date || value instanceof LocalDate
+                || value instanceof LocalTime || value instanceof LocalDateTime
+                || CodecRegistry.getDefault().getCodec(value.getClass()) != null;
+    }
+
+    /**
+     * Write {@param value} with its type to {@param out}
+     * @param out The output the value is written to
+     * @param value The value, may be null
+     * @throws IOException Thrown when the type of the value isn't supported or writing failed
+     */
+    public static void write(DataOutput out, Object value) throws IOException {
+        if(value == null){
+            out.writeByte(NULL);
+        }else if(value instanceof String){
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+        }else if(value instanceof Integer){
+            out.writeByte(INTEGER);
+            out.writeInt((int) value);
+        }else if(value instanceof Long){
+            out.writeByte(LONG);
+            out.writeLong((long) value);
+        }else if(value instanceof Short){
+            out.writeByte(SHORT);
+            out.writeShort((short) value);
+        }else if(value instanceof Byte){
+            out.writeByte(BYTE);
+            out.writeByte((byte) value);
+        }else if(value instanceof Boolean){
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((boolean) value);
+        }else if(value instanceof Double){
+            out.writeByte(DOUBLE);
+            out.writeDouble((double) value);
+        }else if(value instanceof Float){
+            out.writeByte(FLOAT);
+            out.writeFloat((float) value);
+        }else if(value instanceof BigDecimal){
+            out.writeByte(BIG_DECIMAL);
+            writeBytes(out, ((BigDecimal) value).toString().getBytes(StandardCharsets.US_ASCII));
+        }else if(value instanceof BigInteger){
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        }else if(value instanceof byte[]){
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        }else if(value instanceof java.sql.Date){
+            out.writeByte(SQL_DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        }else if(value instanceof Time){
+            out.writeByte(SQL_TIME);
+            out.writeLong(((Time) value).getTime());
+        }else if(value instanceof Timestamp){
+            out.writeByte(SQL_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        }else if(value instanceof java.util.Date){
+            out.writeByte(DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        }else if(value instanceof LocalDate){
+            out.writeByte(LOCAL_DATE);
+            out.writeLong(((LocalDate) value).toEpochDay());
+        }else if(value instanceof LocalTime){
+            out.writeByte(LOCAL_TIME);
+            out.writeLong(((LocalTime) value).toNanoOfDay());
+        }else if(value instanceof LocalDateTime){
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+            out.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+        }else if(CodecRegistry.getDefault().getCodec(value.getClass()) != null){
+            // read back as the bytes it's bound as
+            out.writeByte(BYTES);
+            try {
+                writeBytes(out, CodecRegistry.getDefault().encode(value));
+            } catch (SQLibException e) {
+                throw new IOException(e);
+            }
+        }else throw new IOException("Unsupported value type " + value.getClass().getName());
+    }
+
+    /**
+     * Read a value that was written with {@link #write(DataOutput, Object)}
+     * @param in The input the value is read from
+     * @return The value, may be null
+     * @throws IOException Thrown when the type is unknown or reading failed
+     */
+    public static Object read(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL: return null;
+            case STRING: return new String(readBytes(in), StandardCharsets.UTF_8);
+            case INTEGER: return in.readInt();
+            case LONG: return in.readLong();
+            case SHORT: return in.readShort();
+            case BYTE: return in.readByte();
+            case BOOLEAN: return in.readBoolean();
+            case DOUBLE: return in.readDouble();
+            case FLOAT: return in.readFloat();
+            case BIG_DECIMAL: return new BigDecimal(new String(readBytes(in), StandardCharsets.US_ASCII));
+            case BIG_INTEGER: return new BigInteger(readBytes(in));
+            case BYTES: return readBytes(in);
+            case SQL_DATE: return new java.sql.Date(in.readLong());
+            case SQL_TIME: return new Time(in.readLong());
+            case SQL_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case DATE: return new java.util.Date(in.readLong());
+            case LOCAL_DATE: return LocalDate.ofEpochDay(in.readLong());
+            case LOCAL_TIME: return LocalTime.ofNanoOfDay(in.readLong());
+            case LOCAL_DATE_TIME: return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+            default: throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Write an unsigned variable length integer (7 bits per byte)
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Read an unsigned variable length integer written with {@link #writeVarInt(DataOutput, int)}
+     */
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Write a signed variable length long (zigzag encoded, 7 bits per byte), small absolute values use few bytes
+     */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    /**
+     * Read a signed variable length long written with {@link #writeVarLong(DataOutput, long)}
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("Malformed variable length long");
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a length or element count written with {@link #writeVarInt(DataOutput, int)} and check it against the remaining input.
+     * Lengths of damaged or tampered bytes are reported before anything is allocated for them.
+     * @param in The input, checked against the bytes still available if it's an {@link InputStream}
+     * @param elementSize The minimum number of bytes each counted element takes
+     * @return The length
+     * @throws IOException Thrown when the length is negative or larger than the remaining input
+     */
+    public static int readLength(DataInput in, int elementSize) throws IOException {
+        int length = readVarInt(in);
+        if(length < 0) throw new IOException("Negative length " + length);
+        if(in instanceof InputStream && (long) length * elementSize > ((InputStream) in).available())
+            throw new IOException("Length " + length + " exceeds the remaining input");
+        return length;
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[readLength(in, 1)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,79 @@
+package mxrlin.sqlib.reactive;
+
+/**
+ * Part of the SQLib API
+ *
+ * The interfaces of java.util.concurrent.Flow (Java 9) for Java 8. They have the same methods and rules as the
+ * Reactive Streams specification, so a publisher of SQLib can be bridged to any reactive library with a few lines,
+ * and the imports can be replaced by java.util.concurrent.Flow once SQLib requires Java 9.
+ *
+ * @see QueryPublisher
+ */
+public final class Flow {
+
+    private Flow() {}
+
+    /**
+     * A source of items that are sent to subscribers as they request them
+     * @param <T> The type of the items
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        /**
+         * Add {@param subscriber}, it receives {@link Subscriber#onSubscribe(Subscription)} first
+         * @param subscriber The subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+
+    }
+
+    /**
+     * Receives the items of a {@link Publisher}. The methods are never called at the same time.
+     * @param <T> The type of the items
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method, no item is sent until {@link Subscription#request(long)} is called
+         * @param subscription The subscription, used to request items or to cancel
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * @param item The next item, only sent when it was requested
+         */
+        void onNext(T item);
+
+        /**
+         * Called once when the publisher failed, nothing is sent afterwards
+         * @param throwable The failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once when all items were sent, nothing is sent afterwards
+         */
+        void onComplete();
+
+    }
+
+    /**
+     * The link between a {@link Publisher} and a {@link Subscriber}
+     */
+    public interface Subscription {
+
+        /**
+         * Request {@param n} more items, requests add up
+         * @param n The amount of items, has to be positive
+         */
+        void request(long n);
+
+        /**
+         * Stop sending items and release all resources, may still send items that are on their way
+         */
+        void cancel();
+
+    }
+
+}
@@ -0,0 +1,232 @@
+package mxrlin.sqlib.reactive;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.RowData;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Part of the SQLib API
+ *
+ * Publishes the columns of a query to a {@link Flow.Subscriber} as it requests them. The query is executed as a
+ * streaming query ({@link IConnection#executeStreamingQuery(QueryCommand)}) once the first column is requested, and a
+ * column is only read from the cursor when the subscriber requested it. A slow subscriber therefore slows down the
+ * cursor instead of filling the heap. The ResultSet and statement are closed on completion, failure and cancel.
+ *
+ * 1. Create an instance with {@link IConnection#publish(QueryCommand)}.
+ * 2. Subscribe to it, every subscription executes the query again.
+ * 3. Request columns with {@link Flow.Subscription#request(long)}, every column is a list with the data of all its rows.
+ *
+ * The JDBC calls run on an executor, by default on daemon threads of SQLib. A MySQL connection can't execute other commands
+ * while a subscription is reading, so subscriptions of the same connection should be completed or cancelled first.
+ */
+public class QueryPublisher implements Flow.Publisher<List<RowData>> {
+
+    /**
+     * Columns sent in one pass by default
+     */
+    public static final int DEFAULT_WINDOW = 256;
+
+    private static final Logger LOGGER = Logger.getLogger(QueryPublisher.class.getName());
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "SQLib-QueryPublisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // the connection the query is executed with
+    private final IConnection connection;
+
+    // the query
+    private final QueryCommand command;
+
+    // maximum columns sent in one pass before the executor thread is released
+    private int window = DEFAULT_WINDOW;
+
+    private Executor executor = DEFAULT_EXECUTOR;
+
+    /**
+     * @param connection The connection the query is executed with
+     * @param command The query
+     */
+    public QueryPublisher(IConnection connection, QueryCommand command) {
+        this.connection = connection;
+        this.command = command;
+    }
+
+    /**
+     * @param columns Maximum columns that are read and sent in one pass, before the executor thread is released
+     *                to other subscriptions. Nothing is read ahead of the demand.
+     */
+    public QueryPublisher window(int columns) {
+        if(columns <= 0) throw new IllegalArgumentException("Window has to be positive");
+        this.window = columns;
+        return this;
+    }
+
+    /**
+     * @param executor The executor the JDBC calls and the calls of the subscriber run on
+     */
+    public QueryPublisher executor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+        return this;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<RowData>> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new QuerySubscription(subscriber));
+    }
+
+    // reads the cursor on the executor, the work-in-progress counter makes sure only one thread drains at a time
+    private final class QuerySubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super List<RowData>> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile IllegalArgumentException invalidRequest;
+
+        // only accessed by the draining thread
+        private ResultSet set;
+        private boolean done;
+
+        QuerySubscription(Flow.Subscriber<? super List<RowData>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0){
+                invalidRequest = new IllegalArgumentException("Requested " + n + " columns, the amount has to be positive");
+            }else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if(wip.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true){
+                if(drain()){
+                    // the window is used up but more was requested, continue in a new pass
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        fail(e);
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) return;
+            }
+        }
+
+        // returns true if it stopped because of the window while columns are still requested
+        private boolean drain() {
+            if(done) return false;
+            if(cancelled){
+                finish(true);
+                return false;
+            }
+            if(invalidRequest != null){
+                fail(invalidRequest);
+                return false;
+            }
+            if(requested.get() == 0) return false;
+
+            try {
+                if(set == null) set = connection.executeStreamingQuery(command);
+
+                int sent = 0;
+                while (requested.get() > 0){
+                    if(cancelled){
+                        finish(true);
+                        return false;
+                    }
+                    if(sent == window) return true;
+
+                    if(!set.next()){
+                        finish(false);
+                        subscriber.onComplete();
+                        return false;
+                    }
+                    List<RowData> column = RowData.fromResultSet(set);
+                    if(requested.get() != Long.MAX_VALUE) requested.decrementAndGet();
+                    sent++;
+                    subscriber.onNext(column);
+                }
+                return false;
+            } catch (SQLibException e) {
+                fail(e);
+            } catch (SQLException e) {
+                fail(new SQLibException("Failed to read the next column of the query", e));
+            } catch (RuntimeException e) {
+                // the subscriber broke the rules, treat the subscription as cancelled
+                LOGGER.log(Level.WARNING, "Subscriber " + subscriber + " threw an exception, the subscription is cancelled", e);
+                finish(true);
+            }
+            return false;
+        }
+
+        private void fail(Throwable throwable) {
+            finish(true);
+            subscriber.onError(throwable);
+        }
+
+        // releases the ResultSet and with it the statement, a query that wasn't read to the end is cancelled on the server
+        // instead of streaming the remaining columns to the client just to close the ResultSet
+        private void finish(boolean cancelQuery) {
+            done = true;
+            if(set == null) return;
+            try {
+                Statement statement = cancelQuery ? set.getStatement() : null;
+                if(statement != null) statement.cancel();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Failed to cancel the query of a publisher", e);
+            }
+            try {
+                set.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Failed to close the ResultSet of a publisher", e);
+            }
+            set = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,322 @@
+package mxrlin.sqlib.schema;
+
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.GetEntriesCommand;
+import mxrlin.sqlib.command.get.GetEntryCommand;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.command.get.SelectCommand;
+import mxrlin.sqlib.command.set.*;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.exception.UnknownIdentifierException;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.RowData;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Part of the SQLib API
+ *
+ * Loads the rows and types of every table SQLib touches once from the {@link DatabaseMetaData} and checks the table and
+ * row names of every command against them, so a typo fails locally with an {@link UnknownIdentifierException} instead of
+ * at the server. DDL commands executed through SQLib ({@link CreateTableCommand}, {@link DeleteTableCommand}, partition
+ * commands) reload the schema of their table. Tables that don't exist are remembered as well, so a typo costs one
+ * round trip only.
+ *
+ * Inserts, updates and deletes that carry their rows by name ({@link InsertColumnCommand}, {@link InsertColumnsCommand},
+ * {@link UpdateEntryCommand}, {@link DeleteColumnCommand}) bind their values with the types of their rows, see
+ * {@link #withArgumentTypes(Connection, UpdatingCommand, MySQLStatement)}.
+ *
+ * 1. Set an instance with {@link mxrlin.sqlib.SQLibConnection#setSchemaCache(SchemaCache)}.
+ * 2. Execute commands as usual, the schema of a table is loaded the first time it is used.
+ * 3. Call {@link #invalidate(String)} after a table was changed or created outside of SQLib.
+ *
+ * @see TableSchema
+ */
+public class SchemaCache {
+
+    // table name as it's used in commands -> schema
+    private final Map<String, TableSchema> tables = new ConcurrentHashMap<>();
+
+    // names of tables that didn't exist when they were loaded
+    private final Set<String> missingTables = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Get the schema of {@param tableName}, it is loaded if it isn't cached
+     * @param connection The connection the schema is loaded with
+     * @param tableName The name of the table, can be qualified with the database ("database.table")
+     * @return The schema of the table
+     * @throws UnknownIdentifierException Thrown when the table doesn't exist
+     * @throws SQLibException Thrown when the schema couldn't be loaded
+     */
+    public TableSchema getSchema(Connection connection, String tableName) throws SQLibException {
+        TableSchema schema = tables.get(tableName);
+        if(schema != null) return schema;
+        if(missingTables.contains(tableName)){
+            rejected.increment();
+            throw new UnknownIdentifierException("The table " + tableName + " doesn't exist");
+        }
+
+        schema = load(connection, tableName);
+        TableSchema previous = tables.putIfAbsent(tableName, schema);
+        return previous == null ? schema : previous;
+    }
+
+    /**
+     * Load the schemas of {@param tableNames} before they are used
+     * @param connection The connection the schemas are loaded with
+     * @param tableNames The names of the tables
+     * @throws SQLibException Thrown when a table doesn't exist or a schema couldn't be loaded
+     */
+    public void preload(Connection connection, Collection<String> tableNames) throws SQLibException {
+        for (String tableName : tableNames) {
+            getSchema(connection, tableName);
+        }
+    }
+
+    private TableSchema load(Connection connection, String tableName) throws SQLibException {
+        int dot = tableName.indexOf('.');
+        String catalog;
+        String table;
+        try {
+            catalog = dot == -1 ? connection.getCatalog() : tableName.substring(0, dot);
+            table = dot == -1 ? tableName : tableName.substring(dot + 1);
+
+            DatabaseMetaData metaData = connection.getMetaData();
+            // "_" and "%" are wildcards in metadata patterns
+            String escape = metaData.getSearchStringEscape();
+            String pattern = escape == null ? table : table.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+
+            List<TableSchema.RowSchema> rows = new ArrayList<>();
+            try (ResultSet set = metaData.getColumns(catalog, null, pattern, null)){
+                while (set.next()){
+                    if(!table.equalsIgnoreCase(set.getString("TABLE_NAME"))) continue;
+                    rows.add(new TableSchema.RowSchema(
+                            set.getString("COLUMN_NAME"),
+                            set.getInt("DATA_TYPE"),
+                            set.getString("TYPE_NAME"),
+                            set.getInt("COLUMN_SIZE"),
+                            set.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls,
+                            "YES".equals(set.getString("IS_AUTOINCREMENT"))));
+                }
+            }
+            loads.increment();
+
+            if(rows.isEmpty()){
+                missingTables.add(tableName);
+                rejected.increment();
+                throw new UnknownIdentifierException("The table " + tableName + " doesn't exist");
+            }
+            return new TableSchema(tableName, rows);
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to load the schema of the table " + tableName, e);
+        }
+    }
+
+    /**
+     * Check that the table and all rows of {@param command} exist
+     * @param connection The connection unknown schemas are loaded with
+     * @param command The command that is about to be executed
+     * @throws UnknownIdentifierException Thrown when the table or a row doesn't exist
+     * @throws SQLibException Thrown when the schema couldn't be loaded
+     */
+    public void validate(Connection connection, QueryCommand command) throws SQLibException {
+        String tableName;
+        List<String> rows = new ArrayList<>();
+
+        if(command instanceof GetEntryCommand){
+            GetEntryCommand get = (GetEntryCommand) command;
+            tableName = get.getTableName();
+            addSelectedRows(rows, get.getRowName());
+            rows.add(get.getAtRow().getRowName());
+        }else if(command instanceof GetEntriesCommand){
+            GetEntriesCommand get = (GetEntriesCommand) command;
+            tableName = get.getTableName();
+            addSelectedRows(rows, get.getRowName());
+            rows.add(get.getKeyRow());
+        }else if(command instanceof SelectCommand){
+            SelectCommand select = (SelectCommand) command;
+            tableName = select.getTableName();
+            for (String selected : select.getRowNames()) {
+                addSelectedRows(rows, selected);
+            }
+            if(select.getAggregateRow() != null) addSelectedRows(rows, select.getAggregateRow());
+            addConditionRows(rows, select.getCondition());
+            for (String order : select.getOrderBy()) {
+                rows.add(order.substring(0, order.lastIndexOf(' ')));
+            }
+        }else return;
+
+        validate(connection, tableName, rows);
+    }
+
+    /**
+     * Check that the table and all rows of {@param command} exist
+     * @param connection The connection unknown schemas are loaded with
+     * @param command The command that is about to be executed
+     * @throws UnknownIdentifierException Thrown when the table or a row doesn't exist
+     * @throws SQLibException Thrown when the schema couldn't be loaded
+     */
+    public void validate(Connection connection, UpdatingCommand command) throws SQLibException {
+        List<String> rows = new ArrayList<>();
+
+        if(command instanceof InsertColumnCommand){
+            addRows(rows, ((InsertColumnCommand) command).getRowData());
+        }else if(command instanceof InsertColumnsCommand){
+            List<List<RowData>> columns = ((InsertColumnsCommand) command).getColumns();
+            // all columns have the same rows
+            if(!columns.isEmpty()) addRows(rows, columns.get(0));
+        }else if(command instanceof UpdateEntryCommand){
+            addRows(rows, ((UpdateEntryCommand) command).getUpdatingRows());
+            addRows(rows, ((UpdateEntryCommand) command).getUpdateAt());
+        }else if(command instanceof UpdateWhereCommand){
+            UpdateWhereCommand update = (UpdateWhereCommand) command;
+            addRows(rows, update.getUpdatingRows());
+            addConditionRows(rows, update.getCondition());
+            if(update.getOrderRow() != null) rows.add(update.getOrderRow());
+        }else if(command instanceof IncrementCommand){
+            rows.add(((IncrementCommand) command).getCounterRow());
+            addRows(rows, ((IncrementCommand) command).getKeyRows());
+        }else if(command instanceof DeleteColumnCommand){
+            addRows(rows, ((DeleteColumnCommand) command).getRowData());
+        }else if(command instanceof DeleteWhereCommand){
+            DeleteWhereCommand delete = (DeleteWhereCommand) command;
+            addConditionRows(rows, delete.getCondition());
+            if(delete.getOrderRow() != null) rows.add(delete.getOrderRow());
+        }else return;
+
+        validate(connection, command.getTableName(), rows);
+    }
+
+    /**
+     * Attach the types of the rows the arguments of {@param statement} are written to, so null values are bound with
+     * the type of their row and texts of binary rows as bytes
+     * @param connection The connection unknown schemas are loaded with
+     * @param command The command {@param statement} was built from
+     * @param statement The statement of the command
+     * @return The typed statement, {@param statement} if the command doesn't carry its rows by name
+     * @throws SQLibException Thrown when the schema couldn't be loaded
+     */
+    public MySQLStatement withArgumentTypes(Connection connection, UpdatingCommand command, MySQLStatement statement) throws SQLibException {
+        List<RowData> arguments = new ArrayList<>();
+        if(command instanceof InsertColumnCommand){
+            arguments.addAll(((InsertColumnCommand) command).getRowData());
+        }else if(command instanceof InsertColumnsCommand){
+            for (List<RowData> column : ((InsertColumnsCommand) command).getColumns()) {
+                arguments.addAll(column);
+            }
+        }else if(command instanceof UpdateEntryCommand){
+            arguments.addAll(((UpdateEntryCommand) command).getUpdatingRows());
+            arguments.addAll(((UpdateEntryCommand) command).getUpdateAt());
+        }else if(command instanceof DeleteColumnCommand){
+            arguments.addAll(((DeleteColumnCommand) command).getRowData());
+        }else return statement;
+
+        if(arguments.size() != statement.getReplaceArguments().size()) return statement;
+        TableSchema schema = getSchema(connection, command.getTableName());
+        int[] types = new int[arguments.size()];
+        for (int i = 0; i < types.length; i++) {
+            TableSchema.RowSchema row = schema.getRow(arguments.get(i).getRowName());
+            if(row == null) return statement;
+            types[i] = row.getSqlType();
+        }
+        return statement.withArgumentTypes(types);
+    }
+
+    private void validate(Connection connection, String tableName, List<String> rows) throws SQLibException {
+        TableSchema schema = getSchema(connection, tableName);
+        for (String row : rows) {
+            if(schema.hasRow(row)) continue;
+            rejected.increment();
+            throw new UnknownIdentifierException("The table " + tableName + " has no row " + row + ", its rows are " + schema.getRows());
+        }
+    }
+
+    // "*", "a, b" or an expression like "COUNT(*)" are allowed as selected rows
+    private static void addSelectedRows(List<String> rows, String selected) {
+        for (String row : selected.split(",")) {
+            row = row.trim();
+            if(row.equals("*") || row.indexOf('(') != -1) continue;
+            rows.add(row);
+        }
+    }
+
+    private static void addRows(List<String> rows, List<RowData> rowData) {
+        for (RowData data : rowData) {
+            rows.add(data.getRowName());
+        }
+    }
+
+    private static void addConditionRows(List<String> rows, Condition condition) {
+        if(condition == null) return;
+        if(condition.getConditions() != null){
+            for (Condition part : condition.getConditions()) {
+                addConditionRows(rows, part);
+            }
+        }else if(condition.getRowName() != null){
+            rows.add(condition.getRowName());
+        }
+    }
+
+    /**
+     * Reload the schema of the table of a DDL command the next time it is used
+     * @param command A command that was executed
+     */
+    public void onUpdate(UpdatingCommand command) {
+        if(command instanceof CreateTableCommand || command instanceof DeleteTableCommand || command instanceof AddPartitionCommand
+                || command instanceof DropPartitionCommand || command instanceof TruncatePartitionCommand){
+            invalidate(command.getTableName());
+        }
+    }
+
+    /**
+     * Reload the schema of {@param tableName} the next time it is used
+     * @param tableName The name of the table
+     */
+    public void invalidate(String tableName) {
+        tables.remove(tableName);
+        missingTables.remove(tableName);
+    }
+
+    /**
+     * Reload all schemas the next time they are used
+     */
+    public void invalidateAll() {
+        tables.clear();
+        missingTables.clear();
+    }
+
+    /**
+     * @return Amount of cached table schemas
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * @return Amount of schemas that were loaded from the database
+     */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /**
+     * @return Amount of commands that were rejected because of an unknown table or row
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+}
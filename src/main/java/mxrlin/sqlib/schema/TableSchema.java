@@ -0,0 +1,157 @@
+package mxrlin.sqlib.schema;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Part of the SQLib API
+ *
+ * The rows of a table and their types as the database reported them, loaded by {@link SchemaCache}.
+ * Row names are compared case-insensitively, like MySQL does.
+ */
+public class TableSchema {
+
+    // name of the table
+    private final String tableName;
+
+    // lower case row name -> row, in table order
+    private final Map<String, RowSchema> rows;
+
+    /**
+     * @param tableName The name of the table
+     * @param rows The rows of the table, in table order
+     */
+    public TableSchema(String tableName, List<RowSchema> rows) {
+        this.tableName = tableName;
+        this.rows = new LinkedHashMap<>();
+        for (RowSchema row : rows) {
+            this.rows.put(row.getRowName().toLowerCase(Locale.ROOT), row);
+        }
+    }
+
+    /**
+     * @return The name of the table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @param rowName The name of the row, in any case
+     * @return The row, null if the table has no row with that name
+     */
+    public RowSchema getRow(String rowName) {
+        return rows.get(rowName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param rowName The name of the row, in any case
+     * @return true if the table has a row with that name
+     */
+    public boolean hasRow(String rowName) {
+        return rows.containsKey(rowName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return All rows of the table, in table order
+     */
+    public List<RowSchema> getRows() {
+        return Collections.unmodifiableList(new ArrayList<>(rows.values()));
+    }
+
+    @Override
+    public String toString() {
+        return "TableSchema{" + tableName + ", rows=" + rows.values() + "}";
+    }
+
+    /**
+     * A row of a table with its type, values written to it are bound with the type
+     */
+    public static class RowSchema {
+
+        private final String rowName;
+        private final int sqlType;
+        private final String typeName;
+        private final int size;
+        private final boolean nullable;
+        private final boolean autoIncrement;
+
+        /**
+         * @param rowName The name of the row
+         * @param sqlType The type of the row, see {@link Types}
+         * @param typeName The type as the database names it, for example "MEDIUMBLOB"
+         * @param size The size of the row, for example the maximum amount of characters
+         * @param nullable true = row can contain null
+         * @param autoIncrement true = value automatically increases on inserting new column
+         */
+        public RowSchema(String rowName, int sqlType, String typeName, int size, boolean nullable, boolean autoIncrement) {
+            this.rowName = rowName;
+            this.sqlType = sqlType;
+            this.typeName = typeName;
+            this.size = size;
+            this.nullable = nullable;
+            this.autoIncrement = autoIncrement;
+        }
+
+        /**
+         * @return true if the row contains bytes, like BLOB or VARBINARY
+         */
+        public boolean isBinary() {
+            return sqlType == Types.BINARY || sqlType == Types.VARBINARY || sqlType == Types.LONGVARBINARY || sqlType == Types.BLOB;
+        }
+
+        /**
+         * @return The name of the row
+         */
+        public String getRowName() {
+            return rowName;
+        }
+
+        /**
+         * @return The type of the row, see {@link Types}
+         */
+        public int getSqlType() {
+            return sqlType;
+        }
+
+        /**
+         * @return The type as the database names it, for example "MEDIUMBLOB"
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+
+        /**
+         * @return The size of the row, for example the maximum amount of characters
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return true = row can contain null
+         */
+        public boolean isNullable() {
+            return nullable;
+        }
+
+        /**
+         * @return true = value automatically increases on inserting new column
+         */
+        public boolean isAutoIncrement() {
+            return autoIncrement;
+        }
+
+        @Override
+        public String toString() {
+            return rowName + " " + typeName;
+        }
+
+    }
+
+}
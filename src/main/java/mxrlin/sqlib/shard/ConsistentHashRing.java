@@ -0,0 +1,113 @@
+package mxrlin.sqlib.shard;
+
+import mxrlin.sqlib.misc.MultiEntryResult;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Part of the SQLib API
+ *
+ * Maps keys to nodes with consistent hashing. Every node is placed on a ring of hashes many times ("virtual nodes"),
+ * a key belongs to the first node after its own hash. Keys are spread evenly, and adding or removing a node only moves
+ * the keys of that node.
+ *
+ * Equal numbers of different types (for example Integer 1 and Long 1) and equal byte arrays map to the same node.
+ *
+ * @param <T> The type of the nodes
+ * @see ShardedConnection
+ */
+public class ConsistentHashRing<T> {
+
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 isn't available", e);
+        }
+    });
+
+    // hash -> node
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    // amount of positions of every node on the ring
+    private final int virtualNodes;
+
+    /**
+     * @param virtualNodes Amount of positions of every node on the ring, more positions spread the keys more evenly
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        if(virtualNodes <= 0) throw new IllegalArgumentException("Virtual nodes have to be positive");
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * Add a node to the ring
+     * @param name A name that stays the same across restarts, the positions of the node are derived from it
+     * @param node The node
+     */
+    public synchronized void add(String name, T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash((name + "#" + i).getBytes(StandardCharsets.UTF_8)), node);
+        }
+    }
+
+    /**
+     * Remove a node from the ring, its keys move to the following nodes
+     * @param name The name the node was added with
+     */
+    public synchronized void remove(String name) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(hash((name + "#" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * @param key A key, for example the value of a shard key row
+     * @return The node the key belongs to, null if the ring is empty
+     */
+    public synchronized T get(Object key) {
+        if(ring.isEmpty()) return null;
+        SortedMap<Long, T> tail = ring.tailMap(hash(keyBytes(key)));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * @return The amount of positions on the ring
+     */
+    public synchronized int size() {
+        return ring.size();
+    }
+
+    /**
+     * @return A copy of the ring, hash -> node
+     */
+    public synchronized Map<Long, T> getRing() {
+        return new TreeMap<>(ring);
+    }
+
+    private static byte[] keyBytes(Object key) {
+        Object normalized = MultiEntryResult.normalize(key);
+        if(normalized instanceof BigDecimal) return ((BigDecimal) normalized).toPlainString().getBytes(StandardCharsets.UTF_8);
+        if(normalized instanceof ByteBuffer){
+            ByteBuffer buffer = ((ByteBuffer) normalized).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        return String.valueOf(normalized).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long hash(byte[] bytes) {
+        MessageDigest digest = MD5.get();
+        digest.reset();
+        return ByteBuffer.wrap(digest.digest(bytes)).getLong();
+    }
+
+}
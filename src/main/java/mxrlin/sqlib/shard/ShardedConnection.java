@@ -0,0 +1,592 @@
+package mxrlin.sqlib.shard;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.Condition;
+import mxrlin.sqlib.command.get.GetEntriesCommand;
+import mxrlin.sqlib.command.get.GetEntryCommand;
+import mxrlin.sqlib.command.get.QueryCommand;
+import mxrlin.sqlib.command.get.SelectCommand;
+import mxrlin.sqlib.command.set.DeleteColumnCommand;
+import mxrlin.sqlib.command.set.DeleteWhereCommand;
+import mxrlin.sqlib.command.set.InsertColumnCommand;
+import mxrlin.sqlib.command.set.InsertColumnsCommand;
+import mxrlin.sqlib.command.set.UpdateEntryCommand;
+import mxrlin.sqlib.command.set.UpdateWhereCommand;
+import mxrlin.sqlib.command.set.UpdatingCommand;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.CachedResult;
+import mxrlin.sqlib.misc.InsertResult;
+import mxrlin.sqlib.misc.RowData;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Part of the SQLib API
+ *
+ * An {@link IConnection} that spreads the columns of its tables over several databases ("shards"). Every column belongs
+ * to the shard its shard key row is hashed to ({@link ConsistentHashRing}), so commands that reference a column by its
+ * shard key ({@link GetEntryCommand}, {@link UpdateEntryCommand}, {@link InsertColumnCommand}, {@link DeleteColumnCommand},
+ * conditions like "shardKey=?") are executed on a single shard.
+ *
+ * Commands without a shard key are executed on all shards at the same time ("scatter-gather"): updates return the sum
+ * of the affected columns and query results are merged. Merged {@link SelectCommand}s keep their ORDER BY, LIMIT and
+ * OFFSET, and COUNT, SUM, MIN, MAX and EXISTS are combined. AVG can't be merged.
+ *
+ * 1. Create a connection per shard, for example {@link mxrlin.sqlib.SQLibConnection} instances or in-memory databases for tests.
+ * 2. Create a new instance of this class with the shards, named with names that never change, and the shard key row.
+ * 3. Use it like any other {@link IConnection}.
+ *
+ * Shards are independent databases: a command on many shards isn't atomic, and commits or rollbacks are executed on
+ * every shard one after another. The shard key of a column can't be updated, as that would move it to another shard.
+ *
+ * @see ConsistentHashRing
+ */
+public class ShardedConnection implements IConnection {
+
+    /**
+     * Default amount of positions of every shard on the hash ring
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    // shard name -> connection
+    private final Map<String, IConnection> shards;
+    private final ConsistentHashRing<IConnection> ring;
+
+    // the row columns are sharded by, per table and for all other tables
+    private final Map<String, String> shardKeyRows = new ConcurrentHashMap<>();
+    private final String defaultShardKeyRow;
+
+    // executes the commands of a scatter-gather on all shards at the same time
+    private final ExecutorService executor;
+
+    /**
+     * Shard all tables by {@param shardKeyRow} with {@link #DEFAULT_VIRTUAL_NODES} virtual nodes per shard
+     * @param shards Shard name -> connection of the shard
+     * @param shardKeyRow The row every table is sharded by, for example "uuid"
+     */
+    public ShardedConnection(Map<String, ? extends IConnection> shards, String shardKeyRow) {
+        this(shards, shardKeyRow, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Shard all tables by {@param shardKeyRow}
+     * @param shards Shard name -> connection of the shard
+     * @param shardKeyRow The row every table is sharded by, for example "uuid"
+     * @param virtualNodes Amount of positions of every shard on the hash ring
+     */
+    public ShardedConnection(Map<String, ? extends IConnection> shards, String shardKeyRow, int virtualNodes) {
+        if(shards.isEmpty()) throw new IllegalArgumentException("At least one shard is needed");
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.defaultShardKeyRow = shardKeyRow;
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        for (Map.Entry<String, IConnection> shard : this.shards.entrySet()) {
+            ring.add(shard.getKey(), shard.getValue());
+        }
+        this.executor = Executors.newFixedThreadPool(this.shards.size(), runnable -> {
+            Thread thread = new Thread(runnable, "SQLib-Shard");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Shard the table {@param tableName} by another row than the default shard key row
+     * @param tableName The name of the table
+     * @param shardKeyRow The row the table is sharded by
+     */
+    public ShardedConnection shardKey(String tableName, String shardKeyRow) {
+        shardKeyRows.put(tableName, shardKeyRow);
+        return this;
+    }
+
+    /**
+     * @return The row the table {@param tableName} is sharded by
+     */
+    public String getShardKeyRow(String tableName) {
+        return tableName == null ? defaultShardKeyRow : shardKeyRows.getOrDefault(tableName, defaultShardKeyRow);
+    }
+
+    /**
+     * @return Shard name -> connection of the shard
+     */
+    public Map<String, IConnection> getShards() {
+        return shards;
+    }
+
+    /**
+     * @param key The value of a shard key row
+     * @return The connection of the shard the key belongs to
+     */
+    public IConnection getShard(Object key) {
+        return ring.get(key);
+    }
+
+    @Override
+    public boolean executeUpdate(UpdatingCommand command) throws SQLibException {
+        executeUpdateCount(command);
+        return true;
+    }
+
+    @Override
+    public int executeUpdateCount(UpdatingCommand command) throws SQLibException {
+        String shardKeyRow = getShardKeyRow(command.getTableName());
+
+        if(command instanceof InsertColumnCommand){
+            RowData key = findRow(((InsertColumnCommand) command).getRowData(), shardKeyRow);
+            if(key == null) throw new SQLibException("Inserted columns need a value of the shard key row " + shardKeyRow);
+            return getShard(key.getValue()).executeUpdateCount(command);
+        }
+
+        if(command instanceof InsertColumnsCommand) return insertColumns((InsertColumnsCommand) command, shardKeyRow);
+
+        if(command instanceof UpdateEntryCommand){
+            UpdateEntryCommand update = (UpdateEntryCommand) command;
+            checkShardKeyUnchanged(update.getUpdatingRows(), shardKeyRow);
+            RowData key = findRow(update.getUpdateAt(), shardKeyRow);
+            if(key != null) return getShard(key.getValue()).executeUpdateCount(command);
+        }
+
+        if(command instanceof DeleteColumnCommand){
+            RowData key = findRow(((DeleteColumnCommand) command).getRowData(), shardKeyRow);
+            if(key != null) return getShard(key.getValue()).executeUpdateCount(command);
+        }
+
+        Condition condition = null;
+        if(command instanceof DeleteWhereCommand) condition = ((DeleteWhereCommand) command).getCondition();
+        if(command instanceof UpdateWhereCommand){
+            checkShardKeyUnchanged(((UpdateWhereCommand) command).getUpdatingRows(), shardKeyRow);
+            condition = ((UpdateWhereCommand) command).getCondition();
+        }
+        List<Object> keys = findKeys(condition, shardKeyRow);
+        if(keys != null && keys.size() == 1) return getShard(keys.get(0)).executeUpdateCount(command);
+
+        // a LIMIT is applied on every shard, so up to (shards * limit) columns can be affected
+        int affected = 0;
+        for (int count : onAllShards(shard -> shard.executeUpdateCount(command))) {
+            if(count < 0) return Statement.SUCCESS_NO_INFO;
+            affected += count;
+        }
+        return affected;
+    }
+
+    private int insertColumns(InsertColumnsCommand command, String shardKeyRow) throws SQLibException {
+        Map<IConnection, List<List<RowData>>> columnsPerShard = new IdentityHashMap<>();
+        for (List<RowData> column : command.getColumns()) {
+            RowData key = findRow(column, shardKeyRow);
+            if(key == null) throw new SQLibException("Inserted columns need a value of the shard key row " + shardKeyRow);
+            columnsPerShard.computeIfAbsent(getShard(key.getValue()), shard -> new ArrayList<>()).add(column);
+        }
+
+        int affected = 0;
+        for (Map.Entry<IConnection, List<List<RowData>>> entry : columnsPerShard.entrySet()) {
+            int count = entry.getKey().executeUpdateCount(new InsertColumnsCommand(command.getTableName(), entry.getValue()));
+            if(count < 0) return Statement.SUCCESS_NO_INFO;
+            affected += count;
+        }
+        return affected;
+    }
+
+    @Override
+    public InsertResult executeInsert(UpdatingCommand command) throws SQLibException {
+        String shardKeyRow = getShardKeyRow(command.getTableName());
+
+        if(command instanceof InsertColumnCommand){
+            RowData key = findRow(((InsertColumnCommand) command).getRowData(), shardKeyRow);
+            if(key == null) throw new SQLibException("Inserted columns need a value of the shard key row " + shardKeyRow);
+            return getShard(key.getValue()).executeInsert(command);
+        }
+
+        if(!(command instanceof InsertColumnsCommand)) return IConnection.super.executeInsert(command);
+
+        // index of every column in the command, per shard, to return the keys in insertion order
+        InsertColumnsCommand insert = (InsertColumnsCommand) command;
+        Map<IConnection, List<Integer>> indicesPerShard = new IdentityHashMap<>();
+        List<List<RowData>> columns = insert.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            RowData key = findRow(columns.get(i), shardKeyRow);
+            if(key == null) throw new SQLibException("Inserted columns need a value of the shard key row " + shardKeyRow);
+            indicesPerShard.computeIfAbsent(getShard(key.getValue()), shard -> new ArrayList<>()).add(i);
+        }
+
+        int affected = 0;
+        Long[] keys = new Long[columns.size()];
+        boolean allKeys = true;
+        for (Map.Entry<IConnection, List<Integer>> entry : indicesPerShard.entrySet()) {
+            List<List<RowData>> shardColumns = new ArrayList<>();
+            for (int index : entry.getValue()) {
+                shardColumns.add(columns.get(index));
+            }
+            InsertResult result = entry.getKey().executeInsert(new InsertColumnsCommand(insert.getTableName(), shardColumns));
+
+            if(affected >= 0) affected = result.getAffectedColumns() < 0 ? Statement.SUCCESS_NO_INFO : affected + result.getAffectedColumns();
+            List<Long> shardKeys = result.getGeneratedKeys();
+            if(shardKeys.size() != shardColumns.size()){
+                allKeys = false;
+                continue;
+            }
+            for (int i = 0; i < shardKeys.size(); i++) {
+                keys[entry.getValue().get(i)] = shardKeys.get(i);
+            }
+        }
+        return new InsertResult(affected, allKeys ? Arrays.asList(keys) : new ArrayList<>());
+    }
+
+    @Override
+    public ResultSet executeQuery(QueryCommand command) throws SQLibException {
+        if(command instanceof GetEntryCommand){
+            GetEntryCommand get = (GetEntryCommand) command;
+            if(get.getAtRow().getRowName().equals(getShardKeyRow(get.getTableName()))){
+                return getShard(get.getAtRow().getValue()).executeQuery(command);
+            }
+        }
+
+        if(command instanceof GetEntriesCommand){
+            GetEntriesCommand get = (GetEntriesCommand) command;
+            if(get.getKeyRow().equals(getShardKeyRow(get.getTableName()))) return getEntries(get);
+        }
+
+        if(command instanceof SelectCommand){
+            SelectCommand select = (SelectCommand) command;
+            List<Object> keys = findKeys(select.getCondition(), getShardKeyRow(select.getTableName()));
+            if(keys != null && keys.size() == 1) return getShard(keys.get(0)).executeQuery(command);
+            return toResultSet(select(select));
+        }
+
+        return toResultSet(merge(queryAllShards(command)));
+    }
+
+    // every shard only gets the keys that belong to it
+    private ResultSet getEntries(GetEntriesCommand command) throws SQLibException {
+        Map<IConnection, List<Object>> keysPerShard = new IdentityHashMap<>();
+        for (Object key : command.getKeys()) {
+            keysPerShard.computeIfAbsent(getShard(key), shard -> new ArrayList<>()).add(key);
+        }
+
+        List<CachedResult> results = new ArrayList<>();
+        for (Map.Entry<IConnection, List<Object>> entry : keysPerShard.entrySet()) {
+            GetEntriesCommand shardCommand = new GetEntriesCommand(command.getTableName(), command.getRowName(), command.getKeyRow(), entry.getValue());
+            results.add(read(entry.getKey(), shardCommand));
+        }
+        if(results.isEmpty()) results.add(read(shards.values().iterator().next(), command));
+        return toResultSet(merge(results));
+    }
+
+    private CachedResult select(SelectCommand command) throws SQLibException {
+        if(command.isExists()){
+            List<CachedResult> results = queryAllShards(command);
+            boolean exists = false;
+            for (CachedResult result : results) {
+                Object value = result.getColumns().isEmpty() ? null : result.getColumns().get(0)[0];
+                exists |= value instanceof Number ? ((Number) value).intValue() != 0 : Boolean.TRUE.equals(value);
+            }
+            return single(results.get(0), exists ? 1L : 0L);
+        }
+
+        if(command.getAggregate() != null) return aggregate(command, queryAllShards(command));
+
+        // every shard has to return the skipped columns as well, they are skipped after merging
+        QueryCommand shardCommand = command;
+        if(command.getOffset() > 0 && command.getLimit() >= 0){
+            SelectCommand withoutOffset = new SelectCommand(command.getTableName()).rows(command.getRowNames().toArray(new String[0]))
+                    .where(command.getCondition()).limit(command.getOffset() + command.getLimit());
+            for (String orderBy : command.getOrderBy()) {
+                int space = orderBy.lastIndexOf(' ');
+                withoutOffset.orderBy(orderBy.substring(0, space), orderBy.endsWith(" ASC"));
+            }
+            shardCommand = withoutOffset;
+        }
+
+        CachedResult merged = merge(queryAllShards(shardCommand));
+        List<Object[]> columns = merged.getColumns();
+        if(!command.getOrderBy().isEmpty()) columns.sort(comparator(merged.getRowNames(), command.getOrderBy()));
+
+        if(command.getLimit() >= 0){
+            int from = (int) Math.min(columns.size(), Math.max(0, command.getOffset()));
+            int to = (int) Math.min(columns.size(), from + command.getLimit());
+            columns = new ArrayList<>(columns.subList(from, to));
+        }
+        return new CachedResult(merged.getRowNames(), merged.getSqlTypes(), columns);
+    }
+
+    private CachedResult aggregate(SelectCommand command, List<CachedResult> results) throws SQLibException {
+        Object merged = null;
+        for (CachedResult result : results) {
+            Object value = result.getColumns().isEmpty() ? null : result.getColumns().get(0)[0];
+            if(value == null) continue;
+            if(merged == null){
+                merged = value;
+                continue;
+            }
+            switch (command.getAggregate()) {
+                case COUNT:
+                case SUM:
+                    merged = add((Number) merged, (Number) value);
+                    break;
+                case MIN:
+                    if(compare(value, merged) < 0) merged = value;
+                    break;
+                case MAX:
+                    if(compare(value, merged) > 0) merged = value;
+                    break;
+                default:
+                    throw new SQLibException(command.getAggregate() + " can't be merged across shards, select SUM and COUNT instead");
+            }
+        }
+        if(command.getAggregate() == SelectCommand.Aggregate.COUNT && merged == null) merged = 0L;
+        return single(results.get(0), merged);
+    }
+
+    private List<CachedResult> queryAllShards(QueryCommand command) throws SQLibException {
+        return onAllShards(shard -> read(shard, command));
+    }
+
+    private static CachedResult read(IConnection shard, QueryCommand command) throws SQLibException {
+        try (ResultSet set = shard.executeQuery(command)){
+            return CachedResult.of(set);
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to read the result of a shard", e);
+        }
+    }
+
+    private static CachedResult merge(List<CachedResult> results) {
+        List<Object[]> columns = new ArrayList<>();
+        for (CachedResult result : results) {
+            columns.addAll(result.getColumns());
+        }
+        CachedResult first = results.get(0);
+        return new CachedResult(first.getRowNames(), first.getSqlTypes(), columns);
+    }
+
+    private static CachedResult single(CachedResult shape, Object value) {
+        List<Object[]> columns = new ArrayList<>();
+        columns.add(new Object[]{value});
+        int[] sqlTypes = {value == null ? shape.getSqlTypes()[0] : CachedResult.sqlTypeOf(value)};
+        return new CachedResult(shape.getRowNames(), sqlTypes, columns);
+    }
+
+    private static ResultSet toResultSet(CachedResult result) throws SQLibException {
+        try {
+            return result.toResultSet();
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to create the merged ResultSet of the shards", e);
+        }
+    }
+
+    // run the task on every shard at the same time and wait for all of them
+    private <R> List<R> onAllShards(ShardTask<R> task) throws SQLibException {
+        List<Future<R>> futures = new ArrayList<>();
+        for (IConnection shard : shards.values()) {
+            futures.add(executor.submit(() -> task.run(shard)));
+        }
+
+        List<R> results = new ArrayList<>();
+        SQLibException failure = null;
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLibException("Interrupted while waiting for the shards", e);
+            } catch (ExecutionException e) {
+                if(failure != null) continue;
+                if(e.getCause() instanceof SQLibException) failure = (SQLibException) e.getCause();
+                else failure = new SQLibException("A shard failed", e);
+            }
+        }
+        if(failure != null) throw failure;
+        return results;
+    }
+
+    // the values of the shard key row in an "=" or "IN" condition, also inside AND groups, null if there is none
+    private static List<Object> findKeys(Condition condition, String shardKeyRow) {
+        if(condition == null) return null;
+        switch (condition.getOperator()) {
+            case EQUAL:
+            case IN:
+                return shardKeyRow.equals(condition.getRowName()) ? condition.getValues() : null;
+            case AND:
+                for (Condition part : condition.getConditions()) {
+                    List<Object> keys = findKeys(part, shardKeyRow);
+                    if(keys != null) return keys;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static RowData findRow(List<RowData> rowData, String rowName) {
+        for (RowData row : rowData) {
+            if(row.getRowName().equals(rowName)) return row;
+        }
+        return null;
+    }
+
+    private static void checkShardKeyUnchanged(List<RowData> updatingRows, String shardKeyRow) throws SQLibException {
+        if(findRow(updatingRows, shardKeyRow) != null) throw new SQLibException("The shard key row " + shardKeyRow + " can't be updated");
+    }
+
+    private static Comparator<Object[]> comparator(List<String> rowNames, List<String> orderBy) throws SQLibException {
+        Comparator<Object[]> comparator = null;
+        for (String part : orderBy) {
+            int space = part.lastIndexOf(' ');
+            String rowName = part.substring(0, space);
+            int index = -1;
+            for (int i = 0; i < rowNames.size(); i++) {
+                if(rowNames.get(i).equalsIgnoreCase(rowName)) index = i;
+            }
+            if(index < 0) throw new SQLibException("The row " + rowName + " has to be selected to sort the columns of all shards");
+
+            int column = index;
+            Comparator<Object[]> next = (a, b) -> compare(a[column], b[column]);
+            if(part.endsWith(" DESC")) next = next.reversed();
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    // null first like MySQL, numbers of any type by value, byte arrays unsigned
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if(a == null || b == null) return a == null ? (b == null ? 0 : -1) : 1;
+        if(a instanceof Number && b instanceof Number) return toBigDecimal((Number) a).compareTo(toBigDecimal((Number) b));
+        if(a instanceof byte[] && b instanceof byte[]){
+            byte[] x = (byte[]) a, y = (byte[]) b;
+            for (int i = 0; i < Math.min(x.length, y.length); i++) {
+                int c = Integer.compare(x[i] & 0xFF, y[i] & 0xFF);
+                if(c != 0) return c;
+            }
+            return Integer.compare(x.length, y.length);
+        }
+        if(a instanceof Comparable && a.getClass().isInstance(b)) return ((Comparable) a).compareTo(b);
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    private static Number add(Number a, Number b) {
+        if(a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) return a.doubleValue() + b.doubleValue();
+        if(a instanceof BigDecimal || b instanceof BigDecimal) return toBigDecimal(a).add(toBigDecimal(b));
+        return a.longValue() + b.longValue();
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if(number instanceof BigDecimal) return (BigDecimal) number;
+        if(number instanceof Double || number instanceof Float) return BigDecimal.valueOf(number.doubleValue());
+        return new BigDecimal(number.toString());
+    }
+
+    /**
+     * Not supported, as there is a JDBC connection per shard
+     * @throws UnsupportedOperationException Always
+     */
+    @Override
+    public Connection getConnection() {
+        throw new UnsupportedOperationException("A sharded connection has a connection per shard, use getShards()");
+    }
+
+    @Override
+    public void open() throws SQLibException {
+        for (IConnection shard : shards.values()) {
+            if(!shard.isOpen()) shard.open();
+        }
+    }
+
+    /**
+     * @return true if the connections of all shards are open
+     */
+    @Override
+    public boolean isOpen() {
+        for (IConnection shard : shards.values()) {
+            if(!shard.isOpen()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the first shard is auto committing, see {@link #setAutoCommit(boolean)}
+     */
+    @Override
+    public boolean isAutoCommitting() throws SQLibException {
+        return shards.values().iterator().next().isAutoCommitting();
+    }
+
+    @Override
+    public void setAutoCommit(boolean bool) throws SQLibException {
+        for (IConnection shard : shards.values()) {
+            shard.setAutoCommit(bool);
+        }
+    }
+
+    /**
+     * Commit every shard one after another. Not atomic: if a shard fails, the other shards are committed anyway.
+     * @throws SQLibException Thrown with the first failure after all shards were tried
+     */
+    @Override
+    public void commit() throws SQLibException {
+        SQLibException failure = null;
+        for (IConnection shard : shards.values()) {
+            try {
+                shard.commit();
+            } catch (SQLibException e) {
+                if(failure == null) failure = e;
+            }
+        }
+        if(failure != null) throw failure;
+    }
+
+    /**
+     * Rollback every shard one after another
+     * @throws SQLibException Thrown with the first failure after all shards were tried
+     */
+    @Override
+    public void rollback() throws SQLibException {
+        SQLibException failure = null;
+        for (IConnection shard : shards.values()) {
+            try {
+                shard.rollback();
+            } catch (SQLibException e) {
+                if(failure == null) failure = e;
+            }
+        }
+        if(failure != null) throw failure;
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdown();
+        Exception failure = null;
+        for (IConnection shard : shards.values()) {
+            try {
+                shard.close();
+            } catch (Exception e) {
+                if(failure == null) failure = e;
+            }
+        }
+        if(failure != null) throw failure;
+    }
+
+    // a command executed on a single shard
+    @FunctionalInterface
+    private interface ShardTask<R> {
+
+        R run(IConnection shard) throws SQLibException;
+
+    }
+
+}
@@ -0,0 +1,332 @@
+package mxrlin.sqlib.snapshot;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.set.InsertColumnsCommand;
+import mxrlin.sqlib.compression.ValueCompression;
+import mxrlin.sqlib.concurrent.AdmissionController;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.DataType;
+import mxrlin.sqlib.misc.RowData;
+import mxrlin.sqlib.misc.Table;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Part of the SQLib API
+ *
+ * Reads a snapshot written by {@link TableSnapshot#export(IConnection, Table, Path, boolean)}.
+ * Columns can be read all in order ({@link #forEach(ColumnConsumer)}, {@link #importInto(IConnection, String, int)})
+ * or one by one in any order ({@link #getColumn(long)}), which uses the block index and a memory-mapped file.
+ *
+ * Integer rows are read as Integer if they fit, else as Long. Text rows are read as String and blob rows as byte[].
+ *
+ * @see TableSnapshot
+ */
+public class SnapshotReader implements AutoCloseable {
+
+    // the snapshot file
+    private final Path path;
+    private final FileChannel channel;
+
+    // the table the snapshot was taken of
+    private final Table table;
+    private final boolean compressed;
+
+    // the time the export started
+    private final long exportedMillis;
+
+    // per block: offset, first column, column count
+    private final long[] blockOffsets;
+    private final long[] blockFirstColumns;
+    private final int[] blockColumnCounts;
+    private final long columnCount;
+
+    // the whole file mapped into memory for random access, null until needed or if the file is too large
+    private MappedByteBuffer mapped;
+
+    // the last block read for random access
+    private int cachedBlock = -1;
+    private List<List<RowData>> cachedColumns;
+
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * Open the snapshot {@param path}
+     * @param path The snapshot file
+     * @throws SQLibException Thrown when the file couldn't be read or isn't a snapshot
+     */
+    public SnapshotReader(Path path) throws SQLibException {
+        this.path = path;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+            ByteBuffer trailer = readFully(channel.size() - TableSnapshot.TRAILER_SIZE, TableSnapshot.TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            if(trailer.getInt() != TableSnapshot.MAGIC) throw new SQLibException(path + " isn't a complete SQLib snapshot");
+            if(indexOffset < 0 || indexOffset > channel.size() - TableSnapshot.TRAILER_SIZE) throw new IOException("Index offset " + indexOffset + " outside of the file");
+
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(readFully(0, (int) Math.min(indexOffset, 1 << 20)).array()));
+            if(header.readInt() != TableSnapshot.MAGIC) throw new SQLibException(path + " isn't a SQLib snapshot");
+            byte version = header.readByte();
+            if(version != TableSnapshot.VERSION) throw new SQLibException("Unsupported snapshot version " + version);
+            this.compressed = (header.readByte() & TableSnapshot.FLAG_COMPRESSED) != 0;
+            this.exportedMillis = header.readLong();
+
+            String tableName = header.readUTF();
+            int rowCount = ValueIO.readLength(header, 1);
+            List<Table.TableRow> rows = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                String rowName = header.readUTF();
+                DataType dataType = DataType.valueOf(header.readUTF());
+                int maxLength = header.readInt();
+                boolean canContainNull = header.readBoolean();
+                boolean autoIncrement = header.readBoolean();
+                rows.add(new Table.TableRow(rowName, maxLength, dataType, canContainNull, autoIncrement));
+            }
+            this.table = new Table(tableName, rows);
+
+            ByteBuffer index = readFully(indexOffset, (int) (channel.size() - TableSnapshot.TRAILER_SIZE - indexOffset));
+            int blocks = index.getInt();
+            // every block takes 20 bytes of the index
+            if(blocks < 0 || blocks > index.remaining() / 20) throw new IOException("Invalid block count " + blocks);
+            blockOffsets = new long[blocks];
+            blockFirstColumns = new long[blocks];
+            blockColumnCounts = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                blockOffsets[i] = index.getLong();
+                blockFirstColumns[i] = index.getLong();
+                blockColumnCounts[i] = index.getInt();
+            }
+            columnCount = index.getLong();
+            if(columnCount < 0) throw new IOException("Invalid column count " + columnCount);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SQLibException("Failed to read the snapshot " + path, e);
+        }
+    }
+
+    /**
+     * @return The table the snapshot was taken of, with its rows and data types
+     */
+    public Table getTable() {
+        return table;
+    }
+
+    /**
+     * @return The time the export of the snapshot started, columns can't be older
+     */
+    public long getExportedMillis() {
+        return exportedMillis;
+    }
+
+    /**
+     * @return The amount of columns in the snapshot
+     */
+    public long getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Read all columns in order
+     * @param consumer Called for every column
+     * @throws SQLibException Thrown when the file couldn't be read or the consumer failed
+     */
+    public void forEach(ColumnConsumer consumer) throws SQLibException {
+        for (int block = 0; block < blockOffsets.length; block++) {
+            for (List<RowData> column : readBlock(block, false)) {
+                consumer.accept(column);
+            }
+        }
+    }
+
+    /**
+     * Read all columns into memory
+     * @return All columns in order
+     * @throws SQLibException Thrown when the file couldn't be read
+     */
+    public List<List<RowData>> readAll() throws SQLibException {
+        List<List<RowData>> columns = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, columnCount));
+        forEach(columns::add);
+        return columns;
+    }
+
+    /**
+     * Read the column at {@param index} through the memory-mapped file
+     * @param index The index of the column, starting at 0
+     * @return The rows of the column and their values
+     * @throws SQLibException Thrown when the index is out of range or the file couldn't be read
+     */
+    public synchronized List<RowData> getColumn(long index) throws SQLibException {
+        if(index < 0 || index >= columnCount) throw new SQLibException("Column " + index + " is out of range (0 - " + (columnCount - 1) + ")");
+
+        int low = 0, high = blockFirstColumns.length - 1;
+        while (low < high){
+            int middle = (low + high + 1) >>> 1;
+            if(blockFirstColumns[middle] <= index) low = middle;
+            else high = middle - 1;
+        }
+
+        if(cachedBlock != low){
+            cachedColumns = readBlock(low, true);
+            cachedBlock = low;
+        }
+        return cachedColumns.get((int) (index - blockFirstColumns[low]));
+    }
+
+    /**
+     * Insert all columns of the snapshot into the table {@param tableName} with {@link AdmissionController.Priority#BACKGROUND}
+     * @param connection The connection the columns are inserted with
+     * @param tableName The name of the table, for example {@link #getTable()}.getTableName()
+     * @param columnsPerStatement Amount of columns inserted with one statement
+     * @return The amount of inserted columns
+     * @throws SQLibException Thrown when the file couldn't be read or the columns couldn't be inserted
+     */
+    public long importInto(IConnection connection, String tableName, int columnsPerStatement) throws SQLibException {
+        AdmissionController.Priority previous = AdmissionController.setPriority(AdmissionController.Priority.BACKGROUND);
+        try {
+            return insertColumns(connection, tableName, columnsPerStatement);
+        } finally {
+            AdmissionController.setPriority(previous);
+        }
+    }
+
+    private long insertColumns(IConnection connection, String tableName, int columnsPerStatement) throws SQLibException {
+        List<List<RowData>> batch = new ArrayList<>(columnsPerStatement);
+        long[] inserted = {0};
+        forEach(column -> {
+            batch.add(column);
+            if(batch.size() >= columnsPerStatement){
+                connection.executeUpdate(new InsertColumnsCommand(tableName, new ArrayList<>(batch)));
+                inserted[0] += batch.size();
+                batch.clear();
+            }
+        });
+        if(!batch.isEmpty()){
+            connection.executeUpdate(new InsertColumnsCommand(tableName, batch));
+            inserted[0] += batch.size();
+        }
+        return inserted[0];
+    }
+
+    @Override
+    public void close() throws SQLibException {
+        inflater.end();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to close the snapshot " + path, e);
+        }
+    }
+
+    private synchronized List<List<RowData>> readBlock(int block, boolean randomAccess) throws SQLibException {
+        try {
+            ByteBuffer header = read(blockOffsets[block], 12, randomAccess);
+            int rawLength = header.getInt();
+            int storedLength = header.getInt();
+            int columns = header.getInt();
+            if(storedLength < 0 || blockOffsets[block] + 12 + storedLength > channel.size()) throw new IOException("Invalid stored length " + storedLength);
+            if(rawLength < 0 || (compressed ? rawLength > storedLength * (long) ValueCompression.MAX_DEFLATE_RATIO : rawLength != storedLength))
+                throw new IOException("Invalid raw length " + rawLength);
+            if(columns != blockColumnCounts[block]) throw new IOException("Expected " + blockColumnCounts[block] + " columns but the block has " + columns);
+
+            byte[] stored = new byte[storedLength];
+            read(blockOffsets[block] + 12, storedLength, randomAccess).get(stored);
+
+            byte[] raw = stored;
+            if(compressed){
+                raw = new byte[rawLength];
+                inflater.reset();
+                inflater.setInput(stored);
+                int length = 0;
+                while (length < rawLength){
+                    int inflated = inflater.inflate(raw, length, rawLength - length);
+                    if(inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                    length += inflated;
+                }
+                if(length != rawLength) throw new SQLibException("Corrupted block " + block + " of the snapshot " + path + ", expected " + rawLength + " bytes but got " + length);
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+            List<Table.TableRow> rows = table.getRows();
+            byte[] nulls = new byte[(rows.size() + 7) / 8];
+            List<List<RowData>> result = new ArrayList<>(columns);
+
+            for (int c = 0; c < columns; c++) {
+                in.readFully(nulls);
+                List<RowData> column = new ArrayList<>(rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    Table.TableRow row = rows.get(i);
+                    Object value = null;
+                    if((nulls[i / 8] & (1 << (i % 8))) == 0) value = readValue(in, row.getDataType());
+                    column.add(new RowData(row.getRowName(), value));
+                }
+                result.add(column);
+            }
+            return result;
+        } catch (IOException | DataFormatException e) {
+            throw new SQLibException("Failed to read block " + block + " of the snapshot " + path, e);
+        }
+    }
+
+    private static Object readValue(DataInputStream in, DataType type) throws IOException {
+        if(TableSnapshot.isInteger(type)){
+            long value = ValueIO.readVarLong(in);
+            if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+            return value;
+        }
+        if(type == DataType.FLOAT) return in.readFloat();
+        if(type == DataType.DOUBLE) return in.readDouble();
+
+        byte[] bytes = new byte[ValueIO.readLength(in, 1)];
+        in.readFully(bytes);
+        return TableSnapshot.isText(type) ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+    }
+
+    private ByteBuffer read(long position, int length, boolean randomAccess) throws IOException {
+        if(randomAccess && mapped == null && channel.size() <= Integer.MAX_VALUE){
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(randomAccess && mapped != null){
+            ByteBuffer slice = mapped.duplicate();
+            slice.position((int) position).limit((int) position + length);
+            return slice.slice();
+        }
+        return readFully(position, length);
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of " + path);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Called for every column of a snapshot
+     */
+    @FunctionalInterface
+    public interface ColumnConsumer {
+
+        /**
+         * @param column The rows of the column and their values
+         * @throws SQLibException Thrown when the column couldn't be processed
+         */
+        void accept(List<RowData> column) throws SQLibException;
+
+    }
+
+}
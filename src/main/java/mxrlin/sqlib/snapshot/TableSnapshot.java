@@ -0,0 +1,269 @@
+package mxrlin.sqlib.snapshot;
+
+import mxrlin.sqlib.IConnection;
+import mxrlin.sqlib.command.get.SelectCommand;
+import mxrlin.sqlib.compression.ValueCompression;
+import mxrlin.sqlib.concurrent.AdmissionController;
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.DataType;
+import mxrlin.sqlib.misc.Table;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Part of the SQLib API
+ *
+ * Writes all columns of a table into a compact binary file, described by the {@link Table} and {@link DataType}s of the table.
+ * The file is written through a {@link FileChannel} in blocks of about {@link #BLOCK_SIZE} bytes, which are optionally
+ * compressed. An index of all blocks at the end of the file allows {@link SnapshotReader} to read single columns.
+ *
+ * File layout:     [magic int][version byte][flags byte][exported millis long][table name]
+ *                  [rows: name, data type, max length, nullable, auto increment]
+ *                  [block: raw length int, stored length int, column count int, data] ...
+ *                  [index: block count int, (offset long, first column long, column count int) ...][column count long]
+ *                  [index offset long][magic int]
+ *
+ * A column is a null bitmap followed by its non-null values: integers as zigzag variable length longs, FLOAT / DOUBLE
+ * as 4 / 8 bytes and texts / blobs as length prefixed bytes.
+ *
+ * @see SnapshotReader
+ */
+public final class TableSnapshot {
+
+    static final int MAGIC = 0x53514C53; // SQLS
+    static final byte VERSION = 2;
+    static final byte FLAG_COMPRESSED = 1;
+    static final int TRAILER_SIZE = 12;
+
+    /**
+     * Raw size a block is filled up to before it is written
+     */
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private TableSnapshot() {}
+
+    /**
+     * Write all columns of {@param table} into the file {@param path}. An existing file is replaced.
+     * The columns are read with {@link AdmissionController.Priority#BACKGROUND} as a streaming query, so the table is never
+     * held in memory. The connection can't execute other commands until the export is finished.
+     * @param connection The connection the columns are read with
+     * @param table The table with its rows and their data types
+     * @param path The snapshot file
+     * @param compress true = compress every block
+     * @return The amount of written columns
+     * @throws SQLibException Thrown when the columns couldn't be read or the file couldn't be written
+     */
+    public static long export(IConnection connection, Table table, Path path, boolean compress) throws SQLibException {
+        List<Table.TableRow> rows = table.getRows();
+        String[] rowNames = new String[rows.size()];
+        for (int i = 0; i < rowNames.length; i++) {
+            rowNames[i] = rows.get(i).getRowName();
+        }
+
+        // columns changed while they are read may or may not be in the snapshot, so it is as old as its start
+        long exportedMillis = System.currentTimeMillis();
+        AdmissionController.Priority previous = AdmissionController.setPriority(AdmissionController.Priority.BACKGROUND);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ResultSet set = connection.executeStreamingQuery(new SelectCommand(table.getTableName()).rows(rowNames))){
+
+            BlockWriter writer = new BlockWriter(channel, compress, decompressionOf(connection, rows));
+            writer.writeHeader(table, exportedMillis);
+
+            while (set.next()){
+                writer.writeColumn(set, rows);
+            }
+
+            return writer.finish();
+        } catch (SQLException e) {
+            throw new SQLibException("Failed to read the columns of table " + table.getTableName(), e);
+        } catch (IOException e) {
+            throw new SQLibException("Failed to write the snapshot " + path, e);
+        } finally {
+            AdmissionController.setPriority(previous);
+        }
+    }
+
+    // compressed rows are stored decompressed, so the snapshot holds the original values
+    private static ValueCompression decompressionOf(IConnection connection, List<Table.TableRow> rows) {
+        for (Table.TableRow row : rows) {
+            if(!row.isCompressed()) continue;
+            ValueCompression compression = connection.getValueCompression();
+            // decompressing doesn't depend on the registered rows
+            return compression != null ? compression : new ValueCompression(1);
+        }
+        return null;
+    }
+
+    static boolean isInteger(DataType type) {
+        return type == DataType.TINYINT || type == DataType.SMALLINT || type == DataType.MEDIUMINT || type == DataType.INT;
+    }
+
+    static boolean isText(DataType type) {
+        return type == DataType.CHAR || type == DataType.VARCHAR || type == DataType.TINYTEXT || type == DataType.TEXT
+                || type == DataType.MEDIUMTEXT || type == DataType.LONGTEXT;
+    }
+
+    // fills blocks with columns and writes them through the channel
+    private static final class BlockWriter {
+
+        private final FileChannel channel;
+        private final boolean compress;
+        private final Deflater deflater;
+
+        // decompresses the values of compressed rows, null if the table has none
+        private final ValueCompression decompression;
+
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + BLOCK_SIZE / 4);
+        private final DataOutputStream out = new DataOutputStream(block);
+        private byte[] compressed = new byte[BLOCK_SIZE];
+
+        private final List<long[]> index = new ArrayList<>();
+        private int blockColumns;
+        private long columns;
+
+        BlockWriter(FileChannel channel, boolean compress, ValueCompression decompression) {
+            this.channel = channel;
+            this.compress = compress;
+            this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            this.decompression = decompression;
+        }
+
+        void writeHeader(Table table, long exportedMillis) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(bytes);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte(compress ? FLAG_COMPRESSED : 0);
+            header.writeLong(exportedMillis);
+            header.writeUTF(table.getTableName());
+            ValueIO.writeVarInt(header, table.getRows().size());
+            for (Table.TableRow row : table.getRows()) {
+                header.writeUTF(row.getRowName());
+                header.writeUTF(row.getDataType().name());
+                header.writeInt(row.getMaxLength());
+                header.writeBoolean(row.isAllowedToContainNull());
+                header.writeBoolean(row.isAutoIncrement());
+            }
+            header.flush();
+            write(ByteBuffer.wrap(bytes.toByteArray()));
+        }
+
+        void writeColumn(ResultSet set, List<Table.TableRow> rows) throws SQLException, IOException, SQLibException {
+            Object[] values = new Object[rows.size()];
+            byte[] nulls = new byte[(rows.size() + 7) / 8];
+
+            for (int i = 0; i < rows.size(); i++) {
+                DataType type = rows.get(i).getDataType();
+                Object value;
+                // compressed TEXT rows are stored as BLOBs, getString would return the compressed bytes as text
+                if(rows.get(i).isCompressed()) value = decompress(set.getBytes(i + 1), type);
+                else if(isInteger(type)) value = set.getLong(i + 1);
+                else if(type == DataType.FLOAT) value = set.getFloat(i + 1);
+                else if(type == DataType.DOUBLE) value = set.getDouble(i + 1);
+                else if(isText(type)) value = set.getString(i + 1);
+                else value = set.getBytes(i + 1);
+
+                // wasNull is only needed for primitive getters
+                if(value == null || (value instanceof Number && set.wasNull())) nulls[i / 8] |= (byte) (1 << (i % 8));
+                else values[i] = value;
+            }
+
+            out.write(nulls);
+            for (int i = 0; i < rows.size(); i++) {
+                Object value = values[i];
+                if(value == null) continue;
+                DataType type = rows.get(i).getDataType();
+                if(isInteger(type)) ValueIO.writeVarLong(out, (long) value);
+                else if(type == DataType.FLOAT) out.writeFloat((float) value);
+                else if(type == DataType.DOUBLE) out.writeDouble((double) value);
+                else{
+                    byte[] bytes = isText(type) ? ((String) value).getBytes(StandardCharsets.UTF_8) : (byte[]) value;
+                    ValueIO.writeVarInt(out, bytes.length);
+                    out.write(bytes);
+                }
+            }
+
+            blockColumns++;
+            if(block.size() >= BLOCK_SIZE) flushBlock();
+        }
+
+        private Object decompress(byte[] stored, DataType type) throws SQLibException {
+            byte[] bytes = decompression.decompress(stored);
+            if(bytes == null) return null;
+            return isText(type) ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+        }
+
+        long finish() throws IOException {
+            flushBlock();
+
+            long indexOffset = channel.position();
+            ByteBuffer footer = ByteBuffer.allocate(4 + index.size() * 20 + 8 + TRAILER_SIZE);
+            footer.putInt(index.size());
+            for (long[] entry : index) {
+                footer.putLong(entry[0]).putLong(entry[1]).putInt((int) entry[2]);
+            }
+            footer.putLong(columns);
+            footer.putLong(indexOffset).putInt(MAGIC);
+            footer.flip();
+            write(footer);
+
+            if(deflater != null) deflater.end();
+            return columns;
+        }
+
+        private void flushBlock() throws IOException {
+            if(blockColumns == 0) return;
+            out.flush();
+            byte[] raw = block.toByteArray();
+
+            byte[] data = raw;
+            int length = raw.length;
+            if(compress){
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                if(compressed.length < raw.length + 64) compressed = new byte[raw.length + 64];
+                length = 0;
+                while (!deflater.finished()){
+                    if(length == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                data = compressed;
+            }
+
+            index.add(new long[]{channel.position(), columns, blockColumns});
+
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(raw.length).putInt(length).putInt(blockColumns);
+            header.flip();
+            write(header);
+            write(ByteBuffer.wrap(data, 0, length));
+
+            columns += blockColumns;
+            blockColumns = 0;
+            block.reset();
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package mxrlin.sqlib.trace;
+
+import mxrlin.sqlib.jfr.AcquireEvent;
+import mxrlin.sqlib.jfr.JfrEvents;
+import mxrlin.sqlib.jfr.StatementEvent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Part of the SQLib API
+ *
+ * Reports the spans of a single command to a {@link Tracer} and to Flight Recorder. Created by a connection for every
+ * command while a tracer is set or a recording enabled the events of commands, so the type and table of the command
+ * are known in every phase.
+ *
+ * @see mxrlin.sqlib.SQLibConnection#setTracer(Tracer)
+ * @see JfrEvents
+ */
+public final class CommandTrace {
+
+    private static final Logger LOGGER = Logger.getLogger(CommandTrace.class.getName());
+
+    // may be null if only Flight Recorder events are emitted
+    private final Tracer tracer;
+    private final Class<?> commandType;
+    private final String tableName;
+
+    // the Flight Recorder events of the running phases, null if they are disabled
+    private AcquireEvent acquireEvent;
+    private StatementEvent statementEvent;
+
+    private CommandTrace(Tracer tracer, Class<?> commandType, String tableName) {
+        this.tracer = tracer;
+        this.commandType = commandType;
+        this.tableName = tableName;
+    }
+
+    /**
+     * @param tracer The tracer, may be null
+     * @param commandType The class of the executed command
+     * @param tableName The table of the command, may be null
+     * @return A trace of the command, null if {@param tracer} is null and no Flight Recorder event is enabled
+     */
+    public static CommandTrace of(Tracer tracer, Class<?> commandType, String tableName) {
+        if(tracer == null && !JfrEvents.isCommandEnabled()) return null;
+        return new CommandTrace(tracer, commandType, tableName);
+    }
+
+    /**
+     * Start a phase, which is ended by {@link #span(Span.Phase, String, long, long, boolean)}
+     * @param phase The phase
+     * @return Start of the phase in {@link System#nanoTime()}
+     */
+    public long begin(Span.Phase phase) {
+        if(phase == Span.Phase.ACQUIRE) acquireEvent = JfrEvents.beginAcquire();
+        else if(phase == Span.Phase.EXECUTE) statementEvent = JfrEvents.beginStatement();
+        return System.nanoTime();
+    }
+
+    /**
+     * Report a finished phase, exceptions of the tracer are logged and never fail the command
+     * @param phase The phase
+     * @param command The command of the statement
+     * @param startNanos Start of the phase, as returned by {@link #begin(Span.Phase)}
+     * @param rows Affected or fetched columns, -1 if unknown
+     * @param failed true if the phase threw an exception
+     */
+    public void span(Span.Phase phase, String command, long startNanos, long rows, boolean failed) {
+        if(phase == Span.Phase.ACQUIRE && acquireEvent != null){
+            acquireEvent.finish(commandType, tableName, failed);
+            acquireEvent = null;
+        }else if(phase == Span.Phase.EXECUTE && statementEvent != null){
+            statementEvent.finish(commandType, tableName, command, rows, failed);
+            statementEvent = null;
+        }
+        if(tracer == null) return;
+
+        Span span = new Span(phase, commandType, tableName, command, startNanos, System.nanoTime() - startNanos, rows, failed);
+        try {
+            tracer.onSpan(span);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Tracer " + tracer + " failed to handle the span " + span, e);
+        }
+    }
+
+    /**
+     * Measure the time spent in {@link ResultSet#next()} of {@param set}, reported as {@link Span.Phase#FETCH} with the
+     * amount of read columns when it's closed. Has to be called before the execute phase is ended, a running statement
+     * event then ends when the result is closed.
+     * @param set The result of the statement
+     * @param command The command of the statement
+     * @return A ResultSet that reads from {@param set}, {@param set} itself if there is nothing to report
+     */
+    public ResultSet fetch(ResultSet set, String command) {
+        StatementEvent event = statementEvent;
+        statementEvent = null;
+        if(tracer == null && event == null) return set;
+        return (ResultSet) Proxy.newProxyInstance(CommandTrace.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new FetchHandler(set, command, event));
+    }
+
+    /**
+     * @return The class of the executed command
+     */
+    public Class<?> getCommandType() {
+        return commandType;
+    }
+
+    /**
+     * @return The table of the command, may be null
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    // sums the time of next() and reports it once on close
+    private final class FetchHandler implements InvocationHandler {
+
+        private final ResultSet set;
+        private final String command;
+
+        // the statement event of the query, ended when the result is closed
+        private final StatementEvent statementEvent;
+
+        private long startNanos = -1;
+        private long fetchNanos;
+        private long rows;
+        private boolean failed;
+        private boolean reported;
+
+        FetchHandler(ResultSet set, String command, StatementEvent statementEvent) {
+            this.set = set;
+            this.command = command;
+            this.statementEvent = statementEvent;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(name.equals("next")){
+                long start = System.nanoTime();
+                if(startNanos == -1) startNanos = start;
+                try {
+                    boolean next = set.next();
+                    if(next) rows++;
+                    return next;
+                } catch (Exception e) {
+                    failed = true;
+                    throw e;
+                } finally {
+                    fetchNanos += System.nanoTime() - start;
+                }
+            }
+            if(name.equals("close") && !reported){
+                reported = true;
+                try {
+                    return invokeTarget(method, args);
+                } finally {
+                    report();
+                }
+            }
+            if(name.equals("equals")) return proxy == args[0];
+            if(name.equals("hashCode")) return System.identityHashCode(proxy);
+            return invokeTarget(method, args);
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(set, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // the span covers the time spent fetching, not the time the caller spent between two columns
+        private void report() {
+            if(statementEvent != null) statementEvent.finish(commandType, tableName, command, rows, failed);
+            if(tracer == null) return;
+
+            long start = startNanos == -1 ? System.nanoTime() : startNanos;
+            Span span = new Span(Span.Phase.FETCH, commandType, tableName, command, start, fetchNanos, rows, failed);
+            try {
+                tracer.onSpan(span);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Tracer " + tracer + " failed to handle the span " + span, e);
+            }
+        }
+
+    }
+
+}
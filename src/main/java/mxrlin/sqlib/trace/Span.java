@@ -0,0 +1,147 @@
+package mxrlin.sqlib.trace;
+
+/**
+ * Part of the SQLib API
+ *
+ * A timed phase of the execution of a command, reported to a {@link Tracer}.
+ *
+ * @see Tracer
+ * @see Phase
+ */
+public class Span {
+
+    private final Phase phase;
+
+    // the class of the executed command, for example GetEntryCommand
+    private final Class<?> commandType;
+
+    // the table of the command, may be null
+    private final String tableName;
+
+    // the command of the statement
+    private final String command;
+
+    private final long startNanos;
+    private final long durationNanos;
+
+    // affected or fetched columns, -1 if unknown
+    private final long rows;
+
+    private final boolean failed;
+
+    /**
+     * @param phase The phase
+     * @param commandType The class of the executed command
+     * @param tableName The table of the command
+     * @param command The command of the statement
+     * @param startNanos Start of the phase in {@link System#nanoTime()}
+     * @param durationNanos Duration of the phase
+     * @param rows Affected or fetched columns, -1 if unknown
+     * @param failed true if the phase threw an exception
+     */
+    public Span(Phase phase, Class<?> commandType, String tableName, String command, long startNanos, long durationNanos, long rows, boolean failed) {
+        this.phase = phase;
+        this.commandType = commandType;
+        this.tableName = tableName;
+        this.command = command;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+        this.rows = rows;
+        this.failed = failed;
+    }
+
+    /**
+     * @return The phase
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return The class of the executed command, for example {@link mxrlin.sqlib.command.get.GetEntryCommand}
+     */
+    public Class<?> getCommandType() {
+        return commandType;
+    }
+
+    /**
+     * @return The table of the command, null if it has none
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The command of the statement, for example "SELECT name FROM players WHERE uuid=?"
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return Start of the phase in {@link System#nanoTime()}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return Duration of the phase in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Columns affected by an {@link Phase#EXECUTE} of an update or read by a {@link Phase#FETCH}, -1 if unknown
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return true if the phase threw an exception
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return phase + " " + (commandType == null ? "?" : commandType.getSimpleName()) + (tableName == null ? "" : " " + tableName)
+                + " " + (durationNanos / 1000) + "us" + (rows < 0 ? "" : " rows=" + rows) + (failed ? " failed" : "");
+    }
+
+    /**
+     * The phases of the execution of a command, in the order they happen
+     */
+    public enum Phase {
+
+        /**
+         * Waiting for a permit of the {@link mxrlin.sqlib.concurrent.AdmissionController}
+         */
+        ACQUIRE,
+
+        /**
+         * Creating the PreparedStatement
+         */
+        PREPARE,
+
+        /**
+         * Setting the arguments of the statement
+         */
+        BIND,
+
+        /**
+         * Executing the statement on the server, until the first result arrived
+         */
+        EXECUTE,
+
+        /**
+         * Reading the columns of the result, the time spent in {@link java.sql.ResultSet#next()} until it was closed
+         */
+        FETCH
+
+    }
+
+}
@@ -0,0 +1,25 @@
+package mxrlin.sqlib.trace;
+
+/**
+ * Part of the SQLib API
+ *
+ * Receives a {@link Span} for every phase of every statement a connection executes: waiting for admission, preparing,
+ * binding, executing and fetching. That shows where the time of a slow command goes without attaching a profiler.
+ *
+ * 1. Implement this interface, for example to forward the spans to a metrics or tracing system.
+ * 2. Set it with {@link mxrlin.sqlib.SQLibConnection#setTracer(Tracer)}.
+ *
+ * Spans are reported on the thread that executed the phase, the FETCH span when the ResultSet is closed.
+ * Implementations should be fast and must be thread safe. Without a tracer no spans are created.
+ *
+ * @see Span
+ */
+@FunctionalInterface
+public interface Tracer {
+
+    /**
+     * @param span A finished phase of a statement
+     */
+    void onSpan(Span span);
+
+}
@@ -0,0 +1,188 @@
+package mxrlin.sqlib.workload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Part of the SQLib API
+ *
+ * The result of a {@link WorkloadReplayer}: throughput, failures and the latency percentiles of all statements and of
+ * every statement fingerprint.
+ *
+ * @see WorkloadReplayer#replay(java.nio.file.Path)
+ */
+public class ReplayReport {
+
+    // amount of executed statements, including failed ones
+    private final long operations;
+    private final long failures;
+
+    // time from the first to the last statement
+    private final long elapsedNanos;
+
+    // time every statement took
+    private final Latencies latencies;
+
+    // time every statement was started after it was scheduled, grows when the target can't keep up
+    private final Latencies lag;
+
+    // fingerprint -> time every statement with this fingerprint took, highest total time first
+    private final Map<String, Latencies> fingerprints;
+
+    ReplayReport(long operations, long failures, long elapsedNanos, Latencies latencies, Latencies lag, Map<String, Latencies> fingerprints) {
+        this.operations = operations;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        this.lag = lag;
+
+        List<Map.Entry<String, Latencies>> sorted = new ArrayList<>(fingerprints.entrySet());
+        sorted.sort(Comparator.comparingLong((Map.Entry<String, Latencies> entry) -> entry.getValue().getTotalNanos()).reversed());
+        Map<String, Latencies> ordered = new LinkedHashMap<>();
+        for (Map.Entry<String, Latencies> entry : sorted) {
+            ordered.put(entry.getKey(), entry.getValue());
+        }
+        this.fingerprints = Collections.unmodifiableMap(ordered);
+    }
+
+    /**
+     * @return Amount of executed statements, including failed ones
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return Amount of statements that threw an exception
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Time from the start of the replay to the end of the last statement, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return Executed statements per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : operations * 1_000_000_000d / elapsedNanos;
+    }
+
+    /**
+     * @return The time every statement took
+     */
+    public Latencies getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return The time between the moment a statement was scheduled and the moment it was started. A growing lag means
+     *         the target or the concurrency can't keep up with the speed of the replay.
+     */
+    public Latencies getLag() {
+        return lag;
+    }
+
+    /**
+     * @return Fingerprint -> time the statements with this fingerprint took, the highest total time first
+     */
+    public Map<String, Latencies> getFingerprints() {
+        return fingerprints;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT, "%d statements (%d failed) in %.1f s, %.1f statements/s%n",
+                operations, failures, elapsedNanos / 1_000_000_000d, getThroughput()));
+        builder.append("latency ").append(latencies).append(System.lineSeparator());
+        builder.append("lag     ").append(lag).append(System.lineSeparator());
+        for (Map.Entry<String, Latencies> entry : fingerprints.entrySet()) {
+            builder.append("  ").append(entry.getValue()).append("  ").append(entry.getKey()).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Percentiles of a set of durations
+     */
+    public static class Latencies {
+
+        // sorted durations in nanoseconds
+        private final long[] sorted;
+        private final long total;
+
+        Latencies(long[] nanos, int count) {
+            this.sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long value : sorted) {
+                sum += value;
+            }
+            this.total = sum;
+        }
+
+        /**
+         * @return The amount of durations
+         */
+        public int getCount() {
+            return sorted.length;
+        }
+
+        /**
+         * @param percentile The percentile between 0 and 100, for example 99.9
+         * @return The duration that {@param percentile} percent of the durations don't exceed, in nanoseconds
+         */
+        public long getPercentileNanos(double percentile) {
+            if(sorted.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        /**
+         * @return The longest duration in nanoseconds
+         */
+        public long getMaxNanos() {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        }
+
+        /**
+         * @return The average duration in nanoseconds
+         */
+        public long getMeanNanos() {
+            return sorted.length == 0 ? 0 : total / sorted.length;
+        }
+
+        /**
+         * @return The sum of all durations in nanoseconds
+         */
+        public long getTotalNanos() {
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                    sorted.length, millis(getMeanNanos()), millis(getPercentileNanos(50)), millis(getPercentileNanos(90)),
+                    millis(getPercentileNanos(99)), millis(getPercentileNanos(99.9)), millis(getMaxNanos()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+    }
+
+}
@@ -0,0 +1,218 @@
+package mxrlin.sqlib.workload;
+
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.CachedResult;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.StreamValue;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Part of the SQLib API
+ *
+ * Records every statement a connection executes to a compact trace file: the command, the shape of its arguments
+ * (SQL type and size), when it started and how long it took. A {@link WorkloadReplayer} executes the trace again
+ * against another database, so production load patterns can be reproduced while tuning.
+ *
+ * Every distinct command is written once and referenced by a number afterwards. Argument values aren't recorded
+ * unless {@link #captureValues(boolean)} is enabled, replays use placeholder values of the same type and size instead.
+ *
+ * 1. Create an instance with the trace file.
+ * 2. Set it with {@link mxrlin.sqlib.SQLibConnection#setWorkloadRecorder(WorkloadRecorder)}.
+ * 3. Close it when enough was recorded, and replay the file with a {@link WorkloadReplayer}.
+ *
+ * File layout:     [magic int][version int][start epoch millis long]
+ *                  [command tag, id, command] | [kind tag, id, start offset, duration, arguments] ...
+ *
+ * @see WorkloadTrace
+ * @see WorkloadReplayer
+ */
+public class WorkloadRecorder implements AutoCloseable {
+
+    static final int MAGIC = 0x5351574C; // SQWL
+    static final int VERSION = 1;
+
+    static final byte COMMAND = 1;
+    static final byte QUERY = 2;
+    static final byte UPDATE = 3;
+    // added to the kind of a statement that failed
+    static final byte FAILED = 0x10;
+
+    static final byte SHAPE = 0;
+    static final byte VALUE = 1;
+
+    private static final Logger LOGGER = Logger.getLogger(WorkloadRecorder.class.getName());
+
+    // the trace file
+    private final Path path;
+    private final DataOutputStream out;
+
+    // start of the recording, the offsets of the statements are relative to it
+    private final long startNanos = System.nanoTime();
+
+    // command -> id in the trace
+    private final Map<String, Integer> commandIds = new HashMap<>();
+
+    // true = argument values are recorded instead of their shapes
+    private volatile boolean captureValues;
+
+    private boolean closed;
+
+    private final LongAdder recorded = new LongAdder();
+
+    /**
+     * Create or replace the trace file {@param path}
+     * @param path The trace file
+     * @throws SQLibException Thrown when the file couldn't be created
+     */
+    public WorkloadRecorder(Path path) throws SQLibException {
+        this.path = path;
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new SQLibException("Failed to create the trace " + path, e);
+        }
+    }
+
+    /**
+     * @param captureValues true = record the values of the arguments, so a replay executes exactly the same statements.
+     *                      The trace then contains the data of the recorded statements.
+     */
+    public WorkloadRecorder captureValues(boolean captureValues) {
+        this.captureValues = captureValues;
+        return this;
+    }
+
+    /**
+     * @return The start of the recording in {@link System#nanoTime()}, passed to {@link #record(MySQLStatement, boolean, long, long, boolean)}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Record an executed statement. Failures to write the trace are logged, they never fail the statement.
+     * @param statement The executed statement
+     * @param query true = the statement was a query
+     * @param statementStartNanos When the statement was started, in {@link System#nanoTime()}
+     * @param durationNanos How long the statement took
+     * @param failed true = the statement threw an exception
+     */
+    public void record(MySQLStatement statement, boolean query, long statementStartNanos, long durationNanos, boolean failed) {
+        String command = statement.getCommand();
+        List<Object> arguments = statement.getReplaceArguments();
+        boolean values = captureValues;
+
+        synchronized (this) {
+            if(closed) return;
+            try {
+                Integer id = commandIds.get(command);
+                if(id == null){
+                    id = commandIds.size();
+                    commandIds.put(command, id);
+                    out.writeByte(COMMAND);
+                    ValueIO.writeVarInt(out, id);
+                    ValueIO.write(out, command);
+                }
+
+                out.writeByte((query ? QUERY : UPDATE) | (failed ? FAILED : 0));
+                ValueIO.writeVarInt(out, id);
+                ValueIO.writeVarLong(out, TimeUnit.NANOSECONDS.toMicros(statementStartNanos - startNanos));
+                ValueIO.writeVarLong(out, TimeUnit.NANOSECONDS.toMicros(durationNanos));
+                ValueIO.writeVarInt(out, arguments.size());
+                for (Object argument : arguments) {
+                    writeArgument(argument, values);
+                }
+                recorded.increment();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to record a statement to the trace " + path + ", recording is stopped", e);
+                closeQuietly();
+            }
+        }
+    }
+
+    private void writeArgument(Object argument, boolean values) throws IOException {
+        if(values && ValueIO.isSupported(argument)){
+            out.writeByte(VALUE);
+            ValueIO.write(out, argument);
+            return;
+        }
+
+        out.writeByte(SHAPE);
+        // SQL types can be negative, which the zigzag encoding keeps short
+        ValueIO.writeVarLong(out, argument instanceof StreamValue
+                ? (((StreamValue) argument).isText() ? Types.LONGVARCHAR : Types.LONGVARBINARY)
+                : CachedResult.sqlTypeOf(argument));
+        long size = 0;
+        if(argument instanceof String) size = ((String) argument).length();
+        else if(argument instanceof byte[]) size = ((byte[]) argument).length;
+        else if(argument instanceof StreamValue) size = Math.max(0, ((StreamValue) argument).getLength());
+        ValueIO.writeVarLong(out, size);
+    }
+
+    /**
+     * @return Amount of recorded statements
+     */
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    /**
+     * @return The trace file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Write the buffered statements to the trace file
+     * @throws SQLibException Thrown when the file couldn't be written
+     */
+    public synchronized void flush() throws SQLibException {
+        if(closed) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to write the trace " + path, e);
+        }
+    }
+
+    /**
+     * Stop recording and close the trace file
+     * @throws SQLibException Thrown when the file couldn't be written
+     */
+    @Override
+    public synchronized void close() throws SQLibException {
+        if(closed) return;
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to close the trace " + path, e);
+        }
+    }
+
+    private void closeQuietly() {
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {}
+    }
+
+}
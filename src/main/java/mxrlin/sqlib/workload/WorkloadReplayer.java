@@ -0,0 +1,310 @@
+package mxrlin.sqlib.workload;
+
+import mxrlin.sqlib.diagnostics.PlanChecker;
+import mxrlin.sqlib.exception.SQLibException;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Part of the SQLib API
+ *
+ * Executes a trace recorded by a {@link WorkloadRecorder} against a database, with the timing of the recording or
+ * faster, and reports throughput and latency percentiles. The target can be any JDBC database, for example a staging
+ * MySQL server or a local embedded database, to check pooling, caching and batching settings before a rollout.
+ *
+ * 1. Create an instance with a factory for connections to the target.
+ * 2. Set the speed and the concurrency.
+ * 3. Call {@link #replay(Path)} and look at the {@link ReplayReport}.
+ *
+ * Every worker thread uses its own connection. Statements are started in the recorded order at their recorded offset
+ * divided by the speed, by the next free worker, so the order of statements that overlapped isn't guaranteed.
+ *
+ * @see WorkloadTrace
+ */
+public class WorkloadReplayer {
+
+    // opens the connections of the workers
+    private final ConnectionFactory connectionFactory;
+
+    // 1 = recorded timing, 2 = twice as fast, 0 = as fast as possible
+    private double speed = 1;
+
+    // amount of worker threads and connections
+    private int concurrency = 4;
+
+    // true = statements that failed when they were recorded are replayed as well
+    private boolean replayFailed;
+
+    /**
+     * @param connectionFactory Opens a connection to the target database for every worker
+     */
+    public WorkloadReplayer(ConnectionFactory connectionFactory) {
+        this.connectionFactory = Objects.requireNonNull(connectionFactory, "connectionFactory");
+    }
+
+    /**
+     * @param speed 1 = the timing of the recording, 2 = twice as fast, 0 = as fast as the workers can execute the statements
+     */
+    public WorkloadReplayer speed(double speed) {
+        if(speed < 0 || Double.isNaN(speed)) throw new IllegalArgumentException("Speed can't be negative");
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * @param concurrency Amount of worker threads, each with its own connection
+     */
+    public WorkloadReplayer concurrency(int concurrency) {
+        if(concurrency <= 0) throw new IllegalArgumentException("Concurrency has to be positive");
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param replayFailed true = also replay statements that failed when they were recorded
+     */
+    public WorkloadReplayer replayFailed(boolean replayFailed) {
+        this.replayFailed = replayFailed;
+        return this;
+    }
+
+    /**
+     * Replay the trace {@param tracePath} and wait until all statements were executed
+     * @param tracePath A trace file written by a {@link WorkloadRecorder}
+     * @return Returns the throughput and latencies of the replay
+     * @throws SQLibException Thrown when the trace couldn't be read or a worker couldn't connect
+     */
+    public ReplayReport replay(Path tracePath) throws SQLibException {
+        BlockingQueue<Scheduled> queue = new ArrayBlockingQueue<>(concurrency * 1024);
+        AtomicReference<SQLibException> failure = new AtomicReference<>();
+
+        List<Worker> workers = new ArrayList<>(concurrency);
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(queue, failure);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "SQLib-Replay-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+
+        long startNanos = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        try (WorkloadTrace trace = new WorkloadTrace(tracePath)){
+            Long firstOffset = null;
+            WorkloadTrace.Entry entry;
+            while ((entry = trace.next()) != null && failure.get() == null){
+                if(entry.isFailed() && !replayFailed) continue;
+                if(firstOffset == null) firstOffset = entry.getOffsetMicros();
+
+                long scheduledNanos = startNanos;
+                if(speed > 0){
+                    scheduledNanos += (long) (TimeUnit.MICROSECONDS.toNanos(Math.max(0, entry.getOffsetMicros() - firstOffset)) / speed);
+                    for (long wait = scheduledNanos - System.nanoTime(); wait > 0; wait = scheduledNanos - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }else{
+                    scheduledNanos = System.nanoTime();
+                }
+                put(queue, new Scheduled(entry, scheduledNanos));
+            }
+        } finally {
+            for (int i = 0; i < concurrency; i++) {
+                put(queue, Scheduled.END);
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if(failure.get() != null) throw failure.get();
+
+        return report(workers, System.nanoTime() - startNanos);
+    }
+
+    private static void put(BlockingQueue<Scheduled> queue, Scheduled scheduled) throws SQLibException {
+        try {
+            queue.put(scheduled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLibException("Interrupted while replaying", e);
+        }
+    }
+
+    private static ReplayReport report(List<Worker> workers, long elapsedNanos) {
+        LongList latencies = new LongList();
+        LongList lag = new LongList();
+        Map<String, LongList> fingerprints = new HashMap<>();
+        long failures = 0;
+        for (Worker worker : workers) {
+            latencies.addAll(worker.latencies);
+            lag.addAll(worker.lag);
+            for (Map.Entry<String, LongList> entry : worker.fingerprints.entrySet()) {
+                fingerprints.computeIfAbsent(entry.getKey(), fingerprint -> new LongList()).addAll(entry.getValue());
+            }
+            failures += worker.failures;
+        }
+
+        Map<String, ReplayReport.Latencies> fingerprintLatencies = new HashMap<>();
+        for (Map.Entry<String, LongList> entry : fingerprints.entrySet()) {
+            fingerprintLatencies.put(entry.getKey(), entry.getValue().toLatencies());
+        }
+        return new ReplayReport(latencies.size, failures, elapsedNanos, latencies.toLatencies(), lag.toLatencies(), fingerprintLatencies);
+    }
+
+    // executes scheduled statements on its own connection, the results are only read after the thread was joined
+    private final class Worker implements Runnable {
+
+        private final BlockingQueue<Scheduled> queue;
+        private final AtomicReference<SQLibException> failure;
+
+        private final LongList latencies = new LongList();
+        private final LongList lag = new LongList();
+        private final Map<String, LongList> fingerprints = new HashMap<>();
+        private final Map<String, String> fingerprintCache = new HashMap<>();
+        private long failures;
+
+        Worker(BlockingQueue<Scheduled> queue, AtomicReference<SQLibException> failure) {
+            this.queue = queue;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            Connection connection;
+            try {
+                connection = connectionFactory.open();
+            } catch (SQLException e) {
+                failure.compareAndSet(null, new SQLibException("Failed to connect to the replay target", e));
+                drain();
+                return;
+            }
+
+            try {
+                while (true){
+                    Scheduled scheduled = queue.take();
+                    if(scheduled == Scheduled.END) return;
+                    execute(connection, scheduled);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {}
+            }
+        }
+
+        // keeps the dispatcher from blocking on a full queue after a failure
+        private void drain() {
+            try {
+                while (queue.take() != Scheduled.END){
+                    // skipped
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void execute(Connection connection, Scheduled scheduled) {
+            WorkloadTrace.Entry entry = scheduled.entry;
+            long start = System.nanoTime();
+            try (PreparedStatement statement = entry.getStatement().asPreparedStatement(connection)){
+                if(entry.isQuery()){
+                    try (ResultSet set = statement.executeQuery()){
+                        while (set.next()){
+                            // the fetch is part of the latency
+                        }
+                    }
+                }else{
+                    statement.executeUpdate();
+                }
+            } catch (SQLibException | SQLException e) {
+                failures++;
+            }
+            long latency = System.nanoTime() - start;
+
+            latencies.add(latency);
+            lag.add(Math.max(0, start - scheduled.scheduledNanos));
+            String command = entry.getStatement().getCommand();
+            String fingerprint = fingerprintCache.computeIfAbsent(command, PlanChecker::fingerprint);
+            fingerprints.computeIfAbsent(fingerprint, key -> new LongList()).add(latency);
+        }
+
+    }
+
+    // a statement and when it should be started
+    private static final class Scheduled {
+
+        // tells a worker to stop
+        static final Scheduled END = new Scheduled(null, 0);
+
+        private final WorkloadTrace.Entry entry;
+        private final long scheduledNanos;
+
+        Scheduled(WorkloadTrace.Entry entry, long scheduledNanos) {
+            this.entry = entry;
+            this.scheduledNanos = scheduledNanos;
+        }
+
+    }
+
+    // growable array of durations, without boxing
+    private static final class LongList {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if(size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            if(size + other.size > values.length) values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        ReplayReport.Latencies toLatencies() {
+            return new ReplayReport.Latencies(values, size);
+        }
+
+    }
+
+    /**
+     * Opens connections to the target database of a replay
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+
+        /**
+         * @return A new connection, closed by the replayer
+         * @throws SQLException Thrown when the connection couldn't be opened
+         */
+        Connection open() throws SQLException;
+
+    }
+
+}
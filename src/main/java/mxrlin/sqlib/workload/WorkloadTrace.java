@@ -0,0 +1,255 @@
+package mxrlin.sqlib.workload;
+
+import mxrlin.sqlib.exception.SQLibException;
+import mxrlin.sqlib.misc.MySQLStatement;
+import mxrlin.sqlib.misc.ValueIO;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Part of the SQLib API
+ *
+ * Reads a trace file written by a {@link WorkloadRecorder}, one statement after another in the order they were recorded.
+ * Arguments that were recorded as shapes are replaced by placeholder values of the same SQL type and size. The values
+ * are derived from the number of the statement within its command, so replayed keys vary like the recorded ones instead
+ * of hitting the same column again and again.
+ *
+ * 1. Open the trace file with a new instance of this class.
+ * 2. Call {@link #next()} until it returns null.
+ * 3. Close it.
+ *
+ * @see WorkloadReplayer
+ */
+public class WorkloadTrace implements AutoCloseable {
+
+    // dates of placeholders lie within the last year
+    private static final long YEAR_MILLIS = 365L * 24 * 60 * 60 * 1000;
+
+    // the trace file
+    private final Path path;
+    private final DataInputStream in;
+
+    // when the recording was started
+    private final long startEpochMillis;
+
+    // id -> command
+    private final Map<Integer, String> commands = new HashMap<>();
+
+    // id -> statements of the command read so far
+    private final Map<Integer, Long> sequences = new HashMap<>();
+
+    /**
+     * Open the trace file {@param path}
+     * @param path The trace file
+     * @throws SQLibException Thrown when the file couldn't be opened or isn't a trace
+     */
+    public WorkloadTrace(Path path) throws SQLibException {
+        this.path = path;
+        try {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            if(in.readInt() != WorkloadRecorder.MAGIC) throw new SQLibException(path + " isn't a SQLib trace");
+            int version = in.readInt();
+            if(version != WorkloadRecorder.VERSION) throw new SQLibException("Unsupported trace version " + version + " in " + path);
+            this.startEpochMillis = in.readLong();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to open the trace " + path, e);
+        }
+    }
+
+    /**
+     * @return When the recording was started, in milliseconds since the epoch
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Read the next recorded statement
+     * @return The statement, null if the end of the trace was reached. A trace that was cut off ends at its last complete statement.
+     * @throws SQLibException Thrown when the file couldn't be read or is damaged
+     */
+    public Entry next() throws SQLibException {
+        try {
+            while (true){
+                int tag;
+                try {
+                    tag = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return null;
+                }
+
+                if(tag == WorkloadRecorder.COMMAND){
+                    int id = ValueIO.readVarInt(in);
+                    commands.put(id, (String) ValueIO.read(in));
+                    continue;
+                }
+
+                int kind = tag & ~WorkloadRecorder.FAILED;
+                if(kind != WorkloadRecorder.QUERY && kind != WorkloadRecorder.UPDATE) throw new SQLibException("Unknown record " + tag + " in the trace " + path);
+
+                int id = ValueIO.readVarInt(in);
+                String command = commands.get(id);
+                if(command == null) throw new SQLibException("Statement of an unknown command in the trace " + path);
+                long offsetMicros = ValueIO.readVarLong(in);
+                long durationMicros = ValueIO.readVarLong(in);
+                int count = ValueIO.readLength(in, 1);
+                List<Object> arguments = new ArrayList<>(count);
+                long sequence = sequences.merge(id, 1L, Long::sum);
+                for (int i = 0; i < count; i++) {
+                    arguments.add(readArgument(sequence * 31 + i));
+                }
+                return new Entry(new MySQLStatement(command, arguments), kind == WorkloadRecorder.QUERY,
+                        offsetMicros, durationMicros, (tag & WorkloadRecorder.FAILED) != 0);
+            }
+        } catch (EOFException e) {
+            return null;
+        } catch (IOException e) {
+            throw new SQLibException("Failed to read the trace " + path, e);
+        }
+    }
+
+    private Object readArgument(long seed) throws IOException {
+        if(in.readByte() == WorkloadRecorder.VALUE) return ValueIO.read(in);
+        int sqlType = (int) ValueIO.readVarLong(in);
+        long size = ValueIO.readVarLong(in);
+        if(size < 0 || size > Integer.MAX_VALUE) throw new IOException("Invalid argument size " + size);
+        return placeholder(sqlType, (int) size, seed);
+    }
+
+    /**
+     * @param sqlType The SQL type of a recorded argument
+     * @param size The length of a recorded string or byte array
+     * @param seed Different seeds give different values, the same seed always the same value
+     * @return A value of the same type and size
+     */
+    public static Object placeholder(int sqlType, int size, long seed) {
+        long hash = mix(seed);
+        switch (sqlType){
+            case Types.NULL: return null;
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR: {
+                char[] chars = new char[size];
+                Arrays.fill(chars, 'x');
+                String digits = Long.toString(hash, 36);
+                digits.getChars(0, Math.min(size, digits.length()), chars, 0);
+                return new String(chars);
+            }
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY: {
+                byte[] bytes = new byte[size];
+                for (int i = 0; i < Math.min(size, 8); i++) {
+                    bytes[i] = (byte) (hash >>> (i * 8));
+                }
+                return bytes;
+            }
+            case Types.INTEGER: return (int) (hash & Integer.MAX_VALUE);
+            case Types.BIGINT: return hash;
+            case Types.SMALLINT: return (short) (hash & Short.MAX_VALUE);
+            case Types.TINYINT: return (byte) (hash & Byte.MAX_VALUE);
+            case Types.BOOLEAN: return (hash & 1) != 0;
+            case Types.DOUBLE: return (double) (hash % 1_000_000);
+            case Types.REAL: return (float) (hash % 1_000_000);
+            case Types.DECIMAL: return BigDecimal.valueOf(hash % 1_000_000);
+            case Types.DATE: return new Date(System.currentTimeMillis() - hash % YEAR_MILLIS);
+            case Types.TIME: return new Time(System.currentTimeMillis() - hash % YEAR_MILLIS);
+            case Types.TIMESTAMP: return new Timestamp(System.currentTimeMillis() - hash % YEAR_MILLIS);
+            default: return Long.toString(hash, 36);
+        }
+    }
+
+    // non-negative and spread over the whole range, so consecutive seeds don't give neighbouring keys
+    private static long mix(long seed) {
+        long z = seed * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The trace file
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws SQLibException {
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new SQLibException("Failed to close the trace " + path, e);
+        }
+    }
+
+    /**
+     * A recorded statement
+     */
+    public static class Entry {
+
+        private final MySQLStatement statement;
+        private final boolean query;
+        private final long offsetMicros;
+        private final long durationMicros;
+        private final boolean failed;
+
+        Entry(MySQLStatement statement, boolean query, long offsetMicros, long durationMicros, boolean failed) {
+            this.statement = statement;
+            this.query = query;
+            this.offsetMicros = offsetMicros;
+            this.durationMicros = durationMicros;
+            this.failed = failed;
+        }
+
+        /**
+         * @return The statement with its recorded or placeholder arguments
+         */
+        public MySQLStatement getStatement() {
+            return statement;
+        }
+
+        /**
+         * @return true = the statement is a query, false = an update
+         */
+        public boolean isQuery() {
+            return query;
+        }
+
+        /**
+         * @return When the statement was started, in microseconds after the start of the recording
+         */
+        public long getOffsetMicros() {
+            return offsetMicros;
+        }
+
+        /**
+         * @return How long the statement took when it was recorded, in microseconds
+         */
+        public long getDurationMicros() {
+            return durationMicros;
+        }
+
+        /**
+         * @return true = the statement failed when it was recorded
+         */
+        public boolean isFailed() {
+            return failed;
+        }
+
+    }
+
+}
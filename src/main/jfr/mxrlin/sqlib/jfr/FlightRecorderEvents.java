@@ -0,0 +1,56 @@
+package mxrlin.sqlib.jfr;
+
+/**
+ * The events as Flight Recorder events, loaded by {@link JfrEvents} if the JVM has Flight Recorder
+ */
+final class FlightRecorderEvents implements EventFactory {
+
+    FlightRecorderEvents() {
+    }
+
+    @Override
+    public boolean isCommandEnabled() {
+        return new JfrStatementEvent().isEnabled() || new JfrAcquireEvent().isEnabled();
+    }
+
+    @Override
+    public StatementEvent beginStatement() {
+        JfrStatementEvent event = new JfrStatementEvent();
+        if(!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public AcquireEvent beginAcquire() {
+        JfrAcquireEvent event = new JfrAcquireEvent();
+        if(!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public CacheEvent beginCacheLookup() {
+        JfrCacheEvent event = new JfrCacheEvent();
+        if(!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public FlushEvent beginFlush() {
+        JfrFlushEvent event = new JfrFlushEvent();
+        if(!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public ConnectEvent beginConnect() {
+        JfrConnectEvent event = new JfrConnectEvent();
+        if(!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+}
@@ -0,0 +1,47 @@
+package mxrlin.sqlib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event of a command waiting for a permit of the {@link mxrlin.sqlib.concurrent.AdmissionController},
+ * the connection of SQLib isn't pooled so this is the time a command waited for its turn on the database.
+ *
+ * @see JfrEvents
+ */
+@Name(JfrEvents.ACQUIRE)
+@Label("SQLib Acquire")
+@Category("SQLib")
+@Description("Wait of a command for an admission permit")
+@Threshold("1 ms")
+@StackTrace(false)
+final class JfrAcquireEvent extends jdk.jfr.Event implements AcquireEvent {
+
+    @Label("Command Class")
+    private Class<?> commandClass;
+
+    @Label("Table")
+    private String table;
+
+    @Label("Failed")
+    @Description("The command was rejected or its deadline passed while waiting")
+    private boolean failed;
+
+    JfrAcquireEvent() {
+    }
+
+    @Override
+    public void finish(Class<?> commandClass, String table, boolean failed) {
+        end();
+        if(!shouldCommit()) return;
+        this.commandClass = commandClass;
+        this.table = table;
+        this.failed = failed;
+        commit();
+    }
+
+}
@@ -0,0 +1,51 @@
+package mxrlin.sqlib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a lookup in the {@link mxrlin.sqlib.cache.EntryCache}. Lookups are frequent and fast,
+ * so the event is disabled unless a recording enables it.
+ *
+ * @see JfrEvents
+ */
+@Name(JfrEvents.CACHE)
+@Label("SQLib Cache Lookup")
+@Category("SQLib")
+@Description("Lookup of a column in the entry cache")
+@Enabled(false)
+@StackTrace(false)
+final class JfrCacheEvent extends jdk.jfr.Event implements CacheEvent {
+
+    @Label("Command Class")
+    private Class<?> commandClass;
+
+    @Label("Table")
+    private String table;
+
+    @Label("Hit")
+    private boolean hit;
+
+    @Label("Rows")
+    @Description("Returned columns, 1 for a hit and 0 for a miss")
+    private long rows;
+
+    JfrCacheEvent() {
+    }
+
+    @Override
+    public void finish(Class<?> commandClass, String table, boolean hit) {
+        end();
+        if(!shouldCommit()) return;
+        this.commandClass = commandClass;
+        this.table = table;
+        this.hit = hit;
+        this.rows = hit ? 1 : 0;
+        commit();
+    }
+
+}
@@ -0,0 +1,47 @@
+package mxrlin.sqlib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a {@link mxrlin.sqlib.SQLibConnection} opening its connection to the database, including
+ * the replay of a pending write journal.
+ *
+ * @see JfrEvents
+ */
+@Name(JfrEvents.CONNECT)
+@Label("SQLib Connect")
+@Category("SQLib")
+@Description("Connection or reconnection to the database")
+@StackTrace(false)
+final class JfrConnectEvent extends jdk.jfr.Event implements ConnectEvent {
+
+    @Label("URL")
+    @Description("The JDBC url without its parameters")
+    private String url;
+
+    @Label("Reconnect")
+    @Description("The connection was open before")
+    private boolean reconnect;
+
+    @Label("Failed")
+    private boolean failed;
+
+    JfrConnectEvent() {
+    }
+
+    @Override
+    public void finish(String url, boolean reconnect, boolean failed) {
+        end();
+        if(!shouldCommit()) return;
+        int parameters = url.indexOf('?');
+        this.url = parameters == -1 ? url : url.substring(0, parameters);
+        this.reconnect = reconnect;
+        this.failed = failed;
+        commit();
+    }
+
+}
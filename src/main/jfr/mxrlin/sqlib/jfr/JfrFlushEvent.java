@@ -0,0 +1,50 @@
+package mxrlin.sqlib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a flush of a {@link mxrlin.sqlib.batch.CounterBuffer}, which writes the buffered
+ * increments as batches.
+ *
+ * @see JfrEvents
+ */
+@Name(JfrEvents.FLUSH)
+@Label("SQLib Batch Flush")
+@Category("SQLib")
+@Description("Flush of buffered commands as batches")
+@StackTrace(false)
+final class JfrFlushEvent extends jdk.jfr.Event implements FlushEvent {
+
+    @Label("Command Class")
+    private Class<?> commandClass;
+
+    @Label("Table")
+    @Description("The table of all flushed commands, null if they belong to several tables")
+    private String table;
+
+    @Label("Rows")
+    @Description("Written statements")
+    private long rows;
+
+    @Label("Failed")
+    private boolean failed;
+
+    JfrFlushEvent() {
+    }
+
+    @Override
+    public void finish(Class<?> commandClass, String table, long rows, boolean failed) {
+        end();
+        if(!shouldCommit()) return;
+        this.commandClass = commandClass;
+        this.table = table;
+        this.rows = rows;
+        this.failed = failed;
+        commit();
+    }
+
+}
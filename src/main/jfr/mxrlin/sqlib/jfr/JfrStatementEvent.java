@@ -0,0 +1,55 @@
+package mxrlin.sqlib.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event of an executed statement. Updates and batches end when the server answered, queries when their
+ * ResultSet was closed, so the duration of a query includes reading the result.
+ *
+ * @see JfrEvents
+ */
+@Name(JfrEvents.STATEMENT)
+@Label("SQLib Statement")
+@Category("SQLib")
+@Description("Execution of a statement, for queries until the result was closed")
+@Threshold("10 ms")
+@StackTrace(false)
+final class JfrStatementEvent extends jdk.jfr.Event implements StatementEvent {
+
+    @Label("Command Class")
+    private Class<?> commandClass;
+
+    @Label("Table")
+    private String table;
+
+    @Label("Statement")
+    private String command;
+
+    @Label("Rows")
+    @Description("Affected or fetched columns, -1 if unknown")
+    private long rows;
+
+    @Label("Failed")
+    private boolean failed;
+
+    JfrStatementEvent() {
+    }
+
+    @Override
+    public void finish(Class<?> commandClass, String table, String command, long rows, boolean failed) {
+        end();
+        if(!shouldCommit()) return;
+        this.commandClass = commandClass;
+        this.table = table;
+        this.command = command;
+        this.rows = rows;
+        this.failed = failed;
+        commit();
+    }
+
+}